@@ -0,0 +1,242 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The RestaurantDataWorkload class prepares the data and the operations measured by the JMH benchmarks in the jmh directory (see pom.xml).
+ * It is only compiled by the jmh profile, so it is not part of the application jar.
+ * It writes a synthetic inspections CSV file with the given number of rows, loads it and builds the indexes, and returns every measured operation by name as a Supplier.
+ * JMH only accepts benchmarks in a named package, which cannot refer to the classes of this program in the default package,
+ * so the benchmarks create a workload by its class name and only use it through the Function and Supplier interfaces. The JIT compiler inlines these calls like direct calls.
+ * @author Claire Zhu
+ */
+
+public class RestaurantDataWorkload implements Function<String, Supplier<Object>> {
+
+	//LinkedList.add() checks for duplicates, so the LinkedList operations use at most this many restaurants
+	private static final int MAX_LINKED_LIST_SIZE = 20000;
+
+	private static final String[] ZIPS = {"94102", "94103", "94107", "94109", "94110", "94112", "94114", "94117", "94122", "94133"};
+	private static final String[] WORDS = {"Golden", "Pizza", "Cafe", "Dragon", "Taqueria", "Sushi", "Burger", "Bakery", "Noodle", "Grill", "House", "Kitchen"};
+	private static final String[] VIOLATIONS = {"Unclean or degraded floors walls or ceilings", "Moderate risk food holding temperature",
+			"Improper food storage", "Wiping cloths not clean or properly stored or inadequate sanitizer", ""};
+	private static final String[] RISKS = {"Low Risk", "Moderate Risk", "High Risk"};
+
+	private File file;
+	private ArrayList<String> lines;
+	private String[] dates;
+	private RestaurantList restaurantList;
+	private Restaurant[] restaurants;
+	private LinkedList<Restaurant> linkedList;
+	private InspectionAnalytics analytics;
+	private InspectionAnalytics.Filter lastYear;
+	private Random random;
+	//measured operations by name
+	private HashMap<String, Supplier<Object>> operations;
+
+	/**
+	 * Constructs a new RestaurantDataWorkload object with a synthetic data set of the given size. The data set is the same for every run with the same size.
+	 * @param int rows number of inspection rows of the data set
+	 * @throws IOException if the synthetic file cannot be written or read
+	 */
+	public RestaurantDataWorkload(int rows) throws IOException {
+		random = new Random(rows);
+		file = File.createTempFile("inspections", ".csv");
+		file.deleteOnExit();
+		lines = writeSyntheticFile(file, rows, random);
+
+		dates = new String[Math.min(lines.size(), 100000)];
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = String.format("%02d/%02d/%d", 1 + i % 12, 1 + i % 28, 2015 + i % 5);
+		}
+
+		restaurantList = new RestaurantList();
+		try (RestaurantDataReader reader = new RestaurantDataReader(file)) {
+			reader.load(restaurantList);
+		}
+		restaurantList.buildIndex();
+		restaurants = restaurantList.toArray(new Restaurant[restaurantList.size()]);
+
+		linkedList = new LinkedList<Restaurant>();
+		for (int i = 0; i < Math.min(restaurants.length, MAX_LINKED_LIST_SIZE); i++) {
+			linkedList.add(restaurants[i]);
+		}
+
+		analytics = new InspectionAnalytics(restaurantList);
+		lastYear = new InspectionAnalytics.Filter().lastDays(new Date(12, 31, 2019), 365);
+
+		operations = new HashMap<String, Supplier<Object>>();
+		addOperations();
+	}
+
+	/**
+	 * Writes a synthetic inspections CSV file with the same columns as the San Francisco data.
+	 * @param File file to be written
+	 * @param int rows number of inspection rows, not counting the header
+	 * @param Random random source of the values
+	 * @return ArrayList<String> lines of the file, including the header
+	 * @throws IOException if the file cannot be written
+	 */
+	static ArrayList<String> writeSyntheticFile(File file, int rows, Random random) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>(rows + 1);
+		lines.add("business_id,business_name,business_address,business_city,business_state,business_postal_code,business_latitude,business_longitude,"
+				+ "business_location,business_phone_number,inspection_id,inspection_date,inspection_score,inspection_type,violation_id,violation_description,risk_category");
+		//about eight inspection rows per restaurant
+		int restaurants = Math.max(1, rows / 8);
+		for (int i = 0; i < rows; i++) {
+			int restaurant = random.nextInt(restaurants);
+			String name = WORDS[restaurant % WORDS.length] + " " + WORDS[(restaurant / WORDS.length) % WORDS.length] + " " + restaurant;
+			String zip = ZIPS[restaurant % ZIPS.length];
+			double latitude = 37.70 + (restaurant % 1000) / 10000.0;
+			double longitude = -122.50 + (restaurant / 1000 % 1000) / 10000.0;
+			String violation = VIOLATIONS[random.nextInt(VIOLATIONS.length)];
+			String risk = violation.isEmpty() ? "" : RISKS[random.nextInt(RISKS.length)];
+			String score = random.nextInt(10) == 0 ? "" : Integer.toString(50 + random.nextInt(51));
+			String date = (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)) + "/" + (2015 + random.nextInt(5)) + " 12:00:00 AM";
+			lines.add(restaurant + ",\"" + name + "\"," + (restaurant % 1000) + " Mission St,San Francisco,CA," + zip + ","
+					+ latitude + "," + longitude + ",\"(" + latitude + ", " + longitude + ")\",+1415555" + (1000 + restaurant % 9000) + ","
+					+ restaurant + "_" + i + "," + date + "," + score + ",Routine - Unscheduled," + restaurant + "_" + i + "_1,"
+					+ (violation.isEmpty() ? "" : "\"" + violation + "\"") + "," + risk);
+		}
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+			for (String line : lines) {
+				out.write(line);
+				out.write('\n');
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates the measured operations. Operations that visit every line, date or restaurant of the data set do so in one call.
+	 * "LinkedList.shuffle" puts the LinkedList in a new unsorted order; it is meant to be called before every call of the LinkedList sorting operations, outside of the measurement.
+	 */
+	private void addOperations() {
+		Comparator<Restaurant> byZip = Comparator.comparing(Restaurant::getZip);
+		operations.put("splitCSVLine", () -> {
+			Object last = null;
+			for (String line : lines) {
+				last = SFRestaurantData.splitCSVLine(line);
+			}
+			return last;
+		});
+		operations.put("Date(String)", () -> {
+			Object last = null;
+			for (String date : dates) {
+				last = new Date(date);
+			}
+			return last;
+		});
+		operations.put("load", () -> {
+			try (RestaurantDataReader reader = new RestaurantDataReader(file)) {
+				RestaurantList list = new RestaurantList();
+				reader.load(list);
+				return list;
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		operations.put("getMatchingRestaurants", () -> restaurantList.getMatchingRestaurants("pizza"));
+		operations.put("getMatchingZip", () -> restaurantList.getMatchingZip("941"));
+		operations.put("getMatchingQuery", () -> restaurantList.getMatchingQuery("risk:high zip:94103"));
+		operations.put("countMatchingQuery", () -> restaurantList.countMatchingQuery("risk:high zip:94103"));
+		operations.put("getRestaurantsWithin", () -> restaurantList.getRestaurantsWithin(37.7749, -122.4194, 500));
+		operations.put("getNearestRestaurants", () -> restaurantList.getNearestRestaurants(37.7749, -122.4194, 10));
+		operations.put("LinkedList.add", () -> {
+			LinkedList<Restaurant> list = new LinkedList<Restaurant>();
+			for (int i = 0; i < linkedList.size(); i++) {
+				list.add(restaurants[i]);
+			}
+			return list;
+		});
+		operations.put("LinkedList.get", () -> {
+			Object last = null;
+			for (int i = 0; i < linkedList.size(); i++) {
+				last = linkedList.get(i);
+			}
+			return last;
+		});
+		operations.put("LinkedList.shuffle", () -> {
+			//multiplying by an odd number is a bijection of the int values, so every multiplier gives a different order without any duplicate keys
+			int multiplier = random.nextInt() | 1;
+			linkedList.sort(Comparator.comparingInt(restaurant -> System.identityHashCode(restaurant) * multiplier));
+			return linkedList;
+		});
+		operations.put("LinkedList.sort", () -> {
+			linkedList.sort();
+			return linkedList;
+		});
+		operations.put("LinkedList.sort(zip)", () -> {
+			linkedList.sort(byZip);
+			return linkedList;
+		});
+		operations.put("LinkedList.sortFirst(100, zip)", () -> {
+			linkedList.sortFirst(100, byZip);
+			return linkedList;
+		});
+		operations.put("Restaurant.toString (first)", () -> {
+			Object last = null;
+			for (Restaurant restaurant : restaurants) {
+				//setting the phone number discards the cached representation
+				restaurant.setPhone(restaurant.getPhone());
+				last = restaurant.toString();
+			}
+			return last;
+		});
+		operations.put("Restaurant.toString (cached)", () -> {
+			Object last = null;
+			for (Restaurant restaurant : restaurants) {
+				last = restaurant.toString();
+			}
+			return last;
+		});
+		operations.put("InspectionAnalytics.groupByZip", () -> analytics.groupByZip(lastYear));
+		operations.put("InspectionAnalytics.groupByMonth", () -> analytics.groupByMonth(null));
+		operations.put("InspectionAnalytics.getWorstRestaurants", () -> analytics.getWorstRestaurants(10, lastYear));
+		operations.put("RestaurantRenderer TEXT", render(RestaurantRenderer.Format.TEXT));
+		operations.put("RestaurantRenderer CSV", render(RestaurantRenderer.Format.CSV));
+		operations.put("RestaurantRenderer JSON_LINES", render(RestaurantRenderer.Format.JSON_LINES));
+	}
+
+	/**
+	 * Returns the operation with the given name.
+	 * @param String name of the operation
+	 * @return Supplier<Object> code of the operation, returning its result so it is not removed by the JIT compiler
+	 * @throws IllegalArgumentException if there is no operation with this name
+	 */
+	@Override
+	public Supplier<Object> apply(String name) throws IllegalArgumentException {
+		Supplier<Object> operation = operations.get(name);
+		if (operation == null) {
+			throw new IllegalArgumentException("Unknown operation " + name + ".");
+		}
+		return operation;
+	}
+
+	/**
+	 * Returns the operation that renders all restaurants in the given format to a Writer that discards its output.
+	 * @param RestaurantRenderer.Format format output format
+	 * @return Supplier<Object> code of the operation
+	 */
+	private Supplier<Object> render(RestaurantRenderer.Format format) {
+		return () -> {
+			try {
+				new RestaurantRenderer(Writer.nullWriter(), format).writeAll(restaurantList);
+				return format;
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+}
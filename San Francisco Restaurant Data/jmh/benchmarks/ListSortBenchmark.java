@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of sorting a LinkedList of restaurants. Every call sorts an unsorted list: the list is shuffled into a new order by a setup method before each call, outside of the measurement.
+ * The list holds at most 20000 restaurants of the data set, since building a LinkedList checks every element for duplicates.
+ * @author Claire Zhu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ListSortBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int rows;
+
+	private Supplier<Object> shuffle;
+	private Supplier<Object> sort;
+	private Supplier<Object> sortByZip;
+	private Supplier<Object> sortFirstByZip;
+
+	/**
+	 * Writes and loads the data set once per trial, and looks up the measured operations.
+	 * @throws ReflectiveOperationException if the workload cannot be created
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		Function<String, Supplier<Object>> workload = RestaurantDataBenchmark.createWorkload(rows);
+		shuffle = workload.apply("LinkedList.shuffle");
+		sort = workload.apply("LinkedList.sort");
+		sortByZip = workload.apply("LinkedList.sort(zip)");
+		sortFirstByZip = workload.apply("LinkedList.sortFirst(100, zip)");
+	}
+
+	/**
+	 * Puts the list in a new unsorted order before every call, so no call measures sorting an already sorted list.
+	 */
+	@Setup(Level.Invocation)
+	public void shuffle() {
+		shuffle.get();
+	}
+
+	@Benchmark
+	public Object sort() {
+		return sort.get();
+	}
+
+	@Benchmark
+	public Object sortByZip() {
+		return sortByZip.get();
+	}
+
+	@Benchmark
+	public Object sortFirstByZip() {
+		return sortFirstByZip.get();
+	}
+}
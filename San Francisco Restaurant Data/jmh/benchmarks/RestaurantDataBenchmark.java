@@ -0,0 +1,190 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the hot paths of loading, searching, analyzing and rendering the restaurant data, on synthetic data sets of 1 thousand to 1 million inspection rows.
+ * The data set and the measured operations are prepared by RestaurantDataWorkload in the default package, which this class can only reach by its class name.
+ * Operations that visit every line, date or restaurant of the data set (splitCSVLine, Date, load, toString, analytics and rendering) report the time of one complete pass.
+ * @author Claire Zhu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RestaurantDataBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int rows;
+
+	private Supplier<Object> splitCSVLine;
+	private Supplier<Object> parseDate;
+	private Supplier<Object> load;
+	private Supplier<Object> getMatchingRestaurants;
+	private Supplier<Object> getMatchingZip;
+	private Supplier<Object> getMatchingQuery;
+	private Supplier<Object> countMatchingQuery;
+	private Supplier<Object> getRestaurantsWithin;
+	private Supplier<Object> getNearestRestaurants;
+	private Supplier<Object> linkedListAdd;
+	private Supplier<Object> linkedListGet;
+	private Supplier<Object> toStringFirst;
+	private Supplier<Object> toStringCached;
+	private Supplier<Object> groupByZip;
+	private Supplier<Object> groupByMonth;
+	private Supplier<Object> getWorstRestaurants;
+	private Supplier<Object> renderText;
+	private Supplier<Object> renderCsv;
+	private Supplier<Object> renderJsonLines;
+
+	/**
+	 * Creates the workload of the given size.
+	 * @param int rows number of inspection rows of the synthetic data set
+	 * @return Function<String, Supplier<Object>> workload returning its operations by name
+	 * @throws ReflectiveOperationException if the workload class cannot be found or created
+	 */
+	@SuppressWarnings("unchecked")
+	static Function<String, Supplier<Object>> createWorkload(int rows) throws ReflectiveOperationException {
+		return (Function<String, Supplier<Object>>) Class.forName("RestaurantDataWorkload").getConstructor(int.class).newInstance(rows);
+	}
+
+	/**
+	 * Writes and loads the data set once per trial, and looks up the measured operations.
+	 * @throws ReflectiveOperationException if the workload cannot be created
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		Function<String, Supplier<Object>> workload = createWorkload(rows);
+		splitCSVLine = workload.apply("splitCSVLine");
+		parseDate = workload.apply("Date(String)");
+		load = workload.apply("load");
+		getMatchingRestaurants = workload.apply("getMatchingRestaurants");
+		getMatchingZip = workload.apply("getMatchingZip");
+		getMatchingQuery = workload.apply("getMatchingQuery");
+		countMatchingQuery = workload.apply("countMatchingQuery");
+		getRestaurantsWithin = workload.apply("getRestaurantsWithin");
+		getNearestRestaurants = workload.apply("getNearestRestaurants");
+		linkedListAdd = workload.apply("LinkedList.add");
+		linkedListGet = workload.apply("LinkedList.get");
+		toStringFirst = workload.apply("Restaurant.toString (first)");
+		toStringCached = workload.apply("Restaurant.toString (cached)");
+		groupByZip = workload.apply("InspectionAnalytics.groupByZip");
+		groupByMonth = workload.apply("InspectionAnalytics.groupByMonth");
+		getWorstRestaurants = workload.apply("InspectionAnalytics.getWorstRestaurants");
+		renderText = workload.apply("RestaurantRenderer TEXT");
+		renderCsv = workload.apply("RestaurantRenderer CSV");
+		renderJsonLines = workload.apply("RestaurantRenderer JSON_LINES");
+	}
+
+	@Benchmark
+	public Object splitCSVLine() {
+		return splitCSVLine.get();
+	}
+
+	@Benchmark
+	public Object parseDate() {
+		return parseDate.get();
+	}
+
+	@Benchmark
+	public Object load() {
+		return load.get();
+	}
+
+	@Benchmark
+	public Object getMatchingRestaurants() {
+		return getMatchingRestaurants.get();
+	}
+
+	@Benchmark
+	public Object getMatchingZip() {
+		return getMatchingZip.get();
+	}
+
+	@Benchmark
+	public Object getMatchingQuery() {
+		return getMatchingQuery.get();
+	}
+
+	@Benchmark
+	public Object countMatchingQuery() {
+		return countMatchingQuery.get();
+	}
+
+	@Benchmark
+	public Object getRestaurantsWithin() {
+		return getRestaurantsWithin.get();
+	}
+
+	@Benchmark
+	public Object getNearestRestaurants() {
+		return getNearestRestaurants.get();
+	}
+
+	@Benchmark
+	public Object linkedListAdd() {
+		return linkedListAdd.get();
+	}
+
+	@Benchmark
+	public Object linkedListGet() {
+		return linkedListGet.get();
+	}
+
+	@Benchmark
+	public Object toStringFirst() {
+		return toStringFirst.get();
+	}
+
+	@Benchmark
+	public Object toStringCached() {
+		return toStringCached.get();
+	}
+
+	@Benchmark
+	public Object groupByZip() {
+		return groupByZip.get();
+	}
+
+	@Benchmark
+	public Object groupByMonth() {
+		return groupByMonth.get();
+	}
+
+	@Benchmark
+	public Object getWorstRestaurants() {
+		return getWorstRestaurants.get();
+	}
+
+	@Benchmark
+	public Object renderText() {
+		return renderText.get();
+	}
+
+	@Benchmark
+	public Object renderCsv() {
+		return renderCsv.get();
+	}
+
+	@Benchmark
+	public Object renderJsonLines() {
+		return renderJsonLines.get();
+	}
+}
@@ -0,0 +1,435 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * The ArrayBasedList class is used to store a collection of <E> objects in a resizable array.
+ * Appending an element takes constant amortized time and any element can be accessed by its index in constant time.
+ * Like LinkedList, the list can guarantee that it never contains the same element twice; in that case it keeps a companion HashSet of its elements, so the duplicate check does not scan the array.
+ * @param <E>
+ * @author Claire Zhu
+ */
+
+public class ArrayBasedList<E> implements Iterable<E>, Collection<E> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	//lists with at least this many elements are sorted in parallel
+	public static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+	private Object[] elements;
+	private int size;
+	private HashSet<E> uniqueElements;
+
+	/**
+	 * This default constructor constructs a new empty ArrayBasedList object that does not accept duplicate elements, in the same way as LinkedList.
+	 */
+	public ArrayBasedList() {
+		this(true);
+	}
+
+	/**
+	 * Constructs a new empty ArrayBasedList object.
+	 * @param boolean unique true if add() should refuse elements that are already in the list, and false if every element should be added
+	 */
+	public ArrayBasedList(boolean unique) {
+		elements = new Object[DEFAULT_CAPACITY];
+		if (unique) {
+			uniqueElements = new HashSet<E>();
+		}
+	}
+
+	/**
+	 * Makes sure the array can hold at least the given number of elements, growing it by half of its size when needed.
+	 * @param int capacity number of elements the array should be able to hold
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1)));
+		}
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the specified element in this list, or -1 if this list does not contain the element
+	 * @param Element e, the element to search for
+	 * @return the int value of the index of the first occurrence of the specified element in this list, or -1 if this list does not contain the element
+	 */
+	public int indexOf(Object e) {
+		for (int i = 0; i < size; i++) {
+			if (elements[i].equals(e)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the specified position in this list.
+	 * @param int index of the element to return
+	 * @return Element object at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range (less than 0 or greater than the size of this ArrayBasedList)
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) throws IndexOutOfBoundsException {
+		if (index<0 || index>=size) throw new IndexOutOfBoundsException("Index value not within range.");
+		return (E) elements[index];
+	}
+
+	/**
+	 * Returns the string representation of this collection.
+	 * @return the string representation of this collection, which consists of a list of the collection's elements in the order they are returned by its iterators
+	 */
+	public String toString() {
+		StringBuilder str = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				str.append(", ");
+			}
+			str.append(String.valueOf(elements[i]));
+		}
+		return str.append("]").toString();
+	}
+
+	/**
+	 * Sorts the elements in this list according to their natural order. The sort is done in place and is stable.
+	 * @throws ClassCastException if the elements are not Comparable
+	 */
+	public void sort() {
+		sort(null);
+	}
+
+	/**
+	 * Sorts the elements in this list. The sort is done in place and is stable; lists with at least PARALLEL_SORT_THRESHOLD elements are sorted in parallel.
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @throws ClassCastException if comparator is null and the elements are not Comparable
+	 */
+	@SuppressWarnings("unchecked")
+	public void sort(Comparator<? super E> comparator) {
+		E[] array = (E[]) elements;
+		if (size >= PARALLEL_SORT_THRESHOLD) {
+			Arrays.parallelSort(array, 0, size, comparator);
+		}
+		else {
+			Arrays.sort(array, 0, size, comparator);
+		}
+	}
+
+	/**
+	 * Moves the k smallest elements of this list to its front in sorted order, without sorting the rest of the list, for example to show the first page of a large result.
+	 * The other elements follow in the order they had before. Equal elements keep their order, so the front of the list is the same as after a complete sort.
+	 * This takes O(n log k) time instead of O(n log n).
+	 * @param int k number of elements to sort; the whole list is sorted if k is at least its size
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @throws ClassCastException if comparator is null and the elements are not Comparable
+	 */
+	@SuppressWarnings("unchecked")
+	public void sortFirst(int k, Comparator<? super E> comparator) {
+		if (k >= size) {
+			sort(comparator);
+			return;
+		}
+		if (k <= 0) {
+			return;
+		}
+		Comparator<? super E> elementOrder = comparator != null ? comparator : (a, b) -> ((Comparable<? super E>) a).compareTo(b);
+		//max-heap of the k smallest positions seen so far; ties are broken by position, which keeps the selection stable
+		Comparator<Integer> order = (a, b) -> {
+			int c = elementOrder.compare((E) elements[a], (E) elements[b]);
+			return c != 0 ? c : Integer.compare(a, b);
+		};
+		PriorityQueue<Integer> largest = new PriorityQueue<Integer>(k + 1, order.reversed());
+		for (int i = 0; i < size; i++) {
+			if (largest.size() < k) {
+				largest.add(i);
+			}
+			else if (order.compare(i, largest.peek()) < 0) {
+				largest.poll();
+				largest.add(i);
+			}
+		}
+		Object[] sorted = new Object[elements.length];
+		boolean[] selected = new boolean[size];
+		for (int i = k - 1; i >= 0; i--) {
+			int index = largest.poll();
+			selected[index] = true;
+			sorted[i] = elements[index];
+		}
+		int next = k;
+		for (int i = 0; i < size; i++) {
+			if (!selected[i]) {
+				sorted[next++] = elements[i];
+			}
+		}
+		elements = sorted;
+	}
+
+	/**
+	 * Compares the specified object with this collection for equality
+	 * @param Object o to be compared
+	 * @return boolean value true if o is an ArrayBasedList with equal elements in the same order, and false otherwise
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof ArrayBasedList<?>)) {
+			return false;
+		}
+		ArrayBasedList<?> list = (ArrayBasedList<?>) o;
+		if (size != list.size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (!elements[i].equals(list.elements[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this collection.
+	 * @return int hash code value for this collection
+	 */
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31 * result + elements[i].hashCode();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of elements in this collection
+	 * @return int value of the number of elements in this collection
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if this collection contains no elements
+	 * @return boolean value true if this collection contains no elements, and false if the collection does contains elements
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns true if this collection contains the specified element
+	 * @param Object o to be searched for within this collection
+	 * @return boolean value true if this collection contains the specified element
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if (uniqueElements != null) {
+			return uniqueElements.contains(o);
+		}
+		return indexOf(o) >= 0;
+	}
+
+	/**
+	 * Returns an array containing all of the elements in this collection
+	 * @return array of type Object containing all of the elements in this collection
+	 */
+	@Override
+	public Object[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Returns an array containing all of the elements in this collection
+	 * The runtime type of the returned array is that of the specified array
+	 * @param Generic type array
+	 * @return Generic type array containing all of the elements in this collection
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+		if (a.length < size) {
+			return (T[]) Arrays.copyOf(elements, size, a.getClass());
+		}
+		System.arraycopy(elements, 0, a, 0, size);
+		if (a.length > size) {
+			a[size] = null;
+		}
+		return a;
+	}
+
+	/**
+	 * Ensures that this collection contains the specified element
+	 * @param Element e
+	 * @return boolean true if the element was added, and false if this list does not accept duplicates and already contains the element
+	 */
+	@Override
+	public boolean add(E e) {
+		if (uniqueElements != null && !uniqueElements.add(e)) {
+			return false;
+		}
+		append(e);
+		return true;
+	}
+
+	/**
+	 * Adds the specified element to the end of this list without checking for duplicates or updating the companion set.
+	 * Subclasses that keep their own index of elements use it to avoid the duplicate check done by add().
+	 * @param Element e to be added to the end of this list
+	 */
+	protected void append(E e) {
+		if (size == elements.length) {
+			ensureCapacity(size + 1);
+		}
+		elements[size++] = e;
+	}
+
+	/**
+	 * Removes a single instance of the specified element from this collection, if it is present
+	 * @param Object o
+	 * @return boolean true if Object o is in this collection, and remove the element; false is returned otherwise
+	 */
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		if (uniqueElements != null) {
+			uniqueElements.remove(elements[index]);
+		}
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		elements[--size] = null;
+		return true;
+	}
+
+	/**
+	 * Returns true if this collection contains all of the elements in the specified collection
+	 * @param Collection<?> c
+	 * @return boolean true if this collection contains all of the elements in the specified collection, and false otherwise
+	 */
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		for (Object o : c) {
+			if (!this.contains(o)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all of the elements in the specified collection to this collection, skipping duplicates if this list does not accept them.
+	 * @param Collection<? extends E> c elements to be added
+	 * @return boolean true if this collection changed
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		ensureCapacity(size + c.size());
+		boolean changed = false;
+		for (E e : c) {
+			if (add(e)) {
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes all of the elements of this collection that are also contained in the specified collection.
+	 * @param Collection<?> c elements to be removed
+	 * @return boolean true if this collection changed
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return filter(c, false);
+	}
+
+	/**
+	 * Retains only the elements of this collection that are contained in the specified collection.
+	 * @param Collection<?> c elements to be kept
+	 * @return boolean true if this collection changed
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return filter(c, true);
+	}
+
+	/**
+	 * Removes elements of this collection depending on whether they are contained in the specified collection, moving the kept elements to the front in a single pass.
+	 * @param Collection<?> c collection to be checked
+	 * @param boolean keepContained true to keep the elements contained in c, and false to remove them
+	 * @return boolean true if this collection changed
+	 */
+	private boolean filter(Collection<?> c, boolean keepContained) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			Object e = elements[i];
+			if (c.contains(e) == keepContained) {
+				elements[kept++] = e;
+			}
+			else if (uniqueElements != null) {
+				uniqueElements.remove(e);
+			}
+		}
+		if (kept == size) {
+			return false;
+		}
+		Arrays.fill(elements, kept, size, null);
+		size = kept;
+		return true;
+	}
+
+	/**
+	 * Removes all of the elements from this collection
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(elements, 0, size, null);
+		size = 0;
+		if (uniqueElements != null) {
+			uniqueElements.clear();
+		}
+	}
+
+	/**
+	 * Instantiates and returns and iterator object to be used to iterate over the elements in this collection
+	 * @return Iterator<E> iterator object to be used to iterate over the elements in this collection
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iter();
+	}
+
+	/**
+	 * Iter class is used to iterate over the elements of this collection in index order.
+	 * @author Claire Zhu
+	 */
+	private class Iter implements Iterator<E> {
+
+		private int index;
+
+		/**
+		 * Returns true if there is an element after the current position
+		 * @return boolean true if the next element in this collection exists, and false otherwise
+		 */
+		@Override
+		public boolean hasNext() {
+			return index < size;
+		}
+
+		/**
+		 * Returns the next element in this collection
+		 * @return Element value of the next element in this collection
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public E next() throws NoSuchElementException {
+			if (index >= size) throw new NoSuchElementException("You have reached the end of this collection.");
+			return (E) elements[index++];
+		}
+	}
+}
@@ -0,0 +1,306 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The CSVTokenizer class splits a line of a CSV file into its entries without creating a String for every entry.
+ * It follows the same rules as SFRestaurantData.splitCSVLine(): commas separate entries, double quotes (regular or smart quotes) surround entries that may contain commas,
+ * white space between entries is skipped and the last entry is trimmed.
+ * The quote characters are removed by moving the remaining bytes of the line to the left, so every entry is stored as an offset and a length into the line that was tokenized.
+ * Only the entries that are actually used need to be converted to Strings.
+ * @author Claire Zhu
+ */
+
+public class CSVTokenizer {
+
+	//bytes of the UTF-8 encoded smart quotes U+201C and U+201D are 0xE2 0x80 0x9C and 0xE2 0x80 0x9D
+	private static final byte SMART_QUOTE_1 = (byte) 0xE2;
+	private static final byte SMART_QUOTE_2 = (byte) 0x80;
+	private static final byte SMART_QUOTE_LEFT = (byte) 0x9C;
+	private static final byte SMART_QUOTE_RIGHT = (byte) 0x9D;
+
+	private byte[] line;
+	private int[] starts;
+	private int[] lengths;
+	private int count;
+	//dictionary that getSharedString() takes shared instances from, or null to create a new String every time
+	private StringDictionary strings;
+
+	/**
+	 * This default constructor constructs a new CSVTokenizer object that has not tokenized any line yet. Its getSharedString() method creates a new String every time.
+	 */
+	public CSVTokenizer() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new CSVTokenizer object whose getSharedString() method returns the shared instance kept by the given dictionary,
+	 * so repeated values, such as zip codes and violation descriptions, are stored only once.
+	 * @param StringDictionary strings dictionary of the values read so far; null to create a new String every time
+	 */
+	public CSVTokenizer(StringDictionary strings) {
+		starts = new int[32];
+		lengths = new int[32];
+		this.strings = strings;
+	}
+
+	/**
+	 * Returns the dictionary that getSharedString() takes shared instances from.
+	 * @return StringDictionary dictionary of this tokenizer, or null if it creates a new String every time
+	 */
+	public StringDictionary getDictionary() {
+		return strings;
+	}
+
+	/**
+	 * Splits the given line into entries. The bytes of the line are modified in place, so the entries can refer to them until the next call to this method.
+	 * @param byte[] line array containing the UTF-8 encoded line; it should not contain the line terminator
+	 * @param int offset of the first byte of the line
+	 * @param int length number of bytes in the line
+	 * @return int number of entries found on the line
+	 */
+	public int tokenize(byte[] line, int offset, int length) {
+		this.line = line;
+		this.count = 0;
+
+		int end = offset + length;
+		int write = offset; //index where the next byte of the current entry is written
+		int wordStart = offset;
+		boolean insideQuotes = false;
+		boolean insideEntry = false;
+
+		for (int i = offset; i < end; i++) {
+			byte nextByte = line[i];
+
+			// handle smart quotes as well as regular quotes
+			boolean smartQuote = nextByte == SMART_QUOTE_1 && i + 2 < end && line[i+1] == SMART_QUOTE_2
+					&& (line[i+2] == SMART_QUOTE_LEFT || line[i+2] == SMART_QUOTE_RIGHT);
+			if (nextByte == '"' || smartQuote) {
+				if (smartQuote) {
+					i += 2;
+				}
+				// change insideQuotes flag when nextByte is a quote
+				if (insideQuotes) {
+					insideQuotes = false;
+					insideEntry = false;
+				}
+				else {
+					insideQuotes = true;
+					insideEntry = true;
+				}
+			}
+			else if (isWhitespace(nextByte)) {
+				if (insideQuotes || insideEntry) {
+					// add it to the current entry
+					line[write++] = nextByte;
+				}
+				// skip all spaces between entries otherwise
+			}
+			else if (nextByte == ',') {
+				if (insideQuotes) { // comma inside an entry
+					line[write++] = nextByte;
+				}
+				else { // end of entry found
+					insideEntry = false;
+					addEntry(wordStart, write - wordStart);
+					wordStart = write;
+				}
+			}
+			else {
+				// add all other bytes to the current entry
+				line[write++] = nextByte;
+				insideEntry = true;
+			}
+		}
+
+		// add the last entry (assuming not empty), trimming the white space around it
+		if (write > wordStart) {
+			int start = wordStart;
+			while (start < write && (line[start] & 0xff) <= ' ') {
+				start++;
+			}
+			while (write > start && (line[write-1] & 0xff) <= ' ') {
+				write--;
+			}
+			addEntry(start, write - start);
+		}
+		return count;
+	}
+
+	/**
+	 * Records the position of an entry found on the current line.
+	 * @param int start index of the first byte of the entry
+	 * @param int length number of bytes in the entry
+	 */
+	private void addEntry(int start, int length) {
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			lengths = Arrays.copyOf(lengths, count * 2);
+		}
+		starts[count] = start;
+		lengths[count] = length;
+		count++;
+	}
+
+	/**
+	 * Returns true if the given byte is an ASCII white space character, using the same definition as Character.isWhitespace().
+	 * @param byte b to be examined
+	 * @return boolean true if b is a white space character
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Returns the number of entries found on the last tokenized line.
+	 * @return int number of entries
+	 */
+	public int getFieldCount() {
+		return count;
+	}
+
+	/**
+	 * Returns true if the entry at the given column is empty.
+	 * @param int column index of the entry
+	 * @return boolean true if the entry contains no characters
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public boolean isEmpty(int column) throws IndexOutOfBoundsException {
+		return getLength(column) == 0;
+	}
+
+	/**
+	 * Returns the array holding the bytes of the last tokenized line.
+	 * @return byte[] array containing the entries; they are valid until the next call to tokenize()
+	 */
+	public byte[] getBuffer() {
+		return line;
+	}
+
+	/**
+	 * Returns the index in getBuffer() of the first byte of the entry at the given column.
+	 * @param int column index of the entry
+	 * @return int index of the first byte of the entry
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public int getStart(int column) throws IndexOutOfBoundsException {
+		if (column < 0 || column >= count) throw new IndexOutOfBoundsException("Column value not within range.");
+		return starts[column];
+	}
+
+	/**
+	 * Returns the number of bytes in the entry at the given column.
+	 * @param int column index of the entry
+	 * @return int length of the entry in bytes
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public int getLength(int column) throws IndexOutOfBoundsException {
+		if (column < 0 || column >= count) throw new IndexOutOfBoundsException("Column value not within range.");
+		return lengths[column];
+	}
+
+	/**
+	 * Returns the entry at the given column as a new String.
+	 * @param int column index of the entry
+	 * @return String value of the entry
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public String getString(int column) throws IndexOutOfBoundsException {
+		return new String(line, getStart(column), getLength(column), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the entry at the given column as a String. If this tokenizer has a dictionary, the shared instance of the value is returned,
+	 * and a new String is only created the first time the value is seen. The dictionary keeps every value it is given,
+	 * so this should only be used for columns with few distinct values.
+	 * @param int column index of the entry
+	 * @return String value of the entry
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public String getSharedString(int column) throws IndexOutOfBoundsException {
+		if (strings != null) {
+			return strings.intern(line, getStart(column), getLength(column));
+		}
+		return getString(column);
+	}
+
+	/**
+	 * Parses the entry at the given column as a signed decimal integer, the same way Integer.parseInt() does, without creating a String.
+	 * @param int column index of the entry
+	 * @return int value of the entry
+	 * @throws NumberFormatException if the entry is not a valid integer
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public int getInt(int column) throws NumberFormatException, IndexOutOfBoundsException {
+		int start = getStart(column);
+		int end = start + getLength(column);
+		int i = start;
+		boolean negative = false;
+		if (i < end && (line[i] == '-' || line[i] == '+')) {
+			negative = line[i] == '-';
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("Invalid number input. Entry must contain digits.");
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid number input. Entry must only contain numerical digits.");
+			}
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("Invalid number input. Entry is out of range.");
+			}
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Invalid number input. Entry is out of range.");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses the entry at the given column as a decimal number such as "37.7749" or "-122.4194", without creating a String.
+	 * Numbers with more than 18 digits or with an exponent are passed to Double.parseDouble().
+	 * @param int column index of the entry
+	 * @return double value of the entry
+	 * @throws NumberFormatException if the entry is not a valid number
+	 * @throws IndexOutOfBoundsException if the line does not have an entry at the given column
+	 */
+	public double getDouble(int column) throws NumberFormatException, IndexOutOfBoundsException {
+		int start = getStart(column);
+		int end = start + getLength(column);
+		int i = start;
+		boolean negative = false;
+		if (i < end && (line[i] == '-' || line[i] == '+')) {
+			negative = line[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < end; i++) {
+			byte b = line[i];
+			if (b == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+				continue;
+			}
+			int digit = b - '0';
+			if (digit < 0 || digit > 9 || digits == 18) {
+				//exponents and very long numbers are rare, so they are left to the JDK
+				return Double.parseDouble(new String(line, start, end - start, StandardCharsets.US_ASCII));
+			}
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if (fractionDigits >= 0) {
+				fractionDigits++;
+			}
+		}
+		if (digits == 0) {
+			throw new NumberFormatException("Invalid number input. Entry must contain digits.");
+		}
+		double value = fractionDigits > 0 ? mantissa / Math.pow(10, fractionDigits) : mantissa;
+		return negative ? -value : value;
+	}
+}
@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The ConcurrentRestaurantList class shares one loaded RestaurantList between many threads.
+ * Readers search an immutable snapshot of the list without taking any lock. A writer never changes a snapshot that readers may be using, nor any Restaurant reachable from it:
+ * it copies the list and its restaurants, adds the new inspections to the copies, builds the indexes and the InspectionStore of the copy and then publishes it as the new snapshot.
+ * Restaurants without new inspections are copied with the view of the current InspectionStore as their list of inspections, so the new store copies their rows column by column
+ * and only the inspections of the changed restaurants are encoded; when no restaurant is added, the name, zip code and fuzzy name indexes of the current snapshot are shared.
+ * Since every snapshot is indexed and compacted before it is published, searches never build or compact anything, and never change the restaurants they read.
+ * @author Claire Zhu
+ */
+
+public class ConcurrentRestaurantList {
+
+	private volatile RestaurantList snapshot;
+
+	/**
+	 * Constructs a new ConcurrentRestaurantList object whose first snapshot is the given list.
+	 * The list must not be modified by the caller afterwards.
+	 * @param RestaurantList restaurantList restaurants to be shared
+	 */
+	public ConcurrentRestaurantList(RestaurantList restaurantList) {
+		restaurantList.buildIndex();
+		restaurantList.getInspectionStore();
+		snapshot = restaurantList;
+	}
+
+	/**
+	 * Returns the current snapshot. The snapshot is never changed by this class and must not be modified by the caller,
+	 * so it can be searched by any number of threads while new inspections are applied.
+	 * @return RestaurantList current snapshot of the restaurants
+	 */
+	public RestaurantList getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Searches the current snapshot for restaurants whose names contain the keyword as a substring (case insensitive).
+	 * @param String keyword (restaurant name) from user input.
+	 * @return RestaurantList list of the matching restaurants in sorted order, or null if the keyword is null or empty, or there are no matches.
+	 */
+	public RestaurantList getMatchingRestaurants(String keyword) {
+		return snapshot.getMatchingRestaurants(keyword);
+	}
+
+	/**
+	 * Searches the current snapshot for restaurants whose zip codes contain the keyword as a substring.
+	 * @param String keyword (restaurant zip code) from user input.
+	 * @return RestaurantList list of the matching restaurants in sorted order, or null if the keyword is null or empty, or there are no matches.
+	 */
+	public RestaurantList getMatchingZip(String keyword) {
+		return snapshot.getMatchingZip(keyword);
+	}
+
+	/**
+	 * Searches the current snapshot for restaurants whose names are spelled like the keyword, allowing a few typing mistakes in every word.
+	 * @param String keyword (restaurant name) from user input.
+	 * @return RestaurantList list of the matching restaurants, closest matches first, or null if the keyword is null or there are no matches.
+	 */
+	public RestaurantList getFuzzyMatchingRestaurants(String keyword) {
+		return snapshot.getFuzzyMatchingRestaurants(keyword);
+	}
+
+	/**
+	 * Searches the current snapshot for the restaurants matching a compound query, as described by RestaurantQuery.
+	 * @param String query from user input.
+	 * @return RestaurantList list of the matching restaurants in sorted order, or null if there are no matches.
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public RestaurantList getMatchingQuery(String query) throws IllegalArgumentException {
+		return snapshot.getMatchingQuery(query);
+	}
+
+	/**
+	 * Searches the current snapshot for one page of the restaurants matching a compound query; only the restaurants of the page are looked up.
+	 * @param String query from user input.
+	 * @param int offset number of matches to skip, in sorted order
+	 * @param int limit largest number of matches to return
+	 * @return RestaurantList list of the matching restaurants of the page in sorted order, or null if the page is empty.
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public RestaurantList getMatchingQuery(String query, int offset, int limit) throws IllegalArgumentException {
+		return snapshot.getMatchingQuery(query, offset, limit);
+	}
+
+	/**
+	 * Counts the restaurants of the current snapshot matching a compound query, without looking up Restaurant objects.
+	 * @param String query from user input.
+	 * @return int number of matching restaurants
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public int countMatchingQuery(String query) throws IllegalArgumentException {
+		return snapshot.countMatchingQuery(query);
+	}
+
+	/**
+	 * Searches the current snapshot for the restaurants within the given distance of a location whose latest inspection score is in the given range.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param double meters largest distance from the location
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return RestaurantList list of the matching restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid or the distance is negative
+	 */
+	public RestaurantList getRestaurantsWithin(double latitude, double longitude, double meters, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		return snapshot.getRestaurantsWithin(latitude, longitude, meters, minLatestScore, maxLatestScore);
+	}
+
+	/**
+	 * Searches the current snapshot for the k restaurants nearest to a location whose latest inspection score is in the given range.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param int k largest number of restaurants to return
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return RestaurantList list of the nearest matching restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid
+	 */
+	public RestaurantList getNearestRestaurants(double latitude, double longitude, int k, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		return snapshot.getNearestRestaurants(latitude, longitude, k, minLatestScore, maxLatestScore);
+	}
+
+	/**
+	 * Returns the number of restaurants in the current snapshot.
+	 * @return int number of restaurants
+	 */
+	public int size() {
+		return snapshot.size();
+	}
+
+	/**
+	 * Adds an inspection to the restaurant with the given name and zip code, creating the restaurant if it does not exist yet, and publishes a new snapshot.
+	 * Like merge(), this copies the restaurants of the snapshot and the rows of its InspectionStore, and builds the location index again,
+	 * so it takes time proportional to the size of the list; the other indexes are built again only if the restaurant is new. Many inspections should be applied together with a single call of merge().
+	 * @param Restaurant restaurant restaurant that was inspected; only its name, zip code, address, phone number and location are used
+	 * @param Inspection inspection to be added
+	 * @throws IllegalArgumentException if the inspection is null
+	 */
+	public void addInspection(Restaurant restaurant, Inspection inspection) throws IllegalArgumentException {
+		RestaurantList delta = new RestaurantList();
+		Restaurant copy = new Restaurant(restaurant.getName(), restaurant.getZip(), restaurant.getAddress(), restaurant.getPhone());
+		if (restaurant.hasLocation()) {
+			copy.setLocation(restaurant.getLatitude(), restaurant.getLongitude());
+		}
+		copy.addInspection(inspection);
+		delta.add(copy);
+		merge(delta);
+	}
+
+	/**
+	 * Merges a list of new restaurants and inspections into a new snapshot and publishes it.
+	 * Restaurants of the delta that are already in the snapshot (same name and zip code) are copied and receive the inspections of the delta that they do not have yet; other restaurants of the delta are added.
+	 * Applying many inspections in one call is much cheaper than applying them one at a time, since the list, its InspectionStore and the indexes that change are rebuilt once per call.
+	 * The restaurants of the new snapshot are in sorted order, followed by the new restaurants of the delta.
+	 * @param RestaurantList delta restaurants with the inspections to be added; the delta must not be modified by the caller afterwards
+	 */
+	public synchronized void merge(RestaurantList delta) {
+		RestaurantList current = snapshot;
+		Restaurant[] sorted = current.getSortedRestaurants();
+		//copies of the changed restaurants, at their ids in the current snapshot
+		Restaurant[] copies = new Restaurant[sorted.length];
+		ArrayList<Restaurant> added = new ArrayList<Restaurant>();
+		for (Restaurant update : delta) {
+			Restaurant restaurant = current.getRestaurant(update.getName(), update.getZip());
+			if (restaurant == null) {
+				added.add(update);
+				continue;
+			}
+			//readers may still be using the old Restaurant, so the inspections are added to a copy
+			Restaurant copy = new Restaurant(restaurant);
+			if (!copy.hasLocation() && update.hasLocation()) {
+				copy.setLocation(update.getLatitude(), update.getLongitude());
+			}
+			for (Inspection inspection : update.getListOfInspections()) {
+				if (!copy.hasInspection(inspection)) {
+					copy.addInspection(inspection);
+				}
+			}
+			copies[Arrays.binarySearch(sorted, restaurant)] = copy;
+		}
+
+		RestaurantList next = new RestaurantList();
+		next.ensureCapacity(sorted.length + added.size());
+		for (int id = 0; id < sorted.length; id++) {
+			if (copies[id] == null) {
+				//compacting the new snapshot changes the list of inspections of its restaurants, so even unchanged restaurants are copied; the copies share the rows of the current store
+				copies[id] = new Restaurant(sorted[id], true);
+			}
+			next.add(copies[id]);
+		}
+		for (Restaurant restaurant : added) {
+			next.add(restaurant);
+		}
+
+		if (added.isEmpty()) {
+			//the names and zip codes did not change, so the copies keep the ids of the current snapshot
+			next.buildIndex(current, copies);
+		}
+		else {
+			next.buildIndex();
+		}
+		next.compactInspections();
+		snapshot = next;
+	}
+}
@@ -1,18 +1,17 @@
-
-
 import java.util.Scanner;
 /**
  * Date class is used to represent a date.  
- * It stores the numerical values for month, day, and year, but can also store this information in a single string. 
+ * It stores the month, day, and year packed into a single int value (yyyymmdd), so dates can be compared with a single int comparison. 
+ * The "MM/DD/YYYY" string of the date is only built when it is requested. 
  * @author Claire Zhu
  */
 
 public class Date implements Comparable<Date>{
 	
+	private static final String INVALID_FORMAT = "Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.";
+	
+	private int value;
 	private String date;
-	private int month;
-	private int day;
-	private int year;
 	
 	/**
 	 * Constructs a new Date object with one specified date value. 
@@ -21,84 +20,137 @@ public class Date implements Comparable<Date>{
 	 */
 	public Date(String date) throws IllegalArgumentException {
 		if (date==null) {
-			throw new IllegalArgumentException("Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.");
+			throw new IllegalArgumentException(INVALID_FORMAT);
 		}
 		//validate that the date is in the format MM/DD/YYYY or MM/DD/YY
 		if (! (date.length() == 10 || date.length() == 8)){
-			throw new IllegalArgumentException("Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.");
+			throw new IllegalArgumentException(INVALID_FORMAT);
 		}
-		for (int i=0; i<date.length();i++) {
-			char datevalue = date.charAt(i);
-			if(i==0 || i==1 || i==3 || i==4) {
-				if (!(Character.isDigit(datevalue))) {
-					throw new IllegalArgumentException("Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.");
-				}
-			}
-			if((i==2) || (i==5)){
-				if (!(datevalue=='/')) {
-					throw new IllegalArgumentException("Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.");
-				}
-			}
-			if((i==6) || (i==7) || (i==8) || (i==9)){
-				if (!(Character.isDigit(datevalue))) {
-					throw new IllegalArgumentException("Invalid date input. Date must either be formatted as 'MM/DD/YYYY or MM/DD/YY'.");
-				}
-			}
+		if (date.charAt(2)!='/' || date.charAt(5)!='/') {
+			throw new IllegalArgumentException(INVALID_FORMAT);
 		}
 		
-		//Take substrings from the date parameter and assign them to values for month, day, and year integers
-		String[] dateSplit=date.split("/");
-		month = Integer.parseInt(dateSplit[0]);
-		day = Integer.parseInt(dateSplit[1]);
-		year=Integer.parseInt(dateSplit[2]);
+		//read the month, day, and year values directly from the characters of the date parameter
+		int month = digits(date, 0, 2);
+		int day = digits(date, 3, 5);
+		int year = digits(date, 6, date.length());
 		
-		//validate the month, day, and year values before assigning them to the Date object's variables
+		//validate the month, day, and year values before assigning them to the Date object's value
 		validateDateValues(month,day,year);
-		this.month=month;
-		this.day=day;
-		this.year=year;
-		
-		String formattedMonth=Integer.toString(month);
-		String formattedDay=Integer.toString(day);
-		String formattedYear=Integer.toString(year);
-		if (month<10) {
-			formattedMonth="0"+formattedMonth;
-		}
-		if (year<10) {
-			formattedYear="0"+formattedYear;
-		}
-		if (day<10) {
-			formattedDay="0"+formattedDay;
-		}
-		this.date=formattedMonth+"/"+formattedDay+"/"+formattedYear;
+		this.value=pack(month,day,year);
 	}
 	
 	/**
 	 * Constructs a new Date object with specified month, day, and year values.
 	 * @param int month value of this Date; must be a value from 1-12, inclusive.
 	 * @param int day value of this Date; 1 is acceptable the lower bound, and the acceptable upper bound is dependent on the month and year.
-	 * @param int year value of this Date; must be a value from 2000-2005, inclusive.
+	 * @param int year value of this Date; must be a value from 2000-2025, inclusive, or a two digit year from 0-25.
 	 * @throws IllegalArgumentException if any month, day, or year parameter is invalid. 
 	 */
 	public Date(int month, int day, int year) throws IllegalArgumentException {
 		//use validation method to validate that values are within the acceptable ranges
 		validateDateValues(month,day,year);
-		this.month=month;
-		this.day=day;
-		this.year=year;
-		String formattedMonth=Integer.toString(month);
-		String formattedDay=Integer.toString(day);
-		String formattedYear=Integer.toString(year);
-		if (month<10) {
-			formattedMonth="0"+formattedMonth;
+		this.value=pack(month,day,year);
+	}
+	
+	/**
+	 * Constructs a new Date object from a packed value that was returned by getValue() of a valid Date.
+	 * @param int value of the date in the form yyyymmdd
+	 */
+	private Date(int value) {
+		this.value=value;
+	}
+	
+	/**
+	 * Returns the Date with the given packed value, without validating it again.
+	 * @param int value of the date in the form yyyymmdd, as returned by getValue()
+	 * @return Date object with this value
+	 */
+	static Date fromValue(int value) {
+		return new Date(value);
+	}
+	
+	/**
+	 * Parses a date from the bytes of a CSV entry without creating a String. 
+	 * The month and day may have one or two digits and the year two or four digits, for example "3/7/2019" or "03/07/19".
+	 * @param byte[] bytes array containing the ASCII characters of the date
+	 * @param int offset of the first character of the date
+	 * @param int length number of characters in the date
+	 * @return Date object with the parsed month, day, and year
+	 * @throws IllegalArgumentException if the characters are not a valid date
+	 */
+	static Date parse(byte[] bytes, int offset, int length) throws IllegalArgumentException {
+		int end = offset + length;
+		int i = offset;
+		int month = 0;
+		int day = 0;
+		int year = 0;
+		for (int part = 0; part < 3; part++) {
+			int start = i;
+			int number = 0;
+			while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+				number = number * 10 + (bytes[i] - '0');
+				i++;
+			}
+			int count = i - start;
+			//month and day need one or two digits, and the year two or four
+			if ((part < 2 && (count < 1 || count > 2)) || (part == 2 && count != 2 && count != 4)) {
+				throw new IllegalArgumentException(INVALID_FORMAT);
+			}
+			if (part == 0) {
+				month = number;
+			}
+			else if (part == 1) {
+				day = number;
+			}
+			else {
+				year = number;
+			}
+			if (part < 2) {
+				if (i == end || bytes[i] != '/') {
+					throw new IllegalArgumentException(INVALID_FORMAT);
+				}
+				i++;
+			}
 		}
-		if (year<10) {
-			formattedYear="0"+formattedYear;
+		if (i != end) {
+			throw new IllegalArgumentException(INVALID_FORMAT);
 		}
-		if (day<10) {
-			formattedDay="0"+formattedDay;
+		return new Date(month, day, year);
+	}
+	
+	/**
+	 * Reads the digits of a date string as a number.
+	 * @param String date containing the digits
+	 * @param int start index of the first digit
+	 * @param int end index after the last digit
+	 * @return int value of the digits
+	 * @throws IllegalArgumentException if any of the characters is not a digit
+	 */
+	private static int digits(String date, int start, int end) throws IllegalArgumentException {
+		int number = 0;
+		for (int i = start; i < end; i++) {
+			char c = date.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException(INVALID_FORMAT);
+			}
+			number = number * 10 + (c - '0');
 		}
-		this.date=formattedMonth+"/"+formattedDay+"/"+formattedYear;
+		return number;
+	}
+	
+	/**
+	 * Packs month, day, and year values into a single int value yyyymmdd, whose order is the order of the dates. Two digit years are counted from 2000.
+	 * @param int month value
+	 * @param int day value
+	 * @param int year value
+	 * @return int packed value of the date
+	 */
+	private static int pack(int month, int day, int year) {
+		if (year < 100) {
+			year += 2000;
+		}
+		return year * 10000 + month * 100 + day;
 	}
 	
 
@@ -151,12 +203,12 @@ public class Date implements Comparable<Date>{
 	//Setters
 	/**
 	 * Validates and sets the date for this Date object.
-	 * @param String date value to be examined and set.
+	 * @param String date value to be examined and set, in the format MM/DD/YYYY or MM/DD/YY.
 	 * @throws IllegalArgumentException if the date value is invalid
 	 */
 	public void setDate(String date) throws IllegalArgumentException{
-		//validation here
-		this.date=date;
+		this.value=new Date(date).value;
+		this.date=null;
 	}
 	
 	/**
@@ -165,7 +217,8 @@ public class Date implements Comparable<Date>{
 	 */
 	public void setMonth(int month) {
 		//validation here
-		this.month=month;
+		this.value=pack(month,getDay(),getYear());
+		this.date=null;
 	}
 	
 	/**
@@ -174,7 +227,8 @@ public class Date implements Comparable<Date>{
 	 */
 	public void setDay(int day) {
 		//validation here
-		this.day=day;
+		this.value=pack(getMonth(),day,getYear());
+		this.date=null;
 	}
 	
 	/**
@@ -183,16 +237,25 @@ public class Date implements Comparable<Date>{
 	 */
 	public void setYear(int year) {
 		//validation here
-		this.year=year;
+		this.value=pack(getMonth(),getDay(),year);
+		this.date=null;
 	}
 	
 	//Getters
 	/**
 	 * Returns the date of this Date object. 
-	 * @return the String date value of this Date object. 
+	 * @return the String date value of this Date object in "MM/DD/YYYY" format. 
 	 */
 	public String getDate() {
-		return this.date;
+		return toString();
+	}
+	
+	/**
+	 * Returns the packed value of this Date object. 
+	 * @return the int value yyyymmdd of this Date object, which has the same order as the dates. 
+	 */
+	public int getValue() {
+		return this.value;
 	}
 	
 	/**
@@ -200,7 +263,7 @@ public class Date implements Comparable<Date>{
 	 * @return the int month value of this Date object. 
 	 */
 	public int getMonth() {
-		return this.month;
+		return this.value / 100 % 100;
 	}
 	
 	/**
@@ -208,15 +271,15 @@ public class Date implements Comparable<Date>{
 	 * @return the int day value of this Date object. 
 	 */
 	public int getDay() {
-		return this.day;
+		return this.value % 100;
 	}
 	
 	/**
 	 * Returns the year of this Date object. 
-	 * @return the int year value of this Date object. 
+	 * @return the int year value of this Date object; two digit years are returned as years from 2000. 
 	 */
 	public int getYear() {
-		return this.year;
+		return this.value / 10000;
 	}
 
 	
@@ -225,32 +288,27 @@ public class Date implements Comparable<Date>{
 	 */
 	@Override
 	public int compareTo(Date o) {
-		if (this.year<o.year) {
-			return -1;
-		}
-		if (this.year>o.year) {
-			return 1;
-		}
-		if (this.year==o.year) {
-			if (this.month<o.month) {
-				return -1;
-			}
-			if (this.month>o.month) {
-				return 1;
-			}
-			if (this.month==o.month) {
-				if (this.day<o.day) {
-					return -1;
-				}
-				if (this.day>o.day) {
-					return 1;
-				}
-				else {
-					return 0;
-				}
-			}
-		}
-		return 0;
+		//the packed values have the same order as the dates
+		return Integer.compare(this.value, o.value);
+	}
+	
+	/**
+	 * Compares the specified object with this Date for equality.
+	 * @param Object obj to be compared
+	 * @return boolean true if obj is a Date with the same month, day, and year, and false otherwise
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Date && ((Date) obj).value == this.value;
+	}
+	
+	/**
+	 * Returns the hash code value for this Date.
+	 * @return int hash code value for this Date
+	 */
+	@Override
+	public int hashCode() {
+		return this.value;
 	}
 	
 	/** 
@@ -258,13 +316,23 @@ public class Date implements Comparable<Date>{
 	 * @returns the string representation of this Date object in "MM/DD/YYYY" format.
 	 */
 	public String toString() {
-		if (this.date.length()==8) {
-			this.date=this.date.substring(0,6)+"20"+this.date.substring(6);
-			return this.date;
-		}
-		else {
-			return this.date;
+		if (this.date==null) {
+			int month = getMonth();
+			int day = getDay();
+			int year = getYear();
+			char[] chars = new char[10];
+			chars[0] = (char) ('0' + month / 10);
+			chars[1] = (char) ('0' + month % 10);
+			chars[2] = '/';
+			chars[3] = (char) ('0' + day / 10);
+			chars[4] = (char) ('0' + day % 10);
+			chars[5] = '/';
+			chars[6] = (char) ('0' + year / 1000 % 10);
+			chars[7] = (char) ('0' + year / 100 % 10);
+			chars[8] = (char) ('0' + year / 10 % 10);
+			chars[9] = (char) ('0' + year % 10);
+			this.date = new String(chars);
 		}
+		return this.date;
 	}
 }
-	
\ No newline at end of file
@@ -0,0 +1,377 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The FuzzyNameIndex class finds restaurants whose names are spelled like a keyword, allowing a few typing mistakes in every word, for example "tartene bakry" for "Tartine Bakery".
+ * Names are split into lower case words of letters and digits, and the distinct words are kept in a BK-tree ordered by Levenshtein distance,
+ * so the words within distance k of a keyword word are found by comparing the keyword to a small part of the vocabulary instead of to every name.
+ * Every restaurant is identified by its position in the sorted array of restaurants, like in NameIndex. A restaurant matches if every word of the keyword is close to one of the words of its name;
+ * the matches are ranked by the sum of those distances, and restaurants at the same distance are in sorted order.
+ * The words, their postings and the BK-tree are kept in flat buffers, so an index can be written to a RestaurantSnapshot and read back without building the tree again.
+ * @author Claire Zhu
+ */
+
+public class FuzzyNameIndex {
+
+	private static final int[] NO_MATCHES = new int[0];
+
+	//distinct words of the names, one after another: word i is from wordOffsets[i] (inclusive) to wordOffsets[i+1] (exclusive)
+	private CharBuffer words;
+	private IntBuffer wordOffsets;
+	//sorted ids of the restaurants whose names contain each word: those of word i are from postingOffsets[i] (inclusive) to postingOffsets[i+1] (exclusive)
+	private IntBuffer postingOffsets;
+	private IntBuffer postings;
+	//BK-tree over the words: node i holds word i; its children are linked through nextSibling, and edgeDistance is the distance of a child to its parent
+	private IntBuffer firstChild;
+	private IntBuffer nextSibling;
+	private IntBuffer edgeDistance;
+
+	/**
+	 * Constructs a new FuzzyNameIndex object for the given restaurants.
+	 * @param Restaurant[] restaurants array of restaurants sorted according to their natural order; the index of a restaurant in this array is its id
+	 */
+	public FuzzyNameIndex(Restaurant[] restaurants) {
+		HashMap<String, Integer> wordIds = new HashMap<String, Integer>();
+		ArrayList<String> wordList = new ArrayList<String>();
+		ArrayList<int[]> idLists = new ArrayList<int[]>();
+		int[] sizes = new int[16];
+
+		for (int id = 0; id < restaurants.length; id++) {
+			for (String word : splitWords(restaurants[id].getName())) {
+				Integer wordId = wordIds.get(word);
+				if (wordId == null) {
+					wordId = wordList.size();
+					wordIds.put(word, wordId);
+					wordList.add(word);
+					idLists.add(new int[2]);
+					if (wordId == sizes.length) {
+						sizes = Arrays.copyOf(sizes, sizes.length * 2);
+					}
+				}
+				int[] ids = idLists.get(wordId);
+				int size = sizes[wordId];
+				//ids are added in increasing order, so a repeated word of the same name is always the last id of the list
+				if (size > 0 && ids[size-1] == id) {
+					continue;
+				}
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, size * 2);
+					idLists.set(wordId, ids);
+				}
+				ids[size] = id;
+				sizes[wordId] = size + 1;
+			}
+		}
+
+		int count = wordList.size();
+		int[] offsets = new int[count + 1];
+		int[] ids = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			offsets[i + 1] = offsets[i] + wordList.get(i).length();
+			ids[i + 1] = ids[i] + sizes[i];
+		}
+		char[] characters = new char[offsets[count]];
+		int[] idArray = new int[ids[count]];
+		for (int i = 0; i < count; i++) {
+			wordList.get(i).getChars(0, wordList.get(i).length(), characters, offsets[i]);
+			System.arraycopy(idLists.get(i), 0, idArray, ids[i], sizes[i]);
+		}
+		words = CharBuffer.wrap(characters);
+		wordOffsets = IntBuffer.wrap(offsets);
+		postingOffsets = IntBuffer.wrap(ids);
+		postings = IntBuffer.wrap(idArray);
+
+		int[] firstChildren = new int[count];
+		int[] nextSiblings = new int[count];
+		int[] edgeDistances = new int[count];
+		Arrays.fill(firstChildren, -1);
+		Arrays.fill(nextSiblings, -1);
+		Levenshtein distance = new Levenshtein();
+		for (int i = 1; i < count; i++) {
+			insert(wordList, i, firstChildren, nextSiblings, edgeDistances, distance);
+		}
+		firstChild = IntBuffer.wrap(firstChildren);
+		nextSibling = IntBuffer.wrap(nextSiblings);
+		edgeDistance = IntBuffer.wrap(edgeDistances);
+	}
+
+	/**
+	 * Constructs a new FuzzyNameIndex object from buffers read from a snapshot.
+	 * @param CharBuffer words distinct words, one after another
+	 * @param IntBuffer wordOffsets start of every word, followed by the total length
+	 * @param IntBuffer postingOffsets start of the ids of every word, followed by the number of ids
+	 * @param IntBuffer postings ids of the restaurants of every word
+	 * @param IntBuffer firstChild first child of every node of the BK-tree, or -1
+	 * @param IntBuffer nextSibling next sibling of every node, or -1
+	 * @param IntBuffer edgeDistance distance of every node to its parent
+	 */
+	private FuzzyNameIndex(CharBuffer words, IntBuffer wordOffsets, IntBuffer postingOffsets, IntBuffer postings, IntBuffer firstChild, IntBuffer nextSibling, IntBuffer edgeDistance) {
+		this.words = words;
+		this.wordOffsets = wordOffsets;
+		this.postingOffsets = postingOffsets;
+		this.postings = postings;
+		this.firstChild = firstChild;
+		this.nextSibling = nextSibling;
+		this.edgeDistance = edgeDistance;
+	}
+
+	/**
+	 * Writes this index in the form read by read(ByteBuffer).
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	void write(DataOutputStream out) throws IOException {
+		RestaurantSnapshot.writeChars(out, words);
+		RestaurantSnapshot.writeInts(out, wordOffsets);
+		RestaurantSnapshot.writeInts(out, postingOffsets);
+		RestaurantSnapshot.writeInts(out, postings);
+		RestaurantSnapshot.writeInts(out, firstChild);
+		RestaurantSnapshot.writeInts(out, nextSibling);
+		RestaurantSnapshot.writeInts(out, edgeDistance);
+	}
+
+	/**
+	 * Reads an index written by write(DataOutputStream), starting at the position of the buffer and moving the position past it.
+	 * The index keeps views of the buffer instead of copying it, so the BK-tree is not built again.
+	 * @param ByteBuffer buffer to read from, for example a mapped snapshot file
+	 * @return FuzzyNameIndex index that was written
+	 */
+	static FuzzyNameIndex read(ByteBuffer buffer) {
+		CharBuffer words = RestaurantSnapshot.readChars(buffer);
+		IntBuffer wordOffsets = RestaurantSnapshot.readInts(buffer);
+		IntBuffer postingOffsets = RestaurantSnapshot.readInts(buffer);
+		IntBuffer postings = RestaurantSnapshot.readInts(buffer);
+		IntBuffer firstChild = RestaurantSnapshot.readInts(buffer);
+		IntBuffer nextSibling = RestaurantSnapshot.readInts(buffer);
+		IntBuffer edgeDistance = RestaurantSnapshot.readInts(buffer);
+		return new FuzzyNameIndex(words, wordOffsets, postingOffsets, postings, firstChild, nextSibling, edgeDistance);
+	}
+
+	/**
+	 * Adds a word below the root of the BK-tree, descending into the child at the same distance as long as there is one.
+	 * @param ArrayList<String> wordList distinct words
+	 * @param int word index of the word in wordList
+	 * @param int[] firstChildren first child of every node, or -1
+	 * @param int[] nextSiblings next sibling of every node, or -1
+	 * @param int[] edgeDistances distance of every node to its parent
+	 * @param Levenshtein distance reusable distance calculator
+	 */
+	private static void insert(ArrayList<String> wordList, int word, int[] firstChildren, int[] nextSiblings, int[] edgeDistances, Levenshtein distance) {
+		int node = 0;
+		while (true) {
+			int d = distance.compute(wordList.get(word), wordList.get(node));
+			int child = firstChildren[node];
+			while (child != -1 && edgeDistances[child] != d) {
+				child = nextSiblings[child];
+			}
+			if (child == -1) {
+				edgeDistances[word] = d;
+				nextSiblings[word] = firstChildren[node];
+				firstChildren[node] = word;
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Returns the word held by a node of the BK-tree.
+	 * @param int node index of the word
+	 * @return CharSequence view of the word
+	 */
+	private CharSequence getWord(int node) {
+		return words.subSequence(wordOffsets.get(node), wordOffsets.get(node + 1));
+	}
+
+	/**
+	 * Returns the number of distinct words of the names.
+	 * @return int size of the vocabulary
+	 */
+	public int getWordCount() {
+		return wordOffsets.limit() - 1;
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose names contain a word close to every word of the keyword, allowing more mistakes in longer words:
+	 * none in words of up to 2 characters, one in words of up to 5 characters, and two in longer words.
+	 * @param String keyword to search for; should not be null
+	 * @return int[] ids of the matching restaurants, closest first; empty if there are no matches
+	 */
+	public int[] find(String keyword) {
+		return find(keyword, -1);
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose names contain a word within the given edit distance of every word of the keyword.
+	 * @param String keyword to search for; should not be null
+	 * @param int maxDistance largest number of inserted, deleted or replaced characters allowed in each word; a negative value chooses it from the length of the word like find(String)
+	 * @return int[] ids of the matching restaurants, ranked by the sum of the distances of the words and then in sorted order; empty if there are no matches
+	 */
+	public int[] find(String keyword, int maxDistance) {
+		String[] keywordWords = splitWords(keyword);
+		if (keywordWords.length == 0 || getWordCount() == 0) {
+			return NO_MATCHES;
+		}
+		Levenshtein distance = new Levenshtein();
+		//ids of the restaurants matching all words so far, in increasing order, with the sum of their distances
+		int[] ids = null;
+		int[] distances = null;
+		int size = 0;
+		for (String word : keywordWords) {
+			int k = maxDistance >= 0 ? maxDistance : word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+			long[] matches = findWord(word, k, distance);
+			if (matches.length == 0) {
+				return NO_MATCHES;
+			}
+			if (ids == null) {
+				ids = new int[matches.length];
+				distances = new int[matches.length];
+				for (long match : matches) {
+					ids[size] = (int) (match >>> 32);
+					distances[size++] = (int) match;
+				}
+				continue;
+			}
+			//intersect with the matches of the earlier words, adding the distances
+			int kept = 0;
+			int j = 0;
+			for (int i = 0; i < size; i++) {
+				while (j < matches.length && (int) (matches[j] >>> 32) < ids[i]) {
+					j++;
+				}
+				if (j < matches.length && (int) (matches[j] >>> 32) == ids[i]) {
+					ids[kept] = ids[i];
+					distances[kept++] = distances[i] + (int) matches[j];
+				}
+			}
+			size = kept;
+			if (size == 0) {
+				return NO_MATCHES;
+			}
+		}
+
+		//rank by distance, and then by id
+		long[] ranked = new long[size];
+		for (int i = 0; i < size; i++) {
+			ranked[i] = ((long) distances[i] << 32) | ids[i];
+		}
+		Arrays.sort(ranked);
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = (int) ranked[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the restaurants whose names contain a word within distance k of the given word.
+	 * @param String word lower case word of the keyword
+	 * @param int k largest distance allowed
+	 * @param Levenshtein distance reusable distance calculator
+	 * @return long[] one value per matching restaurant in increasing order of id, holding the id in the upper 32 bits and the smallest distance of its words in the lower 32 bits
+	 */
+	private long[] findWord(String word, int k, Levenshtein distance) {
+		long[] matches = new long[16];
+		int size = 0;
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int d = distance.compute(word, getWord(node));
+			if (d <= k) {
+				for (int posting = postingOffsets.get(node); posting < postingOffsets.get(node + 1); posting++) {
+					if (size == matches.length) {
+						matches = Arrays.copyOf(matches, size * 2);
+					}
+					matches[size++] = ((long) postings.get(posting) << 32) | d;
+				}
+			}
+			//by the triangle inequality, only children whose distance to this node is within k of d can hold matches
+			for (int child = firstChild.get(node); child != -1; child = nextSibling.get(child)) {
+				if (Math.abs(edgeDistance.get(child) - d) <= k) {
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = child;
+				}
+			}
+		}
+
+		//the same restaurant may match through several words; keep its smallest distance, which sorts first
+		Arrays.sort(matches, 0, size);
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (kept == 0 || (matches[kept-1] >>> 32) != (matches[i] >>> 32)) {
+				matches[kept++] = matches[i];
+			}
+		}
+		return Arrays.copyOf(matches, kept);
+	}
+
+	/**
+	 * Splits a name into its lower case words, which are the runs of letters and digits.
+	 * @param String name to be split
+	 * @return String[] words of the name in order; empty if it has no letters or digits
+	 */
+	static String[] splitWords(String name) {
+		ArrayList<String> result = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= name.length(); i++) {
+			boolean wordCharacter = i < name.length() && Character.isLetterOrDigit(name.charAt(i));
+			if (wordCharacter && start < 0) {
+				start = i;
+			}
+			else if (!wordCharacter && start >= 0) {
+				result.add(Restaurant.foldCase(name.substring(start, i)));
+				start = -1;
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Levenshtein class computes the edit distance of two words with two reusable rows of the dynamic programming table.
+	 * @author Claire Zhu
+	 */
+	private static class Levenshtein {
+
+		private int[] previous = new int[32];
+		private int[] current = new int[32];
+
+		/**
+		 * Returns the smallest number of characters that have to be inserted, deleted or replaced to turn one word into the other.
+		 * @param CharSequence a first word
+		 * @param CharSequence b second word
+		 * @return int edit distance of the words
+		 */
+		int compute(CharSequence a, CharSequence b) {
+			int m = b.length();
+			if (previous.length <= m) {
+				previous = new int[m + 1];
+				current = new int[m + 1];
+			}
+			for (int j = 0; j <= m; j++) {
+				previous[j] = j;
+			}
+			for (int i = 1; i <= a.length(); i++) {
+				char c = a.charAt(i - 1);
+				current[0] = i;
+				for (int j = 1; j <= m; j++) {
+					int replace = previous[j-1] + (c == b.charAt(j - 1) ? 0 : 1);
+					current[j] = Math.min(replace, Math.min(previous[j], current[j-1]) + 1);
+				}
+				int[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+			return previous[m];
+		}
+	}
+}
@@ -0,0 +1,459 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The GeoIndex class finds the restaurants near a point, either all restaurants within a distance or the k nearest ones, optionally only those whose latest inspection score is in a range.
+ * The restaurants with a known location are stored in a uniform grid of latitude and longitude cells, which is sized so that a cell holds a few restaurants on average.
+ * The ids of the restaurants (their positions in the sorted array) and their coordinates are grouped by cell in parallel arrays, so a query only reads the cells around the point.
+ * Distances are great circle distances in meters. The grid does not wrap around the 180th meridian, which does not matter for the data of a single city.
+ * The index also keeps the centroid of the restaurants of every zip code, which can be used as the point of a query.
+ * An index can be written to a RestaurantSnapshot, and an index read back keeps its grid in the snapshot buffer instead of building it again.
+ * @author Claire Zhu
+ */
+
+public class GeoIndex {
+
+	//mean radius of the earth
+	private static final double EARTH_RADIUS = 6371008.8;
+	private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+	//average number of restaurants per cell that the grid is sized for
+	private static final int RESTAURANTS_PER_CELL = 4;
+	//smallest cell, about 55 meters from north to south
+	private static final double MIN_CELL_DEGREES = 0.0005;
+
+	private static final int[] NO_MATCHES = new int[0];
+
+	private Restaurant[] restaurants;
+	//south west corner of the grid, size of a cell and number of cells
+	private double minLatitude;
+	private double minLongitude;
+	private double cellDegrees;
+	private int columns;
+	private int rows;
+	//largest distance of a restaurant from the equator, used to bound the distances of cells that have not been read
+	private double maxAbsLatitude;
+	//cell c holds the entries from cellOffsets[c] (inclusive) to cellOffsets[c+1] (exclusive); cells are numbered row by row
+	private IntBuffer cellOffsets;
+	private IntBuffer ids;
+	private DoubleBuffer latitudes;
+	private DoubleBuffer longitudes;
+	//latitude and longitude of the centroid of every zip code
+	private HashMap<String, double[]> zipCentroids;
+
+	/**
+	 * Constructs a new GeoIndex object for the given restaurants. Restaurants without a location are not indexed.
+	 * @param Restaurant[] restaurants array of restaurants sorted according to their natural order; the index of a restaurant in this array is its id
+	 */
+	public GeoIndex(Restaurant[] restaurants) {
+		this.restaurants = restaurants;
+		int located = 0;
+		double maxLatitude = -90;
+		double maxLongitude = -180;
+		minLatitude = 90;
+		minLongitude = 180;
+		HashMap<String, double[]> sums = new HashMap<String, double[]>();
+		for (Restaurant restaurant : restaurants) {
+			if (!restaurant.hasLocation()) {
+				continue;
+			}
+			located++;
+			minLatitude = Math.min(minLatitude, restaurant.getLatitude());
+			maxLatitude = Math.max(maxLatitude, restaurant.getLatitude());
+			minLongitude = Math.min(minLongitude, restaurant.getLongitude());
+			maxLongitude = Math.max(maxLongitude, restaurant.getLongitude());
+			double[] sum = sums.get(restaurant.getZip());
+			if (sum == null) {
+				sum = new double[3];
+				sums.put(restaurant.getZip(), sum);
+			}
+			sum[0] += restaurant.getLatitude();
+			sum[1] += restaurant.getLongitude();
+			sum[2]++;
+		}
+		zipCentroids = new HashMap<String, double[]>(sums.size() * 2);
+		for (String zip : sums.keySet()) {
+			double[] sum = sums.get(zip);
+			zipCentroids.put(zip, new double[] {sum[0] / sum[2], sum[1] / sum[2]});
+		}
+		if (located == 0) {
+			minLatitude = 0;
+			minLongitude = 0;
+			maxLatitude = 0;
+			maxLongitude = 0;
+		}
+		maxAbsLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+
+		//square cells of about RESTAURANTS_PER_CELL restaurants each, but never so small that a long and narrow area needs more cells than that
+		double height = maxLatitude - minLatitude;
+		double width = maxLongitude - minLongitude;
+		double cells = Math.max(1, located / RESTAURANTS_PER_CELL);
+		cellDegrees = Math.max(MIN_CELL_DEGREES, Math.max(Math.sqrt(height * width / cells), Math.max(height, width) / cells));
+		columns = (int) (width / cellDegrees) + 1;
+		rows = (int) (height / cellDegrees) + 1;
+
+		//count the restaurants of every cell, turn the counts into offsets, and fill the cells in increasing order of id
+		int[] cellOfId = new int[restaurants.length];
+		int[] offsets = new int[columns * rows + 1];
+		for (int id = 0; id < restaurants.length; id++) {
+			cellOfId[id] = restaurants[id].hasLocation() ? cell(restaurants[id].getLatitude(), restaurants[id].getLongitude()) : -1;
+			if (cellOfId[id] >= 0) {
+				offsets[cellOfId[id] + 1]++;
+			}
+		}
+		for (int cell = 0; cell < columns * rows; cell++) {
+			offsets[cell + 1] += offsets[cell];
+		}
+		int[] entryIds = new int[located];
+		double[] entryLatitudes = new double[located];
+		double[] entryLongitudes = new double[located];
+		int[] next = Arrays.copyOf(offsets, columns * rows);
+		for (int id = 0; id < restaurants.length; id++) {
+			if (cellOfId[id] >= 0) {
+				int entry = next[cellOfId[id]]++;
+				entryIds[entry] = id;
+				entryLatitudes[entry] = restaurants[id].getLatitude();
+				entryLongitudes[entry] = restaurants[id].getLongitude();
+			}
+		}
+		cellOffsets = IntBuffer.wrap(offsets);
+		ids = IntBuffer.wrap(entryIds);
+		latitudes = DoubleBuffer.wrap(entryLatitudes);
+		longitudes = DoubleBuffer.wrap(entryLongitudes);
+	}
+
+	/**
+	 * Constructs a new GeoIndex object over the given restaurants without a grid, which is set by read(ByteBuffer, Restaurant[]).
+	 * @param Restaurant[] restaurants array of restaurants sorted according to their natural order
+	 * @param HashMap<String, double[]> zipCentroids latitude and longitude of the centroid of every zip code
+	 */
+	private GeoIndex(Restaurant[] restaurants, HashMap<String, double[]> zipCentroids) {
+		this.restaurants = restaurants;
+		this.zipCentroids = zipCentroids;
+	}
+
+	/**
+	 * Writes this index, except for the restaurants themselves, in the form read by read(ByteBuffer, Restaurant[]).
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	void write(DataOutputStream out) throws IOException {
+		out.writeDouble(minLatitude);
+		out.writeDouble(minLongitude);
+		out.writeDouble(cellDegrees);
+		out.writeInt(columns);
+		out.writeInt(rows);
+		out.writeDouble(maxAbsLatitude);
+		RestaurantSnapshot.writeInts(out, cellOffsets);
+		RestaurantSnapshot.writeInts(out, ids);
+		RestaurantSnapshot.writeDoubles(out, latitudes);
+		RestaurantSnapshot.writeDoubles(out, longitudes);
+		String[] zips = zipCentroids.keySet().toArray(new String[zipCentroids.size()]);
+		double[] centroids = new double[zips.length * 2];
+		for (int i = 0; i < zips.length; i++) {
+			centroids[i * 2] = zipCentroids.get(zips[i])[0];
+			centroids[i * 2 + 1] = zipCentroids.get(zips[i])[1];
+		}
+		RestaurantSnapshot.writeStrings(out, zips);
+		RestaurantSnapshot.writeDoubles(out, DoubleBuffer.wrap(centroids));
+	}
+
+	/**
+	 * Reads an index written by write(DataOutputStream), starting at the position of the buffer and moving the position past it.
+	 * The cells stay in the buffer; only the centroids of the zip codes are copied.
+	 * @param ByteBuffer buffer to read from, for example a mapped snapshot file
+	 * @param Restaurant[] restaurants the restaurants the index was built for, in sorted order
+	 * @return GeoIndex index that was written
+	 */
+	static GeoIndex read(ByteBuffer buffer, Restaurant[] restaurants) {
+		double minLatitude = buffer.getDouble();
+		double minLongitude = buffer.getDouble();
+		double cellDegrees = buffer.getDouble();
+		int columns = buffer.getInt();
+		int rows = buffer.getInt();
+		double maxAbsLatitude = buffer.getDouble();
+		IntBuffer cellOffsets = RestaurantSnapshot.readInts(buffer);
+		IntBuffer ids = RestaurantSnapshot.readInts(buffer);
+		DoubleBuffer latitudes = RestaurantSnapshot.readDoubles(buffer);
+		DoubleBuffer longitudes = RestaurantSnapshot.readDoubles(buffer);
+		String[] zips = RestaurantSnapshot.readStrings(buffer);
+		DoubleBuffer centroids = RestaurantSnapshot.readDoubles(buffer);
+		HashMap<String, double[]> zipCentroids = new HashMap<String, double[]>(zips.length * 2);
+		for (int i = 0; i < zips.length; i++) {
+			zipCentroids.put(zips[i], new double[] {centroids.get(i * 2), centroids.get(i * 2 + 1)});
+		}
+
+		GeoIndex index = new GeoIndex(restaurants, zipCentroids);
+		index.minLatitude = minLatitude;
+		index.minLongitude = minLongitude;
+		index.cellDegrees = cellDegrees;
+		index.columns = columns;
+		index.rows = rows;
+		index.maxAbsLatitude = maxAbsLatitude;
+		index.cellOffsets = cellOffsets;
+		index.ids = ids;
+		index.latitudes = latitudes;
+		index.longitudes = longitudes;
+		return index;
+	}
+
+	/**
+	 * Returns the cell of a location inside the grid.
+	 * @param double latitude in degrees
+	 * @param double longitude in degrees
+	 * @return int number of the cell
+	 */
+	private int cell(double latitude, double longitude) {
+		int row = Math.min(rows - 1, (int) ((latitude - minLatitude) / cellDegrees));
+		int column = Math.min(columns - 1, (int) ((longitude - minLongitude) / cellDegrees));
+		return row * columns + column;
+	}
+
+	/**
+	 * Returns the great circle distance between two locations, using the haversine formula.
+	 * @param double latitude1 latitude of the first location in degrees
+	 * @param double longitude1 longitude of the first location in degrees
+	 * @param double latitude2 latitude of the second location in degrees
+	 * @param double longitude2 longitude of the second location in degrees
+	 * @return double distance in meters
+	 */
+	public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+		double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+		double h = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+	/**
+	 * Returns the number of restaurants with a known location.
+	 * @return int number of indexed restaurants
+	 */
+	public int size() {
+		return ids.limit();
+	}
+
+	/**
+	 * Returns the centroid of the locations of the restaurants with the given zip code.
+	 * @param String zip code
+	 * @return double[] latitude and longitude of the centroid, or null if no restaurant with this zip code has a location
+	 */
+	public double[] getZipCentroid(String zip) {
+		double[] centroid = zipCentroids.get(zip);
+		return centroid == null ? null : centroid.clone();
+	}
+
+	/**
+	 * Returns the ids of the restaurants within the given distance of a location whose latest inspection score is in the given range.
+	 * Only the cells overlapping the bounding box of the circle are read.
+	 * @param double latitude of the center in degrees
+	 * @param double longitude of the center in degrees
+	 * @param double meters radius of the circle
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return int[] ids of the matching restaurants, nearest first and then in sorted order; empty if there are no matches
+	 * @throws IllegalArgumentException if the location is invalid or the radius is negative
+	 */
+	public int[] findWithin(double latitude, double longitude, double meters, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		checkLocation(latitude, longitude);
+		if (!(meters >= 0)) {
+			throw new IllegalArgumentException("Invalid distance input. Distance cannot be negative.");
+		}
+		if (ids.limit() == 0) {
+			return NO_MATCHES;
+		}
+		//bounding box of the circle; near a pole, a circle covers every longitude
+		double latitudeDelta = meters / METERS_PER_DEGREE;
+		double farthestLatitude = Math.min(90, Math.abs(latitude) + latitudeDelta);
+		double cos = Math.cos(Math.toRadians(farthestLatitude));
+		double longitudeDelta = cos < 1e-9 ? 360 : meters / (METERS_PER_DEGREE * cos);
+		int firstRow = clamp(Math.floor((latitude - latitudeDelta - minLatitude) / cellDegrees), rows);
+		int lastRow = clamp(Math.floor((latitude + latitudeDelta - minLatitude) / cellDegrees), rows);
+		int firstColumn = clamp(Math.floor((longitude - longitudeDelta - minLongitude) / cellDegrees), columns);
+		int lastColumn = clamp(Math.floor((longitude + longitudeDelta - minLongitude) / cellDegrees), columns);
+
+		long[] matches = new long[16];
+		int size = 0;
+		for (int row = firstRow; row <= lastRow; row++) {
+			int start = cellOffsets.get(row * columns + firstColumn);
+			int end = cellOffsets.get(row * columns + lastColumn + 1);
+			//the cells of a row are next to each other, so they are read as one range
+			for (int entry = start; entry < end; entry++) {
+				double d = distance(latitude, longitude, latitudes.get(entry), longitudes.get(entry));
+				if (d <= meters && hasLatestScore(ids.get(entry), minLatestScore, maxLatestScore)) {
+					if (size == matches.length) {
+						matches = Arrays.copyOf(matches, size * 2);
+					}
+					matches[size++] = key(d, ids.get(entry));
+				}
+			}
+		}
+		Arrays.sort(matches, 0, size);
+		return toIds(matches, size);
+	}
+
+	/**
+	 * Returns the ids of the k restaurants nearest to a location whose latest inspection score is in the given range.
+	 * The cells are read in rings of growing distance around the cell of the location, until no unread cell can hold a restaurant nearer than the k nearest found so far.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param int k largest number of restaurants to return
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return int[] ids of at most k restaurants, nearest first and then in sorted order; empty if there are no matches
+	 * @throws IllegalArgumentException if the location is invalid
+	 */
+	public int[] findNearest(double latitude, double longitude, int k, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		checkLocation(latitude, longitude);
+		if (k <= 0 || ids.limit() == 0) {
+			return NO_MATCHES;
+		}
+		//cell of the location, which may be outside of the grid
+		long centerRow = (long) Math.floor((latitude - minLatitude) / cellDegrees);
+		long centerColumn = (long) Math.floor((longitude - minLongitude) / cellDegrees);
+		//rings nearer than the grid have no cells
+		long ring = Math.max(0, Math.max(Math.max(centerRow - (rows - 1), -centerRow), Math.max(centerColumn - (columns - 1), -centerColumn)));
+		double cosLimit = Math.cos(Math.toRadians(Math.max(maxAbsLatitude, Math.abs(latitude))));
+
+		//the k nearest restaurants found so far, farthest first
+		PriorityQueue<Long> nearest = new PriorityQueue<Long>(k + 1, Collections.reverseOrder());
+		while (true) {
+			long top = centerRow - ring;
+			long bottom = centerRow + ring;
+			long left = centerColumn - ring;
+			long right = centerColumn + ring;
+			for (long row = Math.max(0, top); row <= Math.min(rows - 1, bottom); row++) {
+				if (row == top || row == bottom) {
+					readCells(row, left, right, latitude, longitude, k, minLatestScore, maxLatestScore, nearest);
+				}
+				else {
+					readCells(row, left, left, latitude, longitude, k, minLatestScore, maxLatestScore, nearest);
+					readCells(row, right, right, latitude, longitude, k, minLatestScore, maxLatestScore, nearest);
+				}
+			}
+			if (top <= 0 && left <= 0 && bottom >= rows - 1 && right >= columns - 1) {
+				break;
+			}
+			if (nearest.size() == k) {
+				//every unread cell is farther north or south, or farther east or west, than the cells read so far
+				double latitudeGap = Math.min(latitude - (minLatitude + top * cellDegrees), minLatitude + (bottom + 1) * cellDegrees - latitude);
+				double longitudeGap = Math.min(longitude - (minLongitude + left * cellDegrees), minLongitude + (right + 1) * cellDegrees - longitude);
+				double bound = Math.min(latitudeGap * METERS_PER_DEGREE,
+						2 * EARTH_RADIUS * Math.asin(cosLimit * Math.sin(Math.toRadians(Math.min(longitudeGap, 180)) / 2)));
+				if (bound > Float.intBitsToFloat((int) (nearest.peek() >>> 32))) {
+					break;
+				}
+			}
+			ring++;
+		}
+
+		long[] matches = new long[nearest.size()];
+		for (int i = matches.length - 1; i >= 0; i--) {
+			matches[i] = nearest.poll();
+		}
+		return toIds(matches, matches.length);
+	}
+
+	/**
+	 * Adds the restaurants of a range of cells in one row to the k nearest restaurants found so far. Columns outside of the grid are ignored.
+	 * @param long row of the cells
+	 * @param long firstColumn first column of the cells, which may be outside of the grid
+	 * @param long lastColumn last column of the cells, which may be outside of the grid
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param int k largest number of restaurants to keep
+	 * @param int minLatestScore lowest accepted score of the latest inspection
+	 * @param int maxLatestScore highest accepted score of the latest inspection
+	 * @param PriorityQueue<Long> nearest keys of the nearest restaurants, farthest first
+	 */
+	private void readCells(long row, long firstColumn, long lastColumn, double latitude, double longitude, int k, int minLatestScore, int maxLatestScore, PriorityQueue<Long> nearest) {
+		firstColumn = Math.max(0, firstColumn);
+		lastColumn = Math.min(columns - 1, lastColumn);
+		if (firstColumn > lastColumn) {
+			return;
+		}
+		int start = cellOffsets.get((int) (row * columns + firstColumn));
+		int end = cellOffsets.get((int) (row * columns + lastColumn + 1));
+		for (int entry = start; entry < end; entry++) {
+			long key = key(distance(latitude, longitude, latitudes.get(entry), longitudes.get(entry)), ids.get(entry));
+			if ((nearest.size() < k || key < nearest.peek()) && hasLatestScore(ids.get(entry), minLatestScore, maxLatestScore)) {
+				nearest.add(key);
+				if (nearest.size() > k) {
+					nearest.poll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the score of the latest inspection of a restaurant is in the given range. The range is not checked if it accepts every score.
+	 * @param int id of the restaurant
+	 * @param int minLatestScore lowest accepted score
+	 * @param int maxLatestScore highest accepted score
+	 * @return boolean true if the restaurant is accepted
+	 */
+	private boolean hasLatestScore(int id, int minLatestScore, int maxLatestScore) {
+		if (minLatestScore == Integer.MIN_VALUE && maxLatestScore == Integer.MAX_VALUE) {
+			return true;
+		}
+		//the inspections are read when the query runs, so inspections added after the index was built are taken into account
+		List<Inspection> inspections = restaurants[id].getListOfInspections();
+		if (inspections.isEmpty()) {
+			return false;
+		}
+		int score = inspections.get(inspections.size() - 1).getScore();
+		return score >= minLatestScore && score <= maxLatestScore;
+	}
+
+	/**
+	 * Packs a distance and an id into a key that sorts by distance and then by id.
+	 * @param double distance non negative distance in meters
+	 * @param int id of the restaurant
+	 * @return long key with the float bits of the distance in the upper 32 bits, which sort like the distances since they are not negative
+	 */
+	private static long key(double distance, int id) {
+		return ((long) Float.floatToIntBits((float) distance) << 32) | id;
+	}
+
+	/**
+	 * Extracts the ids of sorted keys.
+	 * @param long[] keys sorted keys
+	 * @param int size number of keys used
+	 * @return int[] ids in the order of the keys
+	 */
+	private static int[] toIds(long[] keys, int size) {
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = (int) keys[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Limits a row or column number to the grid.
+	 * @param double value row or column, which may be outside of the grid
+	 * @param int count number of rows or columns
+	 * @return int nearest row or column of the grid
+	 */
+	private static int clamp(double value, int count) {
+		return (int) Math.max(0, Math.min(count - 1, value));
+	}
+
+	/**
+	 * Checks the location of a query.
+	 * @param double latitude in degrees
+	 * @param double longitude in degrees
+	 * @throws IllegalArgumentException if a coordinate is out of range or not a number
+	 */
+	private static void checkLocation(double latitude, double longitude) throws IllegalArgumentException {
+		if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+			throw new IllegalArgumentException("Invalid location input. Latitude must be from -90 to 90 and longitude from -180 to 180.");
+		}
+	}
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Histogram class counts non negative long values, such as query latencies in nanoseconds or result sizes, in buckets of bounded relative size, like an HdrHistogram.
+ * Values below 256 have a bucket of their own; larger values share a bucket with the values that have the same 8 highest bits, so a bucket is at most 1/128 of its lowest value wide
+ * and percentiles are exact to within 1 percent of the value, while the whole range of long values fits in a few thousand counters.
+ * Values are recorded without locking, so many threads can record into the same histogram. Statistics read while values are being recorded may miss the most recent values.
+ * @author Claire Zhu
+ */
+
+public class Histogram {
+
+	//number of bits of a value that select its bucket; values below 2^SUB_BUCKET_BITS are counted exactly
+	private static final int SUB_BUCKET_BITS = 8;
+	private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + (1 << SUB_BUCKET_BITS);
+
+	private final AtomicLongArray counts;
+	private final LongAdder count;
+	private final LongAdder sum;
+	private final LongAccumulator max;
+
+	/**
+	 * This default constructor constructs a new empty Histogram object.
+	 */
+	public Histogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new LongAccumulator(Math::max, 0);
+	}
+
+	/**
+	 * Counts one value.
+	 * @param long value to be counted; negative values are counted as 0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns the number of values counted.
+	 * @return long number of values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean of the values counted.
+	 * @return double mean value, or 0 if no values were counted
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the largest value counted.
+	 * @return long largest value, or 0 if no values were counted
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value below or at which the given percentage of the counted values are.
+	 * @param double percentile from 0 to 100, for example 99 for the 99th percentile
+	 * @return long largest value of the bucket holding the percentile, never more than getMax(); 0 if no values were counted
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Removes all counted values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Returns a String representation of the statistics of this histogram, with the values divided by the given unit.
+	 * @param double unit value of one unit, for example 1000 to show nanoseconds as microseconds
+	 * @return String with the count, mean, 50th, 90th, 99th and 99.9th percentiles and the maximum
+	 */
+	public String toString(double unit) {
+		return String.format("count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f", getCount(), getMean() / unit,
+				getValueAtPercentile(50) / unit, getValueAtPercentile(90) / unit, getValueAtPercentile(99) / unit, getValueAtPercentile(99.9) / unit, getMax() / unit);
+	}
+
+	/**
+	 * Returns a String representation of the statistics of this histogram.
+	 * @return String with the count, mean, 50th, 90th, 99th and 99.9th percentiles and the maximum
+	 */
+	@Override
+	public String toString() {
+		return toString(1);
+	}
+
+	/**
+	 * Returns the bucket of a value. A value with more than 8 bits is shifted right until it has 8 bits, and the shift selects a group of 128 buckets.
+	 * @param long value from 0 to Long.MAX_VALUE
+	 * @return int index of the bucket
+	 */
+	private static int bucketOf(long value) {
+		int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the largest value counted in a bucket.
+	 * @param int index of the bucket
+	 * @return long largest value of the bucket
+	 */
+	private static long highestValueOf(int bucket) {
+		if (bucket < 1 << SUB_BUCKET_BITS) {
+			return bucket;
+		}
+		int shift = bucket / HALF_SUB_BUCKETS - 1;
+		long lowest = (long) (bucket - shift * HALF_SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
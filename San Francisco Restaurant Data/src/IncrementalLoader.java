@@ -0,0 +1,101 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The IncrementalLoader class adds new inspection rows to restaurants that are already loaded, without reloading the whole data set.
+ * It reads either a separate delta file, starting at position 0, or the part of a growing data file that was appended after a position returned by an earlier load.
+ * Rows are matched to existing restaurants by name (case insensitive) and zip code, and rows whose inspection the restaurant already has are skipped,
+ * so a file can be loaded again after it was partly or completely loaded before.
+ * A last line without a line terminator is treated as still being written: it is not loaded, and the next load starts at its beginning.
+ * @author Claire Zhu
+ */
+
+public class IncrementalLoader {
+
+	private File file;
+	private long position;
+	//shared by all loads, so the values of the rows added by different loads are stored only once
+	private StringDictionary strings;
+
+	/**
+	 * Constructs a new IncrementalLoader object that loads a delta file from its beginning.
+	 * @param File file containing the new restaurant inspections in CSV format
+	 */
+	public IncrementalLoader(File file) {
+		this(file, 0);
+	}
+
+	/**
+	 * Constructs a new IncrementalLoader object that loads the rows of a file after the given position.
+	 * @param File file containing the restaurant inspections in CSV format
+	 * @param long position of the first line to load, for example the value of RestaurantDataReader.getPosition() after the file was loaded
+	 */
+	public IncrementalLoader(File file, long position) {
+		this.file = file;
+		this.position = position;
+		this.strings = new StringDictionary();
+	}
+
+	/**
+	 * Returns the position in the file right after the last complete line that was loaded. The next call to loadInto() starts at this position.
+	 * @return long position of the first line that has not been loaded
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Loads the complete lines after the current position into the given list, adding inspections to its restaurants with addInspection() and adding new restaurants.
+	 * The list is modified in place, so it must not be searched by other threads at the same time; buildIndex() should be called again afterwards.
+	 * @param RestaurantList restaurantList list that the new restaurants and inspections are added to
+	 * @return int number of rows that were added
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized int loadInto(RestaurantList restaurantList) throws IOException {
+		long start = System.nanoTime();
+		RestaurantDataReader reader = new RestaurantDataReader(file, position, strings);
+		int rows = 0;
+		try {
+			while (reader.nextRecord() && reader.isLineTerminated()) {
+				if (RestaurantDataReader.isHeader(reader.getFields())) {
+					continue;
+				}
+				try {
+					if (RestaurantDataReader.addRecord(reader.getFields(), restaurantList, true)) {
+						rows++;
+					}
+				}
+				catch (IllegalArgumentException e) {
+					//skip rows with invalid values
+					RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.INVALID_VALUE);
+				}
+				catch (IndexOutOfBoundsException e) {
+					//skip rows that do not have enough entries
+					RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.MISSING_COLUMNS);
+				}
+			}
+			RestaurantDataMetrics.getInstance().recordLoad(rows, reader.getPosition() - position, System.nanoTime() - start);
+			position = reader.getPosition();
+		}
+		finally {
+			reader.close();
+		}
+		return rows;
+	}
+
+	/**
+	 * Loads the complete lines after the current position into a delta list and merges it into the given shared list, which publishes a new snapshot.
+	 * Readers of the shared list are not blocked, and see either none or all of the new rows.
+	 * @param ConcurrentRestaurantList restaurantList shared list that the new restaurants and inspections are merged into
+	 * @return int number of rows that were read into the delta; rows whose inspection the shared list already has are not added again by the merge
+	 * @throws IOException if the file cannot be read
+	 */
+	public int loadInto(ConcurrentRestaurantList restaurantList) throws IOException {
+		RestaurantList delta = new RestaurantList();
+		int rows = loadInto(delta);
+		if (rows > 0) {
+			restaurantList.merge(delta);
+		}
+		return rows;
+	}
+}
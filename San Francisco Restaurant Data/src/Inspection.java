@@ -1,10 +1,9 @@
-
-
-
+import java.io.IOException;
 
 /**
  * The Inspection Class used to represent the particular inspection of a restaurant.
- * This class stores the date of the inspection, the assigned score, the violation description and the risk category.
+ * This class stores the date of the inspection, the assigned score, the violation description and the risk category,
+ * and a key of the row of the data set that the inspection was read from, which tells apart rows with equal values.
  * @author Claire Zhu
  */
 
@@ -13,6 +12,8 @@ public class Inspection implements Comparable<Inspection>{
 	private int score;
 	private String violation;
 	private String risk;
+	//hash of the inspection and violation ids of the row, or 0 if the row is not known
+	private long rowKey;
 	
 	/**
 	 * Constructs a new Inspection object with specified date value, score value, violation value, and risk value.
@@ -44,6 +45,57 @@ public class Inspection implements Comparable<Inspection>{
 		return(this.date.compareTo(i.date));
 	}
 
+	/**
+	 * Compares the specified object with this Inspection for equality.
+	 * @param Object obj to be compared
+	 * @return boolean true if obj is an Inspection with the same date, score, violation, and risk values, and false otherwise
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Inspection))
+			return false;
+		Inspection other = (Inspection) obj;
+		if (!date.equals(other.date) || score != other.score)
+			return false;
+		if (violation == null ? other.violation != null : !violation.equals(other.violation))
+			return false;
+		if (risk == null ? other.risk != null : !risk.equals(other.risk))
+			return false;
+		return true;
+	}
+	
+	/**
+	 * Returns the hash code value for this Inspection, which is consistent with equals().
+	 * @return int hash code value for this Inspection
+	 */
+	@Override
+	public int hashCode() {
+		int result = 31 + date.hashCode();
+		result = 31 * result + score;
+		result = 31 * result + (violation == null ? 0 : violation.hashCode());
+		result = 31 * result + (risk == null ? 0 : risk.hashCode());
+		return result;
+	}
+
+	/**
+	 * Returns true if this Inspection and the given one were read from the same row of the data set.
+	 * Rows are compared by their keys, so distinct rows with equal values are told apart. Only inspections that both have no key are compared with equals();
+	 * an inspection with a key and one without are never the same row.
+	 * @param Inspection other inspection to be compared
+	 * @return boolean true if both inspections represent the same row
+	 */
+	public boolean isSameRow(Inspection other) {
+		if (other == null) {
+			return false;
+		}
+		if (rowKey != 0 || other.rowKey != 0) {
+			return rowKey == other.rowKey;
+		}
+		return equals(other);
+	}
+
 	//setters
 	/**
 	 * Sets the date for this Inspection object.
@@ -75,6 +127,14 @@ public class Inspection implements Comparable<Inspection>{
 		this.risk=risk;
 	}
 	
+	/**
+	 * Sets the key of the row of the data set that this Inspection was read from.
+	 * @param long rowKey hash of the inspection and violation ids of the row, or 0 if the row is not known
+	 */
+	public void setRowKey(long rowKey) {
+		this.rowKey=rowKey;
+	}
+	
 	//getters
 	/**
 	 * Returns the date of this Inspection object. 
@@ -107,26 +167,41 @@ public class Inspection implements Comparable<Inspection>{
 		return this.risk;
 	}
 	
+	/**
+	 * Returns the key of the row of the data set that this Inspection was read from.
+	 * @return long hash of the inspection and violation ids of the row, or 0 if the row is not known
+	 */
+	public long getRowKey() {
+		return this.rowKey;
+	}
+	
 	/**
 	 * Returns the string representation of this Inspection. 
 	 * @return the string representation of the date, score, violation, and risk values of this Inspection.
 	 */
 	public String toString() {
-		String s = "";
-		s+=date.toString()+", "+Integer.toString(score);
-		if (this.violation == null || this.violation.equals("")) {
-			if (this.risk == null || this.risk.equals("")) {
-				return s;
-			}
-			else {
-				return s+=", "+this.risk;
-			}
+		StringBuilder s = new StringBuilder(64);
+		try {
+			appendTo(s);
 		}
-		else if (this.risk ==null || this.risk.equals("")) {
-			return s+=", "+this.violation;
+		catch (IOException e) {
+			//a StringBuilder never throws an IOException
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * Appends the string representation of this Inspection, as returned by toString(), to the given output.
+	 * @param Appendable out output that the representation is written to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		out.append(date.toString()).append(", ").append(Integer.toString(score));
+		if (this.violation != null && !this.violation.equals("")) {
+			out.append(", ").append(this.violation);
 		}
-		else {
-			return s+=", "+this.violation+", "+this.risk;
+		if (this.risk != null && !this.risk.equals("")) {
+			out.append(", ").append(this.risk);
 		}
 	}
 
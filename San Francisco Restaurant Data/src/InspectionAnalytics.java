@@ -0,0 +1,591 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * The InspectionAnalytics class computes aggregates and rankings of the inspections of an InspectionStore, such as the average score per zip code,
+ * the number of high risk violations per month, or the worst scoring restaurants of the last 90 days.
+ * Every query reads the primitive columns of the store in a single pass, without creating Inspection or Date objects.
+ * The restaurants are split into chunks whose rows are processed in parallel, each into its own partial result, and the partial results are combined at the end.
+ * The store never changes, so an InspectionAnalytics object can be used by several threads; it has to be created again to include inspections added later.
+ * @author Claire Zhu
+ */
+
+public class InspectionAnalytics {
+
+	//smallest number of rows given to one parallel task
+	private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+	private final InspectionStore store;
+	//numeric zip code of every restaurant, and the range of months of the inspections
+	private final int[] restaurantZips;
+	private final int firstMonth;
+	private final int monthCount;
+
+	/**
+	 * Constructs a new InspectionAnalytics object over the inspections of the given list, compacting them into an InspectionStore if they are not already.
+	 * @param RestaurantList restaurantList list whose inspections are analyzed
+	 */
+	public InspectionAnalytics(RestaurantList restaurantList) {
+		this(restaurantList.getInspectionStore());
+	}
+
+	/**
+	 * Constructs a new InspectionAnalytics object over the inspections of the given store.
+	 * @param InspectionStore store holding the inspections
+	 */
+	public InspectionAnalytics(InspectionStore store) {
+		this.store = store;
+		Restaurant[] restaurants = store.getRestaurants();
+		restaurantZips = new int[restaurants.length];
+		for (int id = 0; id < restaurants.length; id++) {
+			restaurantZips[id] = ZipIndex.parseZip(restaurants[id].getZip());
+		}
+		int first = Integer.MAX_VALUE;
+		int last = Integer.MIN_VALUE;
+		for (int row = 0; row < store.size(); row++) {
+			int month = toMonth(store.getDate(row));
+			first = Math.min(first, month);
+			last = Math.max(last, month);
+		}
+		firstMonth = store.size() == 0 ? 0 : first;
+		monthCount = store.size() == 0 ? 0 : last - first + 1;
+	}
+
+	/**
+	 * Returns the number of months since year 0 of a date.
+	 * @param int date in the form yyyymmdd
+	 * @return int month number
+	 */
+	private static int toMonth(int date) {
+		return date / 10000 * 12 + date / 100 % 100 - 1;
+	}
+
+	/**
+	 * Returns the number of inspections accepted by the filter, and their average, lowest and highest scores.
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return Group aggregate of the inspections, whose key is null
+	 */
+	public Group getTotal(Filter filter) {
+		Aggregates aggregates = aggregate(filter, 1, (row, id) -> 0);
+		return aggregates.toGroup(0, null);
+	}
+
+	/**
+	 * Groups the inspections accepted by the filter by the zip code of their restaurant.
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return List<Group> groups of the zip codes with at least one inspection, in zip code order
+	 */
+	public List<Group> groupByZip(Filter filter) {
+		int[] zips = IntStream.of(restaurantZips).filter(zip -> zip >= 0).distinct().sorted().toArray();
+		int[] restaurantGroups = new int[restaurantZips.length];
+		for (int id = 0; id < restaurantZips.length; id++) {
+			restaurantGroups[id] = Arrays.binarySearch(zips, restaurantZips[id]);
+		}
+		Aggregates aggregates = aggregate(filter, zips.length, (row, id) -> restaurantGroups[id]);
+		List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i < zips.length; i++) {
+			if (aggregates.count[i] > 0) {
+				groups.add(aggregates.toGroup(i, String.format("%05d", zips[i])));
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Groups the inspections accepted by the filter by the month of their date.
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return List<Group> groups of the months with at least one inspection, in date order; the keys have the form "MM/YYYY"
+	 */
+	public List<Group> groupByMonth(Filter filter) {
+		Aggregates aggregates = aggregate(filter, monthCount, (row, id) -> toMonth(store.getDate(row)) - firstMonth);
+		List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i < monthCount; i++) {
+			if (aggregates.count[i] > 0) {
+				int month = firstMonth + i;
+				groups.add(aggregates.toGroup(i, String.format("%02d/%04d", month % 12 + 1, month / 12)));
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Groups the inspections accepted by the filter by their risk category.
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return List<Group> groups of the risk categories with at least one inspection, in the order the categories were first seen;
+	 * the key of the group of inspections without a risk category is null
+	 */
+	public List<Group> groupByRisk(Filter filter) {
+		StringDictionary risks = store.getRiskDictionary();
+		Aggregates aggregates = aggregate(filter, risks.size() + 1, (row, id) -> store.getRiskCode(row) + 1);
+		List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i <= risks.size(); i++) {
+			if (aggregates.count[i] > 0) {
+				groups.add(aggregates.toGroup(i, risks.decode(i - 1)));
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Finds the k restaurants with the lowest average score of the inspections accepted by the filter.
+	 * @param int k largest number of restaurants returned
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return List<RestaurantScore> restaurants with at least one accepted inspection, from the lowest average score; restaurants with equal averages are in sorted order
+	 */
+	public List<RestaurantScore> getWorstRestaurants(int k, Filter filter) {
+		return getTopRestaurants(k, filter, true);
+	}
+
+	/**
+	 * Finds the k restaurants with the highest average score of the inspections accepted by the filter.
+	 * @param int k largest number of restaurants returned
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @return List<RestaurantScore> restaurants with at least one accepted inspection, from the highest average score; restaurants with equal averages are in sorted order
+	 */
+	public List<RestaurantScore> getBestRestaurants(int k, Filter filter) {
+		return getTopRestaurants(k, filter, false);
+	}
+
+	/**
+	 * Finds the k restaurants with the lowest or highest average scores. The restaurants are split into ranges that are ranked in parallel,
+	 * each keeping its best k candidates in a heap, and the candidates of all ranges are ranked again at the end.
+	 * @param int k largest number of restaurants returned
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @param boolean lowest true to rank from the lowest average score, and false to rank from the highest
+	 * @return List<RestaurantScore> ranked restaurants
+	 */
+	private List<RestaurantScore> getTopRestaurants(int k, Filter filter, boolean lowest) {
+		if (k <= 0) {
+			return new ArrayList<RestaurantScore>();
+		}
+		RowFilter accepted = new RowFilter(filter == null ? new Filter() : filter);
+		Comparator<RestaurantScore> order = lowest ? RestaurantScore.LOWEST_FIRST : RestaurantScore.HIGHEST_FIRST;
+		int restaurantCount = store.getRestaurants().length;
+		int chunks = getChunkCount();
+		int chunkSize = (restaurantCount + chunks - 1) / Math.max(1, chunks);
+
+		List<RestaurantScore> candidates = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+			//the heap keeps the k best restaurants seen so far, with the worst of them at the head
+			PriorityQueue<RestaurantScore> heap = new PriorityQueue<RestaurantScore>(k + 1, order.reversed());
+			int end = Math.min(restaurantCount, (chunk + 1) * chunkSize);
+			for (int id = chunk * chunkSize; id < end; id++) {
+				int count = 0;
+				long sum = 0;
+				int min = Integer.MAX_VALUE;
+				for (int row = store.getFirstRow(id); row < store.getEndRow(id); row++) {
+					if (accepted.accepts(row, id)) {
+						int score = store.getScore(row);
+						count++;
+						sum += score;
+						min = Math.min(min, score);
+					}
+				}
+				if (count > 0) {
+					heap.add(new RestaurantScore(store.getRestaurants()[id], id, count, (double) sum / count, min));
+					if (heap.size() > k) {
+						heap.poll();
+					}
+				}
+			}
+			return heap;
+		}).collect(ArrayList<RestaurantScore>::new, ArrayList::addAll, ArrayList::addAll);
+
+		Collections.sort(candidates, order);
+		return new ArrayList<RestaurantScore>(candidates.subList(0, Math.min(k, candidates.size())));
+	}
+
+	/**
+	 * Returns the number of parallel tasks used for a pass over the rows.
+	 * @return int number of chunks, at least 1
+	 */
+	private int getChunkCount() {
+		int byParallelism = Runtime.getRuntime().availableProcessors() * 4;
+		int bySize = Math.max(1, store.size() / MIN_CHUNK_SIZE);
+		return Math.max(1, Math.min(byParallelism, bySize));
+	}
+
+	/**
+	 * Aggregates the inspections accepted by the filter into groups, in a single parallel pass over the rows of every restaurant.
+	 * @param Filter filter inspections to be included; null includes all inspections
+	 * @param int groupCount number of groups
+	 * @param GroupFunction group returns the group of a row, or a negative number to leave the row out
+	 * @return Aggregates aggregate values of every group
+	 */
+	private Aggregates aggregate(Filter filter, int groupCount, GroupFunction group) {
+		RowFilter accepted = new RowFilter(filter == null ? new Filter() : filter);
+		int restaurantCount = store.getRestaurants().length;
+		int chunks = getChunkCount();
+		int chunkSize = (restaurantCount + chunks - 1) / chunks;
+		return IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+			Aggregates partial = new Aggregates(groupCount);
+			int end = Math.min(restaurantCount, (chunk + 1) * chunkSize);
+			for (int id = chunk * chunkSize; id < end; id++) {
+				for (int row = store.getFirstRow(id); row < store.getEndRow(id); row++) {
+					if (accepted.accepts(row, id)) {
+						int g = group.of(row, id);
+						if (g >= 0) {
+							partial.add(g, store.getScore(row));
+						}
+					}
+				}
+			}
+			return partial;
+		}).reduce(new Aggregates(groupCount), Aggregates::merge);
+	}
+
+	/**
+	 * GroupFunction interface returns the group of a row of the store.
+	 * @author Claire Zhu
+	 */
+	private interface GroupFunction {
+		int of(int row, int restaurantId);
+	}
+
+	/**
+	 * Aggregates class holds the count, sum, lowest and highest score of every group, in primitive arrays.
+	 * @author Claire Zhu
+	 */
+	private static class Aggregates {
+
+		private final long[] count;
+		private final long[] sum;
+		private final int[] min;
+		private final int[] max;
+
+		Aggregates(int groupCount) {
+			count = new long[groupCount];
+			sum = new long[groupCount];
+			min = new int[groupCount];
+			max = new int[groupCount];
+			Arrays.fill(min, Integer.MAX_VALUE);
+			Arrays.fill(max, Integer.MIN_VALUE);
+		}
+
+		void add(int group, int score) {
+			count[group]++;
+			sum[group] += score;
+			if (score < min[group]) {
+				min[group] = score;
+			}
+			if (score > max[group]) {
+				max[group] = score;
+			}
+		}
+
+		Aggregates merge(Aggregates other) {
+			Aggregates merged = new Aggregates(count.length);
+			for (int g = 0; g < count.length; g++) {
+				merged.count[g] = count[g] + other.count[g];
+				merged.sum[g] = sum[g] + other.sum[g];
+				merged.min[g] = Math.min(min[g], other.min[g]);
+				merged.max[g] = Math.max(max[g], other.max[g]);
+			}
+			return merged;
+		}
+
+		Group toGroup(int group, String key) {
+			return new Group(key, count[group], sum[group], min[group], max[group]);
+		}
+	}
+
+	/**
+	 * Filter class selects the inspections included in a query by date range, zip code, risk category and score range.
+	 * Its methods return the filter itself, so conditions can be chained; a new filter accepts every inspection.
+	 * @author Claire Zhu
+	 */
+	public static class Filter {
+
+		private int fromDate = Integer.MIN_VALUE;
+		private int toDate = Integer.MAX_VALUE;
+		private String zip;
+		private boolean byRisk;
+		private String risk;
+		private int minScore = 0;
+		private int maxScore = 100;
+
+		/**
+		 * Accepts only inspections from the first date to the last date, inclusive.
+		 * @param Date from first date; null for no lower limit
+		 * @param Date to last date; null for no upper limit
+		 * @return Filter this filter
+		 */
+		public Filter between(Date from, Date to) {
+			fromDate = from == null ? Integer.MIN_VALUE : from.getValue();
+			toDate = to == null ? Integer.MAX_VALUE : to.getValue();
+			return this;
+		}
+
+		/**
+		 * Accepts only inspections of the given number of days up to the given date, for example the last 90 days.
+		 * @param Date end last date
+		 * @param int days number of days, including the last date
+		 * @return Filter this filter
+		 */
+		public Filter lastDays(Date end, int days) {
+			LocalDate first = LocalDate.of(end.getYear(), end.getMonth(), end.getDay()).minusDays(Math.max(0, days - 1));
+			return between(new Date(first.getMonthValue(), first.getDayOfMonth(), first.getYear()), end);
+		}
+
+		/**
+		 * Accepts only inspections of restaurants with the given zip code.
+		 * @param String zip code; null for any zip code
+		 * @return Filter this filter
+		 */
+		public Filter zip(String zip) {
+			this.zip = zip;
+			return this;
+		}
+
+		/**
+		 * Accepts only inspections with the given risk category, compared without case.
+		 * @param String risk category, or null for inspections without a risk category
+		 * @return Filter this filter
+		 */
+		public Filter risk(String risk) {
+			this.byRisk = true;
+			this.risk = risk;
+			return this;
+		}
+
+		/**
+		 * Accepts only inspections with a score in the given range, inclusive.
+		 * @param int min lowest score
+		 * @param int max highest score
+		 * @return Filter this filter
+		 */
+		public Filter scores(int min, int max) {
+			this.minScore = min;
+			this.maxScore = max;
+			return this;
+		}
+
+	}
+
+	/**
+	 * RowFilter class is a Filter translated to the values stored in the columns, so checking a row only compares primitive values.
+	 * @author Claire Zhu
+	 */
+	private class RowFilter {
+
+		//zip code and risk code that are accepted; ANY accepts every value and NONE accepts no value
+		private static final int ANY = Integer.MIN_VALUE;
+		private static final int NONE = Integer.MIN_VALUE + 1;
+
+		private final int fromDate;
+		private final int toDate;
+		private final int minScore;
+		private final int maxScore;
+		private final int zip;
+		private final int riskCode;
+
+		RowFilter(Filter filter) {
+			fromDate = filter.fromDate;
+			toDate = filter.toDate;
+			minScore = filter.minScore;
+			maxScore = filter.maxScore;
+			if (filter.zip == null) {
+				zip = ANY;
+			}
+			else {
+				int value = ZipIndex.parseZip(filter.zip);
+				zip = value < 0 ? NONE : value;
+			}
+			if (!filter.byRisk) {
+				riskCode = ANY;
+			}
+			else if (filter.risk == null) {
+				riskCode = -1;
+			}
+			else {
+				StringDictionary risks = store.getRiskDictionary();
+				int code = NONE;
+				for (int i = 0; i < risks.size() && code == NONE; i++) {
+					if (filter.risk.equalsIgnoreCase(risks.decode(i))) {
+						code = i;
+					}
+				}
+				riskCode = code;
+			}
+		}
+
+		/**
+		 * Returns true if the inspection in the given row is accepted by this filter.
+		 * @param int row of the inspection
+		 * @param int restaurantId id of the restaurant of the row
+		 * @return boolean true if the inspection is accepted
+		 */
+		boolean accepts(int row, int restaurantId) {
+			int date = store.getDate(row);
+			if (date < fromDate || date > toDate) {
+				return false;
+			}
+			int score = store.getScore(row);
+			if (score < minScore || score > maxScore) {
+				return false;
+			}
+			if (zip != ANY && restaurantZips[restaurantId] != zip) {
+				return false;
+			}
+			if (riskCode != ANY && store.getRiskCode(row) != riskCode) {
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Group class holds the number of inspections of one group and their average, lowest and highest scores.
+	 * @author Claire Zhu
+	 */
+	public static class Group {
+
+		private final String key;
+		private final long count;
+		private final long sum;
+		private final int minScore;
+		private final int maxScore;
+
+		Group(String key, long count, long sum, int minScore, int maxScore) {
+			this.key = key;
+			this.count = count;
+			this.sum = sum;
+			this.minScore = count == 0 ? 0 : minScore;
+			this.maxScore = count == 0 ? 0 : maxScore;
+		}
+
+		/**
+		 * Returns the key of this group: a zip code, a month in the form "MM/YYYY", or a risk category.
+		 * @return String key of this group; null for the group of inspections without a risk category
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the number of inspections in this group.
+		 * @return long number of inspections
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the average score of the inspections in this group.
+		 * @return double average score; 0 if the group is empty
+		 */
+		public double getAverageScore() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * Returns the lowest score of the inspections in this group.
+		 * @return int lowest score; 0 if the group is empty
+		 */
+		public int getMinScore() {
+			return minScore;
+		}
+
+		/**
+		 * Returns the highest score of the inspections in this group.
+		 * @return int highest score; 0 if the group is empty
+		 */
+		public int getMaxScore() {
+			return maxScore;
+		}
+
+		/**
+		 * Returns a String representation of this group.
+		 * @return String with the key, count, and average, lowest and highest scores
+		 */
+		@Override
+		public String toString() {
+			return String.format("%-20s count %7d   average %6.2f   min %3d   max %3d", key, count, getAverageScore(), minScore, maxScore);
+		}
+	}
+
+	/**
+	 * RestaurantScore class holds the number of inspections of a restaurant accepted by a filter and their average and lowest scores.
+	 * @author Claire Zhu
+	 */
+	public static class RestaurantScore {
+
+		//from the lowest average score; equal averages are ordered by restaurant id, which is the sorted order of the restaurants
+		static final Comparator<RestaurantScore> LOWEST_FIRST = new Comparator<RestaurantScore>() {
+			@Override
+			public int compare(RestaurantScore a, RestaurantScore b) {
+				int i = Double.compare(a.averageScore, b.averageScore);
+				return i != 0 ? i : Integer.compare(a.id, b.id);
+			}
+		};
+
+		//from the highest average score; equal averages are ordered by restaurant id
+		static final Comparator<RestaurantScore> HIGHEST_FIRST = new Comparator<RestaurantScore>() {
+			@Override
+			public int compare(RestaurantScore a, RestaurantScore b) {
+				int i = Double.compare(b.averageScore, a.averageScore);
+				return i != 0 ? i : Integer.compare(a.id, b.id);
+			}
+		};
+
+		private final Restaurant restaurant;
+		private final int id;
+		private final int count;
+		private final double averageScore;
+		private final int minScore;
+
+		RestaurantScore(Restaurant restaurant, int id, int count, double averageScore, int minScore) {
+			this.restaurant = restaurant;
+			this.id = id;
+			this.count = count;
+			this.averageScore = averageScore;
+			this.minScore = minScore;
+		}
+
+		/**
+		 * Returns the restaurant.
+		 * @return Restaurant ranked restaurant
+		 */
+		public Restaurant getRestaurant() {
+			return restaurant;
+		}
+
+		/**
+		 * Returns the number of inspections of the restaurant accepted by the filter.
+		 * @return int number of inspections
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the average score of the inspections of the restaurant accepted by the filter.
+		 * @return double average score
+		 */
+		public double getAverageScore() {
+			return averageScore;
+		}
+
+		/**
+		 * Returns the lowest score of the inspections of the restaurant accepted by the filter.
+		 * @return int lowest score
+		 */
+		public int getMinScore() {
+			return minScore;
+		}
+
+		/**
+		 * Returns a String representation of this result.
+		 * @return String with the name and zip code of the restaurant, and the count, average and lowest score of its inspections
+		 */
+		@Override
+		public String toString() {
+			return String.format("%-40s %s   count %4d   average %6.2f   min %3d", restaurant.getName(), restaurant.getZip(), count, averageScore, minScore);
+		}
+	}
+}
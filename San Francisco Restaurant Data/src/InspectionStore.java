@@ -0,0 +1,568 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The InspectionStore class stores the inspections of a sorted array of restaurants in columns of primitive values instead of separate Inspection objects.
+ * Every inspection is a row with an int date (yyyymmdd), a byte score, dictionary codes for its violation description (int) and risk category (byte),
+ * and the long key of the row of the data set it was read from, which takes 18 bytes per inspection: 10 bytes of values and 8 bytes of row key.
+ * The rows of a restaurant are stored next to each other in date order, and an array of offsets gives the first row of every restaurant,
+ * so the restaurant of a row is not stored but found by a binary search of the offsets; passes over all rows go restaurant by restaurant instead.
+ * Restaurants can use getInspections() as their list of inspections; Inspection objects are only created when an element of that list is read.
+ * A new store of restaurants that use such views, for example copies of the restaurants of a list with a few more inspections, copies the rows of the views column by column,
+ * so only the inspections that are not in a store yet are encoded.
+ * The columns are kept in buffers: a store built from restaurants wraps arrays on the heap, and a store restored by a RestaurantSnapshot reads its columns straight from the mapped file.
+ * @author Claire Zhu
+ */
+
+public class InspectionStore {
+
+	//the largest number of distinct risk categories that fits in the byte column (code 0 is used for a missing risk category)
+	private static final int MAX_RISK_CODES = 255;
+
+	//the columns are final and never change after construction, so a store can be read by several threads
+	private final Restaurant[] restaurants;
+	private final int size;
+	private final IntBuffer dates;
+	private final ByteBuffer scores;
+	private final IntBuffer violations;
+	private final ByteBuffer risks;
+	//key of the row of the data set of every inspection, or 0 if it is not known
+	private final LongBuffer rowKeys;
+	private final IntBuffer restaurantOffsets;
+	private final StringDictionary violationDictionary;
+	private final StringDictionary riskDictionary;
+	private volatile boolean stale;
+	//rows in date order, grouped by month; built by the first query over a date range
+	private volatile DateIndex dateIndex;
+	//restaurants with at least one inspection of every risk code, indexed by the code plus one; built by the first query by risk category
+	private volatile RoaringBitmap[] riskBitmaps;
+
+	/**
+	 * Constructs a new InspectionStore object holding the inspections of the given restaurants.
+	 * The rows of restaurants whose list of inspections is a view of another store are copied from that store without creating Inspection objects.
+	 * The dictionaries of the first such store are copied, so the rows of that store are copied in blocks of consecutive restaurants with their codes unchanged.
+	 * @param Restaurant[] restaurants array of restaurants; the index of a restaurant in this array is its id
+	 * @throws IllegalArgumentException if the inspections have more than 255 distinct risk categories
+	 */
+	public InspectionStore(Restaurant[] restaurants) throws IllegalArgumentException {
+		this.restaurants = restaurants;
+		InspectionStore base = null;
+		int total = 0;
+		for (Restaurant restaurant : restaurants) {
+			List<Inspection> inspections = restaurant.getListOfInspections();
+			if (base == null && inspections instanceof View) {
+				base = ((View) inspections).getStore();
+			}
+			total += inspections.size();
+		}
+		dates = IntBuffer.wrap(new int[total]);
+		scores = ByteBuffer.wrap(new byte[total]);
+		violations = IntBuffer.wrap(new int[total]);
+		risks = ByteBuffer.wrap(new byte[total]);
+		rowKeys = LongBuffer.wrap(new long[total]);
+		int[] offsets = new int[restaurants.length + 1];
+		violationDictionary = base == null ? new StringDictionary() : new StringDictionary(base.violationDictionary);
+		riskDictionary = base == null ? new StringDictionary() : new StringDictionary(base.riskDictionary);
+
+		int row = 0;
+		//block of rows of the base store that is copied at once: its first row in the base store and its number of rows
+		int blockStart = 0;
+		int blockLength = 0;
+		for (int id = 0; id < restaurants.length; id++) {
+			offsets[id] = row;
+			List<Inspection> inspections = restaurants[id].getListOfInspections();
+			if (inspections instanceof View && ((View) inspections).getStore() == base) {
+				View view = (View) inspections;
+				if (blockLength > 0 && blockStart + blockLength != view.from) {
+					copyRows(base, blockStart, row - blockLength, blockLength);
+					blockLength = 0;
+				}
+				if (blockLength == 0) {
+					blockStart = view.from;
+				}
+				blockLength += view.to - view.from;
+				row += view.to - view.from;
+				continue;
+			}
+			if (blockLength > 0) {
+				copyRows(base, blockStart, row - blockLength, blockLength);
+				blockLength = 0;
+			}
+			if (inspections instanceof View) {
+				//the codes of a store other than the base store are translated to the dictionaries of this store
+				View view = (View) inspections;
+				InspectionStore other = view.getStore();
+				for (int from = view.from; from < view.to; from++) {
+					setRow(row++, other.getDate(from), other.scores.get(from), other.violationDictionary.decode(other.getViolationCode(from)),
+							other.riskDictionary.decode(other.getRiskCode(from)), other.getRowKey(from));
+				}
+				continue;
+			}
+			//the sort is stable, so inspections on the same date keep the order in which they were added
+			inspections = new ArrayList<Inspection>(inspections);
+			Collections.sort(inspections);
+			for (Inspection inspection : inspections) {
+				setRow(row++, inspection.getDate().getValue(), (byte) inspection.getScore(), inspection.getViolation(), inspection.getRisk(), inspection.getRowKey());
+			}
+		}
+		if (blockLength > 0) {
+			copyRows(base, blockStart, row - blockLength, blockLength);
+		}
+		offsets[restaurants.length] = row;
+		restaurantOffsets = IntBuffer.wrap(offsets);
+		size = row;
+	}
+
+	/**
+	 * Copies a block of rows of another store whose dictionaries this store's dictionaries were copied from, so the codes stay valid.
+	 * @param InspectionStore source store holding the rows
+	 * @param int from first row in the source store
+	 * @param int to first row in this store
+	 * @param int length number of rows
+	 */
+	private void copyRows(InspectionStore source, int from, int to, int length) {
+		dates.put(to, source.dates, from, length);
+		scores.put(to, source.scores, from, length);
+		violations.put(to, source.violations, from, length);
+		risks.put(to, source.risks, from, length);
+		rowKeys.put(to, source.rowKeys, from, length);
+	}
+
+	/**
+	 * Stores the values of one inspection in a row, encoding its violation and risk category with the dictionaries of this store.
+	 * @param int row row to be written
+	 * @param int date date of the inspection (yyyymmdd)
+	 * @param byte score score of the inspection
+	 * @param String violation violation description; may be null
+	 * @param String risk risk category; may be null
+	 * @param long rowKey key of the row of the data set, or 0
+	 * @throws IllegalArgumentException if the risk category would be the 256th distinct one
+	 */
+	private void setRow(int row, int date, byte score, String violation, String risk, long rowKey) throws IllegalArgumentException {
+		int riskCode = riskDictionary.encode(risk) + 1;
+		if (riskCode > MAX_RISK_CODES) {
+			throw new IllegalArgumentException("Too many distinct risk categories to be stored.");
+		}
+		dates.put(row, date);
+		scores.put(row, score);
+		violations.put(row, violationDictionary.encode(violation));
+		risks.put(row, (byte) riskCode);
+		rowKeys.put(row, rowKey);
+	}
+
+	/**
+	 * Constructs a new InspectionStore object from columns that were stored before, for example by a RestaurantSnapshot.
+	 * The buffers are used directly, for example as views of a mapped file, and must not be modified afterwards. Values are read at absolute positions, so the positions of the buffers do not matter.
+	 * @param Restaurant[] restaurants array of restaurants; the index of a restaurant in this array is its id
+	 * @param IntBuffer restaurantOffsets first row of each restaurant, followed by the number of rows
+	 * @param IntBuffer dates date column (yyyymmdd)
+	 * @param ByteBuffer scores score column
+	 * @param IntBuffer violations violation code column
+	 * @param ByteBuffer risks risk code column, holding each code plus one
+	 * @param LongBuffer rowKeys row key column
+	 * @param StringDictionary violationDictionary dictionary of the violation codes
+	 * @param StringDictionary riskDictionary dictionary of the risk codes
+	 */
+	InspectionStore(Restaurant[] restaurants, IntBuffer restaurantOffsets, IntBuffer dates, ByteBuffer scores, IntBuffer violations, ByteBuffer risks, LongBuffer rowKeys,
+			StringDictionary violationDictionary, StringDictionary riskDictionary) {
+		this.restaurants = restaurants;
+		this.restaurantOffsets = restaurantOffsets;
+		this.dates = dates;
+		this.scores = scores;
+		this.violations = violations;
+		this.risks = risks;
+		this.rowKeys = rowKeys;
+		this.violationDictionary = violationDictionary;
+		this.riskDictionary = riskDictionary;
+		size = dates.limit();
+	}
+
+	/**
+	 * Returns the number of inspections in this store.
+	 * @return int number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the restaurants whose inspections are stored, indexed by their ids.
+	 * @return Restaurant[] array of restaurants; it should not be modified
+	 */
+	public Restaurant[] getRestaurants() {
+		return restaurants;
+	}
+
+	/**
+	 * Returns the id of the restaurant that the inspection in the given row belongs to, by a binary search of the first rows of the restaurants.
+	 * @param int row of the inspection
+	 * @return int restaurant id
+	 * @throws IndexOutOfBoundsException if the row is out of range
+	 */
+	public int getRestaurantId(int row) throws IndexOutOfBoundsException {
+		if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row value not within range.");
+		//the last restaurant whose first row is not after the row; restaurants without inspections before it have the same first row and are skipped
+		int low = 0;
+		int high = restaurants.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (restaurantOffsets.get(middle) <= row) {
+				low = middle;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the date of the inspection in the given row.
+	 * @param int row of the inspection
+	 * @return int date in the form yyyymmdd
+	 */
+	public int getDate(int row) {
+		return dates.get(row);
+	}
+
+	/**
+	 * Returns the score of the inspection in the given row.
+	 * @param int row of the inspection
+	 * @return int score from 0 to 100
+	 */
+	public int getScore(int row) {
+		return scores.get(row);
+	}
+
+	/**
+	 * Returns the violation description code of the inspection in the given row.
+	 * @param int row of the inspection
+	 * @return int code in getViolationDictionary(), or -1 if the inspection has no violation description
+	 */
+	public int getViolationCode(int row) {
+		return violations.get(row);
+	}
+
+	/**
+	 * Returns the risk category code of the inspection in the given row.
+	 * @param int row of the inspection
+	 * @return int code in getRiskDictionary(), or -1 if the inspection has no risk category
+	 */
+	public int getRiskCode(int row) {
+		return (risks.get(row) & 0xff) - 1;
+	}
+
+	/**
+	 * Returns the key of the row of the data set that the inspection in the given row was read from.
+	 * @param int row of the inspection
+	 * @return long key of the row, or 0 if it is not known
+	 */
+	public long getRowKey(int row) {
+		return rowKeys.get(row);
+	}
+
+	/**
+	 * Returns the dictionary of the violation descriptions.
+	 * @return StringDictionary dictionary used for the violation codes
+	 */
+	public StringDictionary getViolationDictionary() {
+		return violationDictionary;
+	}
+
+	/**
+	 * Returns the dictionary of the risk categories.
+	 * @return StringDictionary dictionary used for the risk codes
+	 */
+	public StringDictionary getRiskDictionary() {
+		return riskDictionary;
+	}
+
+	/**
+	 * Returns the first row of the inspections of the given restaurant.
+	 * @param int restaurantId id of the restaurant
+	 * @return int first row of the restaurant
+	 */
+	public int getFirstRow(int restaurantId) {
+		return restaurantOffsets.get(restaurantId);
+	}
+
+	/**
+	 * Returns the row after the last row of the inspections of the given restaurant.
+	 * @param int restaurantId id of the restaurant
+	 * @return int end of the rows of the restaurant (exclusive)
+	 */
+	public int getEndRow(int restaurantId) {
+		return restaurantOffsets.get(restaurantId + 1);
+	}
+
+	/**
+	 * Creates an Inspection object with the values of the given row.
+	 * @param int row of the inspection
+	 * @return Inspection object of the row
+	 */
+	public Inspection getInspection(int row) {
+		Inspection inspection = new Inspection(Date.fromValue(getDate(row)), getScore(row), violationDictionary.decode(getViolationCode(row)), riskDictionary.decode(getRiskCode(row)));
+		inspection.setRowKey(getRowKey(row));
+		return inspection;
+	}
+
+	/**
+	 * Returns a read only list of the inspections of the given restaurant, in date order.
+	 * @param int restaurantId id of the restaurant
+	 * @return List<Inspection> view of the rows of the restaurant
+	 */
+	public List<Inspection> getInspections(int restaurantId) {
+		return new View(getFirstRow(restaurantId), getEndRow(restaurantId));
+	}
+
+	/**
+	 * Returns the rows of all inspections from the first date to the last date, inclusive, in date order (rows on the same date are in row order).
+	 * The rows are found in a date ordered index of all rows, which is grouped into months, so only the months at the ends of the range are searched.
+	 * The index is built by the first call to this method or to getRowsInMonth().
+	 * @param Date from first date; null for no lower limit
+	 * @param Date to last date; null for no upper limit
+	 * @return int[] rows of the inspections in the range; empty if there are none
+	 */
+	public int[] getRowsBetween(Date from, Date to) {
+		return getRowsBetween(from == null ? Integer.MIN_VALUE : from.getValue(), to == null ? Integer.MAX_VALUE : to.getValue());
+	}
+
+	/**
+	 * Returns the rows of all inspections between two packed dates, inclusive, in date order.
+	 * @param int from first date in the form yyyymmdd; Integer.MIN_VALUE for no lower limit
+	 * @param int to last date in the form yyyymmdd; Integer.MAX_VALUE for no upper limit
+	 * @return int[] rows of the inspections in the range; empty if there are none
+	 */
+	int[] getRowsBetween(int from, int to) {
+		DateIndex index = getDateIndex();
+		int start = index.search(from, false);
+		int end = index.search(to, true);
+		return end <= start ? new int[0] : Arrays.copyOfRange(index.rows, start, end);
+	}
+
+	/**
+	 * Returns the number of inspections between two packed dates, inclusive, without copying their rows.
+	 * @param int from first date in the form yyyymmdd; Integer.MIN_VALUE for no lower limit
+	 * @param int to last date in the form yyyymmdd; Integer.MAX_VALUE for no upper limit
+	 * @return int number of inspections in the range
+	 */
+	int countRowsBetween(int from, int to) {
+		DateIndex index = getDateIndex();
+		return Math.max(0, index.search(to, true) - index.search(from, false));
+	}
+
+	/**
+	 * Returns the rows of all inspections in the given month, in date order, for example all inspections of March 2019.
+	 * @param int year of the month, for example 2019
+	 * @param int month from 1 to 12
+	 * @return int[] rows of the inspections in the month; empty if there are none
+	 */
+	public int[] getRowsInMonth(int year, int month) {
+		DateIndex index = getDateIndex();
+		int bucket = year * 12 + month - 1 - index.firstMonth;
+		if (month < 1 || month > 12 || bucket < 0 || bucket >= index.monthOffsets.length - 1) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(index.rows, index.monthOffsets[bucket], index.monthOffsets[bucket + 1]);
+	}
+
+	/**
+	 * Returns the ids of the restaurants with at least one inspection of the given risk category code.
+	 * The bitmaps of all codes are built together by the first call, in a single pass over the risk column.
+	 * @param int riskCode code in getRiskDictionary(), or -1 for inspections without a risk category
+	 * @return RoaringBitmap ids of the restaurants; it should not be modified
+	 */
+	public RoaringBitmap getRestaurantsWithRisk(int riskCode) {
+		RoaringBitmap[] bitmaps = riskBitmaps;
+		if (bitmaps == null) {
+			synchronized (this) {
+				bitmaps = riskBitmaps;
+				if (bitmaps == null) {
+					bitmaps = new RoaringBitmap[riskDictionary.size() + 1];
+					for (int code = 0; code < bitmaps.length; code++) {
+						bitmaps[code] = new RoaringBitmap();
+					}
+					//restaurants are visited in increasing order of id, so every bitmap is built by appending
+					for (int id = 0; id < restaurants.length; id++) {
+						for (int row = getFirstRow(id); row < getEndRow(id); row++) {
+							bitmaps[risks.get(row) & 0xff].add(id);
+						}
+					}
+					riskBitmaps = bitmaps;
+				}
+			}
+		}
+		return riskCode + 1 >= 0 && riskCode + 1 < bitmaps.length ? bitmaps[riskCode + 1] : new RoaringBitmap();
+	}
+
+	/**
+	 * Returns the date index of this store, building it if it does not exist yet.
+	 * @return DateIndex index of the rows in date order
+	 */
+	private DateIndex getDateIndex() {
+		DateIndex index = dateIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = dateIndex;
+				if (index == null) {
+					index = new DateIndex();
+					dateIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns true if an inspection was added to one of the restaurants after it started using this store, so the store no longer contains all of their inspections.
+	 * @return boolean true if this store is out of date
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * Records that this store no longer contains all of the inspections of its restaurants.
+	 */
+	public void markStale() {
+		stale = true;
+	}
+
+	/**
+	 * DateIndex class holds the rows of the store sorted by date, and the position of the first row of every month between the first and the last date.
+	 * @author Claire Zhu
+	 */
+	private class DateIndex {
+
+		private final int[] rows;
+		private final int[] sortedDates;
+		private final int firstMonth;
+		private final int[] monthOffsets;
+
+		DateIndex() {
+			//sorting date and row together keeps the rows of the same date in row order
+			long[] keys = new long[size];
+			for (int row = 0; row < size; row++) {
+				keys[row] = ((long) dates.get(row) << 32) | row;
+			}
+			Arrays.parallelSort(keys);
+			rows = new int[size];
+			sortedDates = new int[size];
+			for (int i = 0; i < size; i++) {
+				rows[i] = (int) keys[i];
+				sortedDates[i] = (int) (keys[i] >>> 32);
+			}
+			firstMonth = size == 0 ? 0 : toMonth(sortedDates[0]);
+			int months = size == 0 ? 0 : toMonth(sortedDates[size - 1]) - firstMonth + 1;
+			monthOffsets = new int[months + 1];
+			int i = 0;
+			for (int month = 0; month < months; month++) {
+				monthOffsets[month] = i;
+				while (i < size && toMonth(sortedDates[i]) - firstMonth == month) {
+					i++;
+				}
+			}
+			monthOffsets[months] = size;
+		}
+
+		/**
+		 * Returns the number of months since year 0 of a date.
+		 * @param int date in the form yyyymmdd
+		 * @return int month number
+		 */
+		private int toMonth(int date) {
+			return date / 10000 * 12 + date / 100 % 100 - 1;
+		}
+
+		/**
+		 * Finds the position of a date in the sorted rows, searching only the month of the date.
+		 * @param int date in the form yyyymmdd
+		 * @param boolean after true to find the position after the last row on the date, and false to find the position of the first row on the date
+		 * @return int position in rows, from 0 to the number of rows
+		 */
+		int search(int date, boolean after) {
+			int bucket = toMonth(date) - firstMonth;
+			if (bucket < 0) {
+				return 0;
+			}
+			if (bucket >= monthOffsets.length - 1) {
+				return size;
+			}
+			int low = monthOffsets[bucket];
+			int high = monthOffsets[bucket + 1];
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				int value = sortedDates[middle];
+				if (value < date || (after && value == date)) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * View class is a read only list of a range of rows of this store.
+	 * @author Claire Zhu
+	 */
+	public class View extends AbstractList<Inspection> implements RandomAccess {
+
+		private final int from;
+		private final int to;
+
+		View(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Returns the inspection at the given position of this list.
+		 * @param int index of the inspection
+		 * @return Inspection object created from the row
+		 * @throws IndexOutOfBoundsException if the index is out of range
+		 */
+		@Override
+		public Inspection get(int index) throws IndexOutOfBoundsException {
+			if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException("Index value not within range.");
+			return getInspection(from + index);
+		}
+
+		/**
+		 * Returns the number of inspections in this list.
+		 * @return int number of inspections
+		 */
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		/**
+		 * Returns the date of the inspection at the given position of this list, without creating an Inspection object.
+		 * @param int index of the inspection
+		 * @return int date in the form yyyymmdd
+		 * @throws IndexOutOfBoundsException if the index is out of range
+		 */
+		public int getDate(int index) throws IndexOutOfBoundsException {
+			if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException("Index value not within range.");
+			return dates.get(from + index);
+		}
+
+		/**
+		 * Returns the store holding the rows of this list.
+		 * @return InspectionStore store of this list
+		 */
+		public InspectionStore getStore() {
+			return InspectionStore.this;
+		}
+	}
+}
@@ -1,9 +1,12 @@
 
 
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The LinkedList class is used to store a collection of <E> objects.
@@ -14,7 +17,11 @@ import java.util.NoSuchElementException;
 
 public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	
+	//lists with at least this many elements are sorted in parallel
+	public static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+	
 	private Node<E> head;
+	private Node<E> tail;
 	private int size;
 	
 	/**
@@ -98,16 +105,207 @@ public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	}
 	
 	/**
-	 * Sorts the elements in this list into an array, sorting the array, and then converting it back to a list
+	 * Sorts the elements of this list according to their natural order. The sort is stable.
+	 * @throws ClassCastException if the elements are not Comparable
 	 */
 	public void sort() {
-		Object [] array = toArray();
-		Arrays.sort(array);
-		this.clear();
-		for (Object o : array ) {
-			this.add((E)o);
+		sort(null);
+	}
+	
+	/**
+	 * Sorts the elements of this list with a merge sort that relinks the existing nodes, so it takes O(n log n) time and no memory besides the recursion.
+	 * The sort is stable: equal elements keep their order. Lists with at least PARALLEL_SORT_THRESHOLD elements are split into halves that are sorted in parallel in the common ForkJoinPool.
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @throws ClassCastException if comparator is null and the elements are not Comparable
+	 */
+	public void sort(Comparator<? super E> comparator) {
+		if (size < 2) {
+			return;
+		}
+		if (size >= PARALLEL_SORT_THRESHOLD) {
+			head = ForkJoinPool.commonPool().invoke(new SortTask<E>(head, size, comparator));
 		}
+		else {
+			head = mergeSort(head, size, comparator);
+		}
+		relinkTail();
 	}
+	
+	/**
+	 * Moves the k smallest elements of this list to its front in sorted order, without sorting the rest of the list, for example to show the first page of a large result.
+	 * The other elements follow in the order they had before. Equal elements keep their order, so the front of the list is the same as after a complete sort.
+	 * This takes O(n log k) time instead of O(n log n).
+	 * @param int k number of elements to sort; the whole list is sorted if k is at least its size
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @throws ClassCastException if comparator is null and the elements are not Comparable
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void sortFirst(int k, Comparator<? super E> comparator) {
+		if (k >= size) {
+			sort(comparator);
+			return;
+		}
+		if (k <= 0) {
+			return;
+		}
+		Node<E>[] nodes = (Node<E>[]) new Node[size];
+		Node<E> current = head;
+		for (int i = 0; i < size; i++) {
+			nodes[i] = current;
+			current = current.next;
+		}
+		//max-heap of the k smallest positions seen so far; ties are broken by position, which keeps the selection stable
+		Comparator<Integer> order = (a, b) -> {
+			int c = compare(nodes[a].e, nodes[b].e, comparator);
+			return c != 0 ? c : Integer.compare(a, b);
+		};
+		PriorityQueue<Integer> largest = new PriorityQueue<Integer>(k + 1, order.reversed());
+		for (int i = 0; i < size; i++) {
+			if (largest.size() < k) {
+				largest.add(i);
+			}
+			else if (order.compare(i, largest.peek()) < 0) {
+				largest.poll();
+				largest.add(i);
+			}
+		}
+		//the largest selected element is polled first, so the selected nodes are linked from the back
+		boolean[] selected = new boolean[size];
+		Node<E> first = null;
+		Node<E> last = null;
+		while (!largest.isEmpty()) {
+			int i = largest.poll();
+			selected[i] = true;
+			nodes[i].next = first;
+			first = nodes[i];
+			if (last == null) {
+				last = first;
+			}
+		}
+		head = first;
+		for (int i = 0; i < size; i++) {
+			if (!selected[i]) {
+				last.next = nodes[i];
+				last = nodes[i];
+			}
+		}
+		last.next = null;
+		tail = last;
+	}
+	
+	/**
+	 * Sorts a chain of nodes with a top-down merge sort.
+	 * @param Node<E> first first node of the chain
+	 * @param int n number of nodes in the chain; the chain may continue after them
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @return Node<E> first node of the sorted chain, whose last node links to null
+	 */
+	private static <E> Node<E> mergeSort(Node<E> first, int n, Comparator<? super E> comparator) {
+		if (n == 1) {
+			first.next = null;
+			return first;
+		}
+		Node<E> second = split(first, n / 2);
+		return merge(mergeSort(first, n / 2, comparator), mergeSort(second, n - n / 2, comparator), comparator);
+	}
+	
+	/**
+	 * Returns the node after the first n nodes of a chain. The n-th node is not unlinked, because the sort of the first half unlinks it.
+	 * @param Node<E> first first node of the chain
+	 * @param int n number of nodes in the first half
+	 * @return Node<E> first node of the second half
+	 */
+	private static <E> Node<E> split(Node<E> first, int n) {
+		Node<E> current = first;
+		for (int i = 0; i < n; i++) {
+			current = current.next;
+		}
+		return current;
+	}
+	
+	/**
+	 * Merges two sorted chains into one. Elements of the left chain come first when they are equal to elements of the right chain, which makes the sort stable.
+	 * @param Node<E> left first node of the chain holding the earlier elements
+	 * @param Node<E> right first node of the chain holding the later elements
+	 * @param Comparator<? super E> comparator order of the elements, or null for their natural order
+	 * @return Node<E> first node of the merged chain
+	 */
+	private static <E> Node<E> merge(Node<E> left, Node<E> right, Comparator<? super E> comparator) {
+		Node<E> start = new Node<E>();
+		Node<E> last = start;
+		while (left != null && right != null) {
+			if (compare(left.e, right.e, comparator) <= 0) {
+				last.next = left;
+				left = left.next;
+			}
+			else {
+				last.next = right;
+				right = right.next;
+			}
+			last = last.next;
+		}
+		last.next = left != null ? left : right;
+		return start.next;
+	}
+	
+	/**
+	 * Compares two elements with the given comparator, or with their natural order if it is null.
+	 * @param E a first element
+	 * @param E b second element
+	 * @param Comparator<? super E> comparator order of the elements; may be null
+	 * @return int negative, zero or positive as a is less than, equal to or greater than b
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> int compare(E a, E b, Comparator<? super E> comparator) {
+		if (comparator == null) {
+			return ((Comparable<? super E>) a).compareTo(b);
+		}
+		return comparator.compare(a, b);
+	}
+	
+	/**
+	 * Sets the tail reference to the last node, after the nodes were relinked.
+	 */
+	private void relinkTail() {
+		Node<E> current = head;
+		while (current.next != null) {
+			current = current.next;
+		}
+		tail = current;
+	}
+	
+	/**
+	 * SortTask class sorts a chain of nodes, sorting its two halves in parallel while the chain is at least PARALLEL_SORT_THRESHOLD nodes long.
+	 * @author Claire Zhu
+	 */
+	private static class SortTask<E> extends RecursiveTask<Node<E>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Node<E> first;
+		private final int n;
+		private final Comparator<? super E> comparator;
+		
+		SortTask(Node<E> first, int n, Comparator<? super E> comparator) {
+			this.first = first;
+			this.n = n;
+			this.comparator = comparator;
+		}
+		
+		@Override
+		protected Node<E> compute() {
+			if (n < PARALLEL_SORT_THRESHOLD) {
+				return mergeSort(first, n, comparator);
+			}
+			//the second half is found before the first half is sorted, because sorting the first half unlinks it
+			Node<E> second = split(first, n / 2);
+			SortTask<E> left = new SortTask<E>(first, n / 2, comparator);
+			left.fork();
+			Node<E> right = new SortTask<E>(second, n - n / 2, comparator).compute();
+			return merge(left.join(), right, comparator);
+		}
+	}
+
 	/**
 	 * Compares the specified object with this collection for equality
 	 * @param Object o to be compared
@@ -258,27 +456,29 @@ public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	 */
 	@Override
 	public boolean add(E e) {
-		Iterator<E> iterator = iterator();
-		Node<E> current = new Node(); //create a pointer
-		current.next = head;
-		
+		//if the element is in the collection, return false
+		if (this.contains(e)) {
+			return false;
+		}
+		append(e);
+		return true;
+	}
+	
+	/**
+	 * Adds the specified element to the end of this list without checking for duplicates.
+	 * The tail reference makes this a constant time operation; subclasses that keep their own index of elements use it to avoid the scan done by add().
+	 * @param Element e to be added to the end of this list
+	 */
+	protected void append(E e) {
+		Node<E> node = new Node<E>(e);
 		if (head==null) {
-			//add Element e to the collection
-			head=new Node<E>(e);
-			size++;
-			return true;
+			head=node;
 		}
-		while (iterator.hasNext()) {
-			current=current.next;
-			//if the element is in the collection, return false
-			if (iterator.next().equals(e)) {
-				return false;
-			} 	
+		else {
+			tail.next=node;
 		}
-
-		current.next = new Node<E>(e);
+		tail=node;
 		size++;
-		return true;
 	}
 	/**
 	 * Removes a single instance of the specified element from this collection, if it is present 
@@ -292,6 +492,9 @@ public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	    	}
 	    	if (head.e.equals(o)) {
 	    		head=head.next;
+	    		if (head==null) {
+	    			tail=null;
+	    		}
 	    		size--;
 	    		return true;
 	    	}
@@ -303,6 +506,9 @@ public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	    	while (current != null) {
 	    		if (current.e.equals(o)) {
 	    			previous.next=current.next;
+	    			if (current==tail) {
+	    				tail=previous;
+	    			}
 	    			size--;
 	    			return true;
 	    		}
@@ -340,6 +546,7 @@ public class LinkedList<E> implements Iterable<E>, Collection<E> {
 	public void clear() {
 		//remove access to the collection  
 		head=null;
+		tail=null;
 		//assign the size of this collection to 0
 		size=0;
 	}
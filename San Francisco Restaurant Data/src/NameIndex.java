@@ -0,0 +1,311 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The NameIndex class is an inverted trigram index over the names of a sorted array of restaurants.
+ * Every restaurant is identified by its position in the sorted array, and every sequence of three characters of a lower case name maps to a RoaringBitmap of the positions of the names containing it.
+ * A case insensitive substring query intersects the bitmaps of the trigrams of the keyword and only checks the remaining candidates, so the result is already in sorted order.
+ * The lower case names are kept one after another in a single buffer and the trigrams in a sorted buffer of keys, so an index can be written to a RestaurantSnapshot and read back without building it again.
+ * An index read from a snapshot keeps its bitmaps in their written form and reads only the bitmaps of the trigrams of a keyword.
+ * @author Claire Zhu
+ */
+
+public class NameIndex {
+
+	//lower case names, one after another: name i is from nameOffsets[i] (inclusive) to nameOffsets[i+1] (exclusive)
+	private CharBuffer names;
+	private IntBuffer nameOffsets;
+	//sorted keys of the trigrams, and the number of names containing each of them
+	private LongBuffer keys;
+	private IntBuffer cardinalities;
+	//bitmap of every trigram, or null if the index was read from a snapshot
+	private RoaringBitmap[] bitmaps;
+	//written bitmaps of an index read from a snapshot: the bitmap of trigram i is from bitmapOffsets[i] (inclusive) to bitmapOffsets[i+1] (exclusive)
+	private ByteBuffer bitmapData;
+	private IntBuffer bitmapOffsets;
+
+	/**
+	 * Constructs a new NameIndex object for the given restaurants.
+	 * @param Restaurant[] restaurants array of restaurants sorted according to their natural order; the index of a restaurant in this array is its id
+	 */
+	public NameIndex(Restaurant[] restaurants) {
+		String[] lowerNames = new String[restaurants.length];
+		int[] offsets = new int[restaurants.length + 1];
+		HashMap<Long, Postings> postings = new HashMap<Long, Postings>();
+
+		for (int id = 0; id < restaurants.length; id++) {
+			String name = Restaurant.foldCase(restaurants[id].getName());
+			lowerNames[id] = name;
+			offsets[id + 1] = offsets[id] + name.length();
+			for (int i = 0; i + 3 <= name.length(); i++) {
+				Long key = trigram(name, i);
+				Postings list = postings.get(key);
+				if (list == null) {
+					list = new Postings();
+					postings.put(key, list);
+				}
+				//ids are added in increasing order, so a repeated trigram of the same name is always the last id of the list
+				if (list.size == 0 || list.ids[list.size-1] != id) {
+					list.add(id);
+				}
+			}
+		}
+		char[] characters = new char[offsets[restaurants.length]];
+		for (int id = 0; id < restaurants.length; id++) {
+			lowerNames[id].getChars(0, lowerNames[id].length(), characters, offsets[id]);
+		}
+		names = CharBuffer.wrap(characters);
+		nameOffsets = IntBuffer.wrap(offsets);
+
+		long[] sortedKeys = new long[postings.size()];
+		int count = 0;
+		for (Long key : postings.keySet()) {
+			sortedKeys[count++] = key;
+		}
+		Arrays.sort(sortedKeys);
+		int[] counts = new int[count];
+		bitmaps = new RoaringBitmap[count];
+		for (int i = 0; i < count; i++) {
+			Postings list = postings.get(sortedKeys[i]);
+			counts[i] = list.size;
+			bitmaps[i] = RoaringBitmap.of(Arrays.copyOf(list.ids, list.size));
+		}
+		keys = LongBuffer.wrap(sortedKeys);
+		cardinalities = IntBuffer.wrap(counts);
+	}
+
+	/**
+	 * Constructs a new NameIndex object from buffers read from a snapshot.
+	 * @param CharBuffer names lower case names, one after another
+	 * @param IntBuffer nameOffsets start of every name, followed by the total length
+	 * @param LongBuffer keys sorted keys of the trigrams
+	 * @param IntBuffer cardinalities number of names containing each trigram
+	 * @param ByteBuffer bitmapData written bitmaps of the trigrams, one after another
+	 * @param IntBuffer bitmapOffsets start of every bitmap, followed by the total length
+	 */
+	private NameIndex(CharBuffer names, IntBuffer nameOffsets, LongBuffer keys, IntBuffer cardinalities, ByteBuffer bitmapData, IntBuffer bitmapOffsets) {
+		this.names = names;
+		this.nameOffsets = nameOffsets;
+		this.keys = keys;
+		this.cardinalities = cardinalities;
+		this.bitmapData = bitmapData;
+		this.bitmapOffsets = bitmapOffsets;
+	}
+
+	/**
+	 * Writes this index in the form read by read(ByteBuffer).
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	void write(DataOutputStream out) throws IOException {
+		RestaurantSnapshot.writeChars(out, names);
+		RestaurantSnapshot.writeInts(out, nameOffsets);
+		RestaurantSnapshot.writeLongs(out, keys);
+		RestaurantSnapshot.writeInts(out, cardinalities);
+		if (bitmaps == null) {
+			RestaurantSnapshot.writeBytes(out, bitmapData);
+			RestaurantSnapshot.writeInts(out, bitmapOffsets);
+			return;
+		}
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(data);
+		int[] offsets = new int[bitmaps.length + 1];
+		for (int i = 0; i < bitmaps.length; i++) {
+			bitmaps[i].write(dataOut);
+			offsets[i + 1] = dataOut.size();
+		}
+		RestaurantSnapshot.writeBytes(out, ByteBuffer.wrap(data.toByteArray()));
+		RestaurantSnapshot.writeInts(out, IntBuffer.wrap(offsets));
+	}
+
+	/**
+	 * Reads an index written by write(DataOutputStream), starting at the position of the buffer and moving the position past it.
+	 * The index keeps views of the buffer instead of copying it, so nothing is built again.
+	 * @param ByteBuffer buffer to read from, for example a mapped snapshot file
+	 * @return NameIndex index that was written
+	 */
+	static NameIndex read(ByteBuffer buffer) {
+		CharBuffer names = RestaurantSnapshot.readChars(buffer);
+		IntBuffer nameOffsets = RestaurantSnapshot.readInts(buffer);
+		LongBuffer keys = RestaurantSnapshot.readLongs(buffer);
+		IntBuffer cardinalities = RestaurantSnapshot.readInts(buffer);
+		ByteBuffer bitmapData = RestaurantSnapshot.readBytes(buffer);
+		IntBuffer bitmapOffsets = RestaurantSnapshot.readInts(buffer);
+		return new NameIndex(names, nameOffsets, keys, cardinalities, bitmapData, bitmapOffsets);
+	}
+
+	/**
+	 * Returns the key of the trigram starting at the given position.
+	 * @param String s lower case text
+	 * @param int i position of the first character of the trigram
+	 * @return long value packing the three characters of the trigram
+	 */
+	private static long trigram(String s, int i) {
+		return ((long) s.charAt(i) << 32) | ((long) s.charAt(i+1) << 16) | s.charAt(i+2);
+	}
+
+	/**
+	 * Returns the position of a trigram in the sorted keys.
+	 * @param long key of the trigram
+	 * @return int position of the trigram, or -1 if no name contains it
+	 */
+	private int findTrigram(long key) {
+		int low = 0;
+		int high = keys.limit() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long value = keys.get(middle);
+			if (value < key) {
+				low = middle + 1;
+			}
+			else if (value > key) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the bitmap of the trigram at the given position, reading it from the snapshot if the index was read from one.
+	 * @param int trigram position of the trigram in the sorted keys
+	 * @return RoaringBitmap ids of the names containing the trigram
+	 */
+	private RoaringBitmap getBitmap(int trigram) {
+		if (bitmaps != null) {
+			return bitmaps[trigram];
+		}
+		int start = bitmapOffsets.get(trigram);
+		return RoaringBitmap.read(bitmapData.slice(start, bitmapOffsets.get(trigram + 1) - start));
+	}
+
+	/**
+	 * Returns the number of names in this index.
+	 * @return int number of restaurants
+	 */
+	private int size() {
+		return nameOffsets.limit() - 1;
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose names contain the keyword as a substring (case insensitive).
+	 * @param String keyword to search for; should not be null
+	 * @return int[] sorted array of the ids of the matching restaurants; empty if there are no matches
+	 */
+	public int[] find(String keyword) {
+		return findBitmap(keyword).toArray();
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose names contain the keyword as a substring (case insensitive), as a bitmap that can be combined with the results of other indexes.
+	 * @param String keyword to search for; should not be null
+	 * @return RoaringBitmap ids of the matching restaurants; empty if there are no matches
+	 */
+	public RoaringBitmap findBitmap(String keyword) {
+		String lowerKeyword = Restaurant.foldCase(keyword);
+		RoaringBitmap matches = new RoaringBitmap();
+
+		//keywords shorter than a trigram have to be checked against every name
+		if (lowerKeyword.length() < 3) {
+			for (int id = 0; id < size(); id++) {
+				if (contains(id, lowerKeyword)) {
+					matches.add(id);
+				}
+			}
+			return matches;
+		}
+
+		//collect the distinct trigrams of the keyword, shortest list first
+		int count = lowerKeyword.length() - 2;
+		long[] trigrams = new long[count];
+		for (int i = 0; i < count; i++) {
+			int trigram = findTrigram(trigram(lowerKeyword, i));
+			if (trigram < 0) {
+				return matches;
+			}
+			trigrams[i] = ((long) cardinalities.get(trigram) << 32) | trigram;
+		}
+		Arrays.sort(trigrams);
+
+		RoaringBitmap candidates = getBitmap((int) trigrams[0]);
+		for (int i = 1; i < count && !candidates.isEmpty(); i++) {
+			if (trigrams[i] != trigrams[i-1]) {
+				candidates = candidates.and(getBitmap((int) trigrams[i]));
+			}
+		}
+
+		//every trigram matching does not guarantee that the whole keyword appears, so check the remaining candidates
+		candidates.forEach(id -> {
+			if (contains(id, lowerKeyword)) {
+				matches.add(id);
+			}
+		});
+		return matches;
+	}
+
+	/**
+	 * Returns an upper limit of the number of restaurants whose names contain the keyword, without searching for them: the length of the shortest list of a trigram of the keyword.
+	 * @param String keyword to search for; should not be null
+	 * @return int largest possible number of matches; the number of restaurants if the keyword is shorter than a trigram
+	 */
+	public int estimate(String keyword) {
+		String lowerKeyword = Restaurant.foldCase(keyword);
+		if (lowerKeyword.length() < 3) {
+			return size();
+		}
+		int estimate = size();
+		for (int i = 0; i + 3 <= lowerKeyword.length(); i++) {
+			int trigram = findTrigram(trigram(lowerKeyword, i));
+			if (trigram < 0) {
+				return 0;
+			}
+			estimate = Math.min(estimate, cardinalities.get(trigram));
+		}
+		return estimate;
+	}
+
+	/**
+	 * Returns true if the name of the restaurant with the given id contains the keyword, for checking a few candidates without searching the index.
+	 * @param int id of the restaurant
+	 * @param String lowerKeyword lower case keyword
+	 * @return boolean true if the lower case name contains the keyword
+	 */
+	public boolean contains(int id, String lowerKeyword) {
+		int last = nameOffsets.get(id + 1) - lowerKeyword.length();
+		for (int start = nameOffsets.get(id); start <= last; start++) {
+			int i = 0;
+			while (i < lowerKeyword.length() && names.get(start + i) == lowerKeyword.charAt(i)) {
+				i++;
+			}
+			if (i == lowerKeyword.length()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Postings class is a growable array of restaurant ids used while the index is built.
+	 * @author Claire Zhu
+	 */
+	private static class Postings {
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+	}
+}
@@ -0,0 +1,306 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ParallelRestaurantDataLoader class loads a restaurant inspections CSV file using several threads.
+ * The file is split into chunks that start and end on line boundaries, every chunk is memory mapped and parsed into its own RestaurantList on a ForkJoinPool,
+ * and the lists of the chunks are then merged in file order, so the result is the same as loading the file with a RestaurantDataReader.
+ * Like splitCSVLine(), the parser treats every line break as the end of a row, even inside quotes, so a chunk can end after any line feed.
+ * @author Claire Zhu
+ */
+
+public class ParallelRestaurantDataLoader {
+
+	//chunks smaller than this are not worth the overhead of a separate task
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	private File file;
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructs a new ParallelRestaurantDataLoader object that parses the given file on the common ForkJoinPool.
+	 * @param File file containing the restaurant inspections in CSV format
+	 */
+	public ParallelRestaurantDataLoader(File file) {
+		this(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a new ParallelRestaurantDataLoader object that parses the given file on the given ForkJoinPool.
+	 * @param File file containing the restaurant inspections in CSV format
+	 * @param ForkJoinPool pool that runs the parsing tasks
+	 */
+	public ParallelRestaurantDataLoader(File file, ForkJoinPool pool) {
+		this.file = file;
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads all rows of the file and adds them to the given list.
+	 * Rows that cannot be converted to a valid Restaurant and Inspection are skipped.
+	 * @param RestaurantList restaurantList list that the restaurants and their inspections are added to
+	 * @return int number of rows that were added to the list
+	 * @throws IOException if the file cannot be read
+	 */
+	public int load(RestaurantList restaurantList) throws IOException {
+		long start = System.nanoTime();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long[] boundaries = findChunkBoundaries(channel);
+			ArrayList<ChunkTask> tasks = new ArrayList<ChunkTask>();
+			for (int i = 0; i < boundaries.length - 1; i++) {
+				tasks.add(new ChunkTask(channel, boundaries[i], boundaries[i+1]));
+			}
+			invokeAll(tasks);
+
+			//the values of the first chunk are kept as the shared instances; the dictionaries of the other chunks are mapped onto its dictionary once per distinct value,
+			//and every chunk then replaces its own values in parallel
+			if (tasks.size() > 1) {
+				StringDictionary strings = tasks.get(0).strings;
+				ArrayList<ForkJoinTask<?>> sharing = new ArrayList<ForkJoinTask<?>>();
+				for (ChunkTask task : tasks.subList(1, tasks.size())) {
+					String[] shared = task.strings.mapTo(strings);
+					sharing.add(ForkJoinTask.adapt(() -> task.shareValues(shared)));
+				}
+				invokeAll(sharing);
+			}
+
+			//merge the chunks in file order, so restaurants and inspections keep the order of a sequential load
+			int rows = 0;
+			for (ChunkTask task : tasks) {
+				rows += task.rows;
+				merge(task.join(), restaurantList);
+			}
+			RestaurantDataMetrics.getInstance().recordLoad(rows, boundaries[boundaries.length - 1] - boundaries[0], System.nanoTime() - start);
+			return rows;
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Runs the given tasks on the pool and waits until all of them are done.
+	 * @param Collection<? extends ForkJoinTask<?>> tasks tasks to be run
+	 * @throws IOException if a task could not read the file, or was interrupted
+	 */
+	private void invokeAll(Collection<? extends ForkJoinTask<?>> tasks) throws IOException {
+		try {
+			pool.submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Loading of " + file + " was interrupted.", e);
+		}
+		catch (ExecutionException e) {
+			//the pool may wrap the exception thrown by a task, so look for the original IOException in the causes
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) cause).getCause();
+				}
+			}
+			throw new IOException("Loading of " + file + " failed.", e.getCause());
+		}
+	}
+
+	/**
+	 * Splits the file into chunks, one or more per thread of the pool, so that every chunk ends right after a line feed.
+	 * @param FileChannel channel of the file
+	 * @return long[] array of boundaries; chunk i covers the bytes from boundaries[i] (inclusive) to boundaries[i+1] (exclusive)
+	 * @throws IOException if the file cannot be read
+	 */
+	private long[] findChunkBoundaries(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L) + 1);
+		//a single mapping cannot be larger than Integer.MAX_VALUE bytes
+		chunkSize = Math.min(chunkSize, Integer.MAX_VALUE / 2);
+
+		long[] boundaries = new long[16];
+		int count = 0;
+		boundaries[count++] = 0;
+		ByteBuffer probe = ByteBuffer.allocate(8192);
+		long position = 0;
+		while (position < size) {
+			long next = position + chunkSize;
+			if (next >= size) {
+				next = size;
+			}
+			else {
+				next = findLineEnd(channel, next, probe);
+			}
+			if (count == boundaries.length) {
+				boundaries = Arrays.copyOf(boundaries, count * 2);
+			}
+			boundaries[count++] = next;
+			position = next;
+		}
+		return Arrays.copyOf(boundaries, count);
+	}
+
+	/**
+	 * Returns the position right after the first line feed at or after the given position.
+	 * @param FileChannel channel of the file
+	 * @param long position to start searching from
+	 * @param ByteBuffer probe reusable buffer used for reading
+	 * @return long position of the start of the next line, or the size of the file if there is no further line feed
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long findLineEnd(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+		while (true) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read < 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Adds the restaurants of a chunk to the merged list. Restaurants that are already in the merged list receive the inspections of the chunk instead.
+	 * @param RestaurantList chunk list of restaurants parsed from one chunk
+	 * @param RestaurantList merged list that the restaurants are added to
+	 */
+	static void merge(RestaurantList chunk, RestaurantList merged) {
+		for (Restaurant restaurant : chunk) {
+			Restaurant existing = merged.getRestaurant(restaurant.getName(), restaurant.getZip());
+			if (existing == null) {
+				merged.add(restaurant);
+			}
+			else {
+				if (!existing.hasLocation() && restaurant.hasLocation()) {
+					existing.setLocation(restaurant.getLatitude(), restaurant.getLongitude());
+				}
+				for (Inspection inspection : restaurant.getListOfInspections()) {
+					existing.addInspection(inspection);
+				}
+			}
+		}
+	}
+
+	/**
+	 * ChunkTask class parses the lines of one memory mapped chunk of the file into its own RestaurantList.
+	 * @author Claire Zhu
+	 */
+	private static class ChunkTask extends RecursiveTask<RestaurantList> {
+
+		private static final long serialVersionUID = 1L;
+
+		private FileChannel channel;
+		private long start;
+		private long end;
+		private int rows;
+		//values of this chunk; each chunk has its own dictionary, since a dictionary can only be used by one thread
+		private StringDictionary strings = new StringDictionary();
+
+		ChunkTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Parses every line of the chunk and returns the restaurants found in it.
+		 * @return RestaurantList list of the restaurants and inspections of this chunk
+		 */
+		@Override
+		protected RestaurantList compute() {
+			MappedByteBuffer mapped;
+			try {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			RestaurantList restaurantList = new RestaurantList();
+			CSVTokenizer tokenizer = new CSVTokenizer(strings);
+			byte[] line = new byte[1024];
+			int limit = mapped.limit();
+			int position = 0;
+
+			while (position < limit) {
+				//find the end of the current line; "\r\n" is treated as a single line terminator
+				int lineEnd = position;
+				while (lineEnd < limit) {
+					byte b = mapped.get(lineEnd);
+					if (b == '\n' || b == '\r') {
+						break;
+					}
+					lineEnd++;
+				}
+				int length = lineEnd - position;
+				if (length > line.length) {
+					line = new byte[Math.max(line.length * 2, length)];
+				}
+				mapped.get(position, line, 0, length);
+
+				position = lineEnd + 1;
+				if (lineEnd < limit && mapped.get(lineEnd) == '\r' && position < limit && mapped.get(position) == '\n') {
+					position++;
+				}
+
+				tokenizer.tokenize(line, 0, length);
+				if (RestaurantDataReader.isHeader(tokenizer)) {
+					continue;
+				}
+				try {
+					if (RestaurantDataReader.addRecord(tokenizer, restaurantList)) {
+						rows++;
+					}
+				}
+				catch (IllegalArgumentException e) {
+					//skip rows with invalid values
+					RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.INVALID_VALUE);
+				}
+				catch (IndexOutOfBoundsException e) {
+					//skip rows that do not have enough entries
+					RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.MISSING_COLUMNS);
+				}
+			}
+			return restaurantList;
+		}
+
+		/**
+		 * Replaces the zip codes of the restaurants and the violations and risks of the inspections of this chunk by the shared instances of the same values.
+		 * @param String[] shared shared instance of the value of every code of the dictionary of this chunk, as returned by StringDictionary.mapTo()
+		 */
+		void shareValues(String[] shared) {
+			for (Restaurant restaurant : getRawResult()) {
+				restaurant.setZip(share(restaurant.getZip(), shared));
+				for (Inspection inspection : restaurant.getListOfInspections()) {
+					inspection.setViolation(share(inspection.getViolation(), shared));
+					inspection.setRisk(share(inspection.getRisk(), shared));
+				}
+			}
+		}
+
+		/**
+		 * Returns the shared instance of a value of this chunk.
+		 * @param String value value taken from the dictionary of this chunk; may be null
+		 * @param String[] shared shared instance of the value of every code of the dictionary of this chunk
+		 * @return String shared instance of the value, or null if the value is null
+		 */
+		private String share(String value, String[] shared) {
+			int code = strings.encode(value);
+			return code == -1 ? null : shared[code];
+		}
+	}
+}
@@ -0,0 +1,338 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The QueryCache class keeps the results of recent name and zip queries, so popular keywords are not searched and rendered again every time they are asked.
+ * Results are keyed by the kind of query and the lower case keyword. A result holds the ids of the matching restaurants as a bitmap and, once it has been asked for, the rendered text of the matches.
+ * The ids are returned instead of the restaurants, so a caller that shows one page of a large result looks up only the restaurants of that page, with RestaurantList.getRestaurants().
+ * The cache holds at most a given number of results and drops the least recently used one when it is full; results older than the time to live are also dropped.
+ * Results never need to be cleared by hand: a result is only used for the same list it was computed on and only while the restaurants of that list are unchanged,
+ * and its rendered text is only used while none of its restaurants received an inspection or a new value.
+ * The cache keeps the results of one version of one list at a time: when a result is computed on a different list or a changed one, for example a new snapshot of a ConcurrentRestaurantList,
+ * all results of the previous one are dropped, so they do not keep its restaurants in memory.
+ * The cache can be used by several threads at the same time.
+ * @author Claire Zhu
+ */
+
+public class QueryCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000L;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private int maxEntries;
+	private long timeToLiveNanos;
+	private LinkedHashMap<String, Entry> entries;
+	//sorted restaurants of the list that all results in the cache were computed on
+	private Restaurant[] current;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+	private long invalidations;
+
+	/**
+	 * This default constructor constructs a new QueryCache object that holds up to 1024 results for up to 10 minutes.
+	 */
+	public QueryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Constructs a new QueryCache object.
+	 * @param int maxEntries largest number of results kept in the cache
+	 * @param long timeToLive number of milliseconds a result is kept after it was computed; 0 or less keeps results until they are evicted or invalid
+	 * @throws IllegalArgumentException if maxEntries is less than 1
+	 */
+	public QueryCache(int maxEntries, long timeToLive) throws IllegalArgumentException {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("The cache must be able to hold at least one result.");
+		}
+		this.maxEntries = maxEntries;
+		this.timeToLiveNanos = timeToLive > 0 ? timeToLive * 1000000L : Long.MAX_VALUE;
+		//access order makes the first entry the least recently used one
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > QueryCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Searches the list for restaurants whose names contain the keyword as a substring (case insensitive), using a cached result when there is a valid one.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param String keyword (restaurant name) from user input.
+	 * @return RoaringBitmap ids of the matching restaurants, only valid until the list changes; empty if the keyword is null or empty, or there are no matches.
+	 */
+	public RoaringBitmap getMatchingRestaurantIds(RestaurantList restaurantList, String keyword) {
+		long start = System.nanoTime();
+		Entry entry = lookup(restaurantList, true, keyword);
+		record(true, start, entry);
+		//the cached bitmap is shared by later queries, so the caller gets a copy that it may change
+		return entry == null ? new RoaringBitmap() : entry.ids.copy();
+	}
+
+	/**
+	 * Searches the list for restaurants whose zip codes contain the keyword as a substring, using a cached result when there is a valid one.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param String keyword (restaurant zip code) from user input.
+	 * @return RoaringBitmap ids of the matching restaurants, only valid until the list changes; empty if the keyword is null or empty, or there are no matches.
+	 */
+	public RoaringBitmap getMatchingZipIds(RestaurantList restaurantList, String keyword) {
+		long start = System.nanoTime();
+		Entry entry = lookup(restaurantList, false, keyword);
+		record(false, start, entry);
+		return entry == null ? new RoaringBitmap() : entry.ids.copy();
+	}
+
+	/**
+	 * Returns the text printed for a name query: the string representation of every matching restaurant, each followed by a line separator.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param String keyword (restaurant name) from user input.
+	 * @return String rendered matches, or null if the keyword is null or empty, or there are no matches.
+	 */
+	public String getRenderedMatchingRestaurants(RestaurantList restaurantList, String keyword) {
+		long start = System.nanoTime();
+		Entry entry = lookup(restaurantList, true, keyword);
+		String matches = render(entry);
+		record(true, start, entry);
+		return matches;
+	}
+
+	/**
+	 * Returns the text printed for a zip query: the string representation of every matching restaurant, each followed by a line separator.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param String keyword (restaurant zip code) from user input.
+	 * @return String rendered matches, or null if the keyword is null or empty, or there are no matches.
+	 */
+	public String getRenderedMatchingZip(RestaurantList restaurantList, String keyword) {
+		long start = System.nanoTime();
+		Entry entry = lookup(restaurantList, false, keyword);
+		String matches = render(entry);
+		record(false, start, entry);
+		return matches;
+	}
+
+	/**
+	 * Records the latency and number of matches of a query answered by this cache in RestaurantDataMetrics.
+	 * @param boolean byName true for a name query, and false for a zip query
+	 * @param long start value of System.nanoTime() when the query started
+	 * @param Entry entry result of the query; null if there were no matches
+	 */
+	private static void record(boolean byName, long start, Entry entry) {
+		RestaurantDataMetrics.getInstance().recordQuery(byName ? "name" : "zip", start, entry == null ? 0 : entry.count);
+	}
+
+	/**
+	 * Returns the valid cached result of a query, computing and caching it when there is none.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param boolean byName true for a name query, and false for a zip query
+	 * @param String keyword from user input
+	 * @return Entry result of the query, or null if the keyword is null or empty, or there are no matches
+	 */
+	private Entry lookup(RestaurantList restaurantList, boolean byName, String keyword) {
+		if (keyword == null || keyword.isEmpty()) {
+			return null;
+		}
+		String key = (byName ? "name\n" : "zip\n") + Restaurant.foldCase(keyword);
+		Restaurant[] restaurants = restaurantList.getSortedRestaurants();
+		long now = System.nanoTime();
+
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.restaurants != restaurants) {
+					//the list changed, or the result belongs to a different list
+					entries.remove(key);
+					invalidations++;
+				}
+				else if (now - entry.created > timeToLiveNanos) {
+					entries.remove(key);
+					expirations++;
+				}
+				else {
+					hits++;
+					return entry.count == 0 ? null : entry;
+				}
+			}
+			misses++;
+		}
+
+		//search outside of the lock, so other queries are not blocked by it
+		RoaringBitmap ids = byName ? restaurantList.getNameBitmap(keyword) : restaurantList.getZipBitmap(keyword);
+		Entry entry = new Entry(restaurants, ids, now);
+		synchronized (this) {
+			if (restaurants != current) {
+				dropResultsOf(current);
+				current = restaurants;
+			}
+			entries.put(key, entry);
+		}
+		return entry.count == 0 ? null : entry;
+	}
+
+	/**
+	 * Removes all results computed on the given restaurants, counting them as invalidated.
+	 * @param Restaurant[] restaurants sorted restaurants of a list that changed or is no longer searched
+	 */
+	private void dropResultsOf(Restaurant[] restaurants) {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().restaurants == restaurants) {
+				iterator.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the rendered text of a result, rendering it again if one of its restaurants changed since it was rendered.
+	 * @param Entry entry result of a query; may be null
+	 * @return String rendered matches, or null if entry is null
+	 */
+	private static String render(Entry entry) {
+		if (entry == null) {
+			return null;
+		}
+		long version = entry.getVersion();
+		Rendering rendering = entry.rendering;
+		if (rendering != null && rendering.version == version) {
+			return rendering.text;
+		}
+		StringBuilder text = new StringBuilder();
+		entry.ids.forEach(id -> text.append(entry.restaurants[id].toString()).append(LINE_SEPARATOR));
+		rendering = new Rendering(text.toString(), version);
+		entry.rendering = rendering;
+		return rendering.text;
+	}
+
+	/**
+	 * Removes all results from this cache. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		current = null;
+	}
+
+	/**
+	 * Returns the number of results in this cache.
+	 * @return int number of results
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of queries answered with a cached result.
+	 * @return long number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of queries that had to be searched, because there was no valid cached result.
+	 * @return long number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of results dropped because the cache was full.
+	 * @return long number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of results dropped because they were older than the time to live.
+	 * @return long number of expired results
+	 */
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+
+	/**
+	 * Returns the number of results dropped because the restaurants of their list changed.
+	 * @return long number of invalidated results
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Returns the fraction of queries answered with a cached result.
+	 * @return double hit rate from 0 to 1; 0 if there were no queries
+	 */
+	public synchronized double getHitRate() {
+		long queries = hits + misses;
+		return queries == 0 ? 0 : (double) hits / queries;
+	}
+
+	/**
+	 * Returns a String representation of the statistics of this cache.
+	 * @return String with the size, hits, misses, hit rate, evictions, expirations and invalidations of this cache
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("QueryCache[size=%d, hits=%d, misses=%d, hit rate=%.1f%%, evictions=%d, expirations=%d, invalidations=%d]",
+				entries.size(), hits, misses, getHitRate() * 100, evictions, expirations, invalidations);
+	}
+
+	/**
+	 * Entry class is the cached result of one query.
+	 * @author Claire Zhu
+	 */
+	private static class Entry {
+
+		private final Restaurant[] restaurants;
+		//never changed after the entry is created; callers get copies of it
+		private final RoaringBitmap ids;
+		private final int count;
+		private final long created;
+		private volatile Rendering rendering;
+
+		Entry(Restaurant[] restaurants, RoaringBitmap ids, long created) {
+			this.restaurants = restaurants;
+			this.ids = ids;
+			this.count = ids.getCardinality();
+			this.created = created;
+		}
+
+		/**
+		 * Returns the sum of the modification counts of the matching restaurants. Modification counts only grow, so the sum changes whenever one of the restaurants changes.
+		 * @return long version of the matching restaurants
+		 */
+		long getVersion() {
+			long[] version = new long[1];
+			ids.forEach(id -> version[0] += restaurants[id].getModCount());
+			return version[0];
+		}
+	}
+
+	/**
+	 * Rendering class is the rendered text of a result together with the version of the restaurants it was rendered from.
+	 * @author Claire Zhu
+	 */
+	private static class Rendering {
+
+		private final String text;
+		private final long version;
+
+		Rendering(String text, long version) {
+			this.text = text;
+			this.version = version;
+		}
+	}
+}
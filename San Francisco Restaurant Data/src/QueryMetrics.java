@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The QueryMetrics class records the latency and the number of matches of every query of one kind, for example all name queries, in two Histogram objects.
+ * It is created by RestaurantDataMetrics.getQueryMetrics() and registered as a JMX MBean together with the other metrics.
+ * @author Claire Zhu
+ */
+
+public class QueryMetrics implements QueryMetricsMBean {
+
+	private static final double NANOS_PER_MICRO = 1000;
+
+	private final String kind;
+	private final Histogram latency;
+	private final Histogram resultSize;
+	private final LongAdder emptyResults;
+
+	/**
+	 * Constructs a new QueryMetrics object for the given kind of query.
+	 * @param String kind of query, for example "name"
+	 */
+	public QueryMetrics(String kind) {
+		this.kind = kind;
+		this.latency = new Histogram();
+		this.resultSize = new Histogram();
+		this.emptyResults = new LongAdder();
+	}
+
+	/**
+	 * Records one query.
+	 * @param long nanos time taken to answer the query, in nanoseconds
+	 * @param int matches number of restaurants that matched the query
+	 */
+	public void record(long nanos, int matches) {
+		latency.record(nanos);
+		resultSize.record(matches);
+		if (matches == 0) {
+			emptyResults.increment();
+		}
+	}
+
+	/**
+	 * Returns the histogram of the query latencies.
+	 * @return Histogram latencies in nanoseconds
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the histogram of the numbers of matches.
+	 * @return Histogram numbers of matching restaurants
+	 */
+	public Histogram getResultSize() {
+		return resultSize;
+	}
+
+	@Override
+	public String getKind() {
+		return kind;
+	}
+
+	@Override
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getEmptyResults() {
+		return emptyResults.sum();
+	}
+
+	@Override
+	public double getMeanLatency() {
+		return latency.getMean() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getLatency50thPercentile() {
+		return latency.getValueAtPercentile(50) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getLatency90thPercentile() {
+		return latency.getValueAtPercentile(90) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getLatency99thPercentile() {
+		return latency.getValueAtPercentile(99) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getLatency999thPercentile() {
+		return latency.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getMaxLatency() {
+		return latency.getMax() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public double getMeanResultSize() {
+		return resultSize.getMean();
+	}
+
+	@Override
+	public long getResultSize99thPercentile() {
+		return resultSize.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getMaxResultSize() {
+		return resultSize.getMax();
+	}
+
+	@Override
+	public void reset() {
+		latency.reset();
+		resultSize.reset();
+		emptyResults.reset();
+	}
+
+	/**
+	 * Returns a String representation of the statistics of this kind of query.
+	 * @return String with the latency in microseconds and the number of matches
+	 */
+	@Override
+	public String toString() {
+		return kind + ": latency(us) " + latency.toString(NANOS_PER_MICRO) + "; matches count=" + resultSize.getCount() + String.format(" mean=%.1f", resultSize.getMean())
+				+ " p99=" + resultSize.getValueAtPercentile(99) + " max=" + resultSize.getMax() + " empty=" + emptyResults.sum();
+	}
+}
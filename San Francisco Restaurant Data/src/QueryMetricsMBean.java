@@ -0,0 +1,85 @@
+/**
+ * The QueryMetricsMBean interface is the management interface of a QueryMetrics object, which JMX clients such as JConsole use to read the statistics of one kind of query.
+ * Latencies are in microseconds.
+ * @author Claire Zhu
+ */
+
+public interface QueryMetricsMBean {
+
+	/**
+	 * Returns the kind of query these statistics belong to.
+	 * @return String kind of query, for example "name"
+	 */
+	String getKind();
+
+	/**
+	 * Returns the number of queries answered.
+	 * @return long number of queries
+	 */
+	long getCount();
+
+	/**
+	 * Returns the number of queries that had no matches.
+	 * @return long number of queries without matches
+	 */
+	long getEmptyResults();
+
+	/**
+	 * Returns the mean latency of the queries.
+	 * @return double mean latency in microseconds
+	 */
+	double getMeanLatency();
+
+	/**
+	 * Returns the median latency of the queries.
+	 * @return double 50th percentile of the latency in microseconds
+	 */
+	double getLatency50thPercentile();
+
+	/**
+	 * Returns the 90th percentile of the latency of the queries.
+	 * @return double 90th percentile of the latency in microseconds
+	 */
+	double getLatency90thPercentile();
+
+	/**
+	 * Returns the 99th percentile of the latency of the queries.
+	 * @return double 99th percentile of the latency in microseconds
+	 */
+	double getLatency99thPercentile();
+
+	/**
+	 * Returns the 99.9th percentile of the latency of the queries.
+	 * @return double 99.9th percentile of the latency in microseconds
+	 */
+	double getLatency999thPercentile();
+
+	/**
+	 * Returns the largest latency of the queries.
+	 * @return double largest latency in microseconds
+	 */
+	double getMaxLatency();
+
+	/**
+	 * Returns the mean number of matches of the queries.
+	 * @return double mean number of matching restaurants
+	 */
+	double getMeanResultSize();
+
+	/**
+	 * Returns the 99th percentile of the number of matches of the queries.
+	 * @return long 99th percentile of the number of matching restaurants
+	 */
+	long getResultSize99thPercentile();
+
+	/**
+	 * Returns the largest number of matches of a query.
+	 * @return long largest number of matching restaurants
+	 */
+	long getMaxResultSize();
+
+	/**
+	 * Removes all recorded queries.
+	 */
+	void reset();
+}
@@ -1,21 +1,36 @@
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * The Restaurant class is used to represent a restaurant. 
- * This class stores the String values for the business's name, zip code, address, phone number, and an ArrayList of Inspection objects. 
+ * This class stores the String values for the business's name, zip code, address, phone number, its location, and a list of Inspection objects kept in date order. 
  * @author Claire Zhu
  */
 
 public class Restaurant implements Comparable<Restaurant> {
+	
+	//labels of the tabular format used by toString(), padded to 20 characters
+	private static final String ADDRESS_LABEL = "address             ";
+	private static final String ZIP_LABEL = "zip                 ";
+	private static final String PHONE_LABEL = "phone               ";
+	private static final String SEPARATOR = "-----------------------------------";
+	
 	private String name;
 	private String address;
 	private String phone;
 	private String zip;
-	private ArrayList<Inspection> listOfInspections;
+	private List<Inspection> listOfInspections;
+	//location in degrees; NaN when the data does not have one
+	private double latitude = Double.NaN;
+	private double longitude = Double.NaN;
+	//cached result of toString(); set to null whenever a value used by toString() changes
+	private String summary;
+	//number of changes made to this Restaurant, used by caches of rendered results to detect changes
+	private int modCount;
 	
 	/**
 	 * Constructs a new Restaurant object with specified restaurant name and zip code value. 
@@ -69,8 +84,46 @@ public class Restaurant implements Comparable<Restaurant> {
 		this.listOfInspections = new ArrayList<Inspection>();
 	}
 	
+	/**
+	 * Constructs a new Restaurant object with the same name, zip code, address, phone number, and inspections as the given Restaurant.
+	 * The new Restaurant has its own modifiable list of inspections, so adding inspections to it does not change the given Restaurant.
+	 * @param Restaurant other restaurant to be copied
+	 */
+	public Restaurant(Restaurant other) {
+		this.name=other.name;
+		this.zip=other.zip;
+		this.address=other.address;
+		this.phone=other.phone;
+		this.latitude=other.latitude;
+		this.longitude=other.longitude;
+		this.listOfInspections = new ArrayList<Inspection>(other.listOfInspections);
+	}
+	
+	/**
+	 * Constructs a new Restaurant object with the same values as the given Restaurant, sharing its list of inspections if that list is a read only view of an InspectionStore.
+	 * This avoids creating an Inspection object for every inspection when the copy is compacted into a new InspectionStore right away; inspections must not be added to the copy before that,
+	 * since adding them would mark the store of the given Restaurant as out of date.
+	 * @param Restaurant other restaurant to be copied
+	 * @param boolean shareStoredInspections true to share a list of inspections kept in an InspectionStore instead of copying it
+	 */
+	Restaurant(Restaurant other, boolean shareStoredInspections) {
+		this.name=other.name;
+		this.zip=other.zip;
+		this.address=other.address;
+		this.phone=other.phone;
+		this.latitude=other.latitude;
+		this.longitude=other.longitude;
+		if (shareStoredInspections && other.listOfInspections instanceof InspectionStore.View) {
+			this.listOfInspections = other.listOfInspections;
+		}
+		else {
+			this.listOfInspections = new ArrayList<Inspection>(other.listOfInspections);
+		}
+	}
+	
 	/**
 	 * Adds a given inspection to the list of inspections for the current Restaurant object.
+	 * The inspection is inserted after all inspections with the same or an earlier date, so the list stays in date order and inspections on the same date keep the order in which they were added.
 	 * @param Inspection object inspect
 	 * @throws IllegalArgumentException if a null parameter is used
 	 */
@@ -78,11 +131,87 @@ public class Restaurant implements Comparable<Restaurant> {
 		if (inspect==null) {
 			throw new IllegalArgumentException("Inspection cannot be null.");
 		}
-		else {
-			this.listOfInspections.add(inspect);
-		}	
+		//inspections kept in an InspectionStore cannot be changed, so copy them back to a list of their own first
+		if (this.listOfInspections instanceof InspectionStore.View) {
+			((InspectionStore.View) this.listOfInspections).getStore().markStale();
+			this.listOfInspections = new ArrayList<Inspection>(this.listOfInspections);
+		}
+		//insert after the last inspection with the same or an earlier date
+		this.listOfInspections.add(searchDate(inspect.getDate().getValue(), true), inspect);
+		this.summary = null;
+		this.modCount++;
 	}
 
+	/**
+	 * Returns true if this Restaurant already has the given inspection, as decided by Inspection.isSameRow(): the same row of the data set when the inspections know their rows,
+	 * and otherwise an equal inspection (same date, score, violation, and risk). The inspections are kept in date order, so only the inspections on the same date are compared.
+	 * @param Inspection inspect inspection to be searched for
+	 * @return boolean true if the inspection is in the list of inspections of this Restaurant
+	 */
+	public boolean hasInspection(Inspection inspect) {
+		if (inspect==null) {
+			return false;
+		}
+		for (int i = searchDate(inspect.getDate().getValue(), false); i < this.listOfInspections.size(); i++) {
+			Inspection other = this.listOfInspections.get(i);
+			if (other.compareTo(inspect) != 0) {
+				break;
+			}
+			if (other.isSameRow(inspect)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the inspections of this Restaurant from the first date to the last date, inclusive, in date order.
+	 * The range is found by binary search in the date ordered list, so this takes O(log n + k) time for n inspections and k results.
+	 * @param Date from first date; null for no lower limit
+	 * @param Date to last date; null for no upper limit
+	 * @return List<Inspection> new list of the inspections in the range; empty if there are none
+	 */
+	public List<Inspection> getInspections(Date from, Date to) {
+		int start = from == null ? 0 : searchDate(from.getValue(), false);
+		int end = to == null ? this.listOfInspections.size() : searchDate(to.getValue(), true);
+		return new ArrayList<Inspection>(this.listOfInspections.subList(start, Math.max(start, end)));
+	}
+	
+	/**
+	 * Returns the most recent inspections of this Restaurant, in date order.
+	 * @param int count largest number of inspections to return
+	 * @return List<Inspection> new list of the last count inspections, or of all inspections if there are fewer
+	 */
+	public List<Inspection> getLatestInspections(int count) {
+		int size = this.listOfInspections.size();
+		return new ArrayList<Inspection>(this.listOfInspections.subList(size - Math.max(0, Math.min(count, size)), size));
+	}
+	
+	/**
+	 * Finds the position of a date in the date ordered list of inspections by binary search.
+	 * @param int date in the form yyyymmdd, as returned by Date.getValue()
+	 * @param boolean after true to find the position after the last inspection on the date, and false to find the position of the first inspection on the date
+	 * @return int position in the list of inspections, from 0 to its size
+	 */
+	private int searchDate(int date, boolean after) {
+		List<Inspection> inspections = this.listOfInspections;
+		//inspections kept in an InspectionStore are compared by their date column, without creating Inspection objects
+		InspectionStore.View view = inspections instanceof InspectionStore.View ? (InspectionStore.View) inspections : null;
+		int low = 0;
+		int high = inspections.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int value = view != null ? view.getDate(middle) : inspections.get(middle).getDate().getValue();
+			if (value < date || (after && value == date)) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
 	/* (non-Javadoc)
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
 	 */
@@ -126,47 +255,131 @@ public class Restaurant implements Comparable<Restaurant> {
 		return true;
 	}
 
+	/**
+	 * Returns the hash code value for this Restaurant, which is consistent with equals(): restaurants with the same name (case insensitive) and zip code have the same hash code.
+	 * @return int hash code value for this Restaurant
+	 */
+	@Override
+	public int hashCode() {
+		int result = 31 + (name == null ? 0 : foldCase(name).hashCode());
+		result = 31 * result + (zip == null ? 0 : zip.hashCode());
+		return result;
+	}
+
+	/**
+	 * Returns a name with every character folded the way equalsIgnoreCase() and compareToIgnoreCase() compare it (upper case, then lower case), independent of the default locale.
+	 * Two names are equal ignoring case exactly when their folded names are equal, so the folded name can be used as a key consistent with equals().
+	 * @param String name to be folded
+	 * @return String folded name; the name itself if it is already folded
+	 */
+	static String foldCase(String name) {
+		char[] folded = null;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			char f = Character.toLowerCase(Character.toUpperCase(c));
+			if (f != c && folded == null) {
+				folded = name.toCharArray();
+			}
+			if (folded != null) {
+				folded[i] = f;
+			}
+		}
+		return folded == null ? name : new String(folded);
+	}
+
 	/** 
 	 * Returns the string representation of this Restaurant.
+	 * The representation is cached until this Restaurant changes, so printing the same restaurant again does not format it again.
 	 * @return the string representation of this Restaurant object in a tabular format, with the address, zip, phone, and recent inspection results.
 	 */
 	@Override
 	public String toString() {
-		String s ="";
-		s+=this.name+"\n";
-		s+="-----------------------------------"+"\n";
-		s+=String.format("%" + -20 + "s", "address")+(this.address == null ? ":  " : " :  "+this.address)+"\n";
-		s+=String.format("%" + -20 + "s", "zip")+(this.zip == null ? ":  " : " :  " + this.zip)+"\n";
-		s+=String.format("%" + -20 + "s", "phone")+(this.phone == null ? ":  " : " :  " + this.phone)+"\n";
-		s+="recent inspection results:\n";
+		String s = this.summary;
+		if (s == null) {
+			StringBuilder builder = new StringBuilder(256);
+			try {
+				render(builder);
+			}
+			catch (IOException e) {
+				//a StringBuilder never throws an IOException
+			}
+			s = builder.toString();
+			this.summary = s;
+		}
+		return s;
+	}
+	
+	/**
+	 * Appends the string representation of this Restaurant, as returned by toString(), to the given output.
+	 * If the representation is not cached, it is written directly to the output without creating a String.
+	 * @param Appendable out output that the representation is written to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		String s = this.summary;
+		if (s != null) {
+			out.append(s);
+		}
+		else {
+			render(out);
+		}
+	}
+	
+	/**
+	 * Writes the tabular representation of this Restaurant to the given output, with the address, zip, phone, and recent inspection results.
+	 * @param Appendable out output that the representation is written to
+	 * @throws IOException if the output cannot be written
+	 */
+	private void render(Appendable out) throws IOException {
+		out.append(this.name).append('\n');
+		out.append(SEPARATOR).append('\n');
+		out.append(ADDRESS_LABEL);
+		if (this.address == null) {
+			out.append(":  ");
+		}
+		else {
+			out.append(" :  ").append(this.address);
+		}
+		out.append('\n').append(ZIP_LABEL);
+		if (this.zip == null) {
+			out.append(":  ");
+		}
+		else {
+			out.append(" :  ").append(this.zip);
+		}
+		out.append('\n').append(PHONE_LABEL);
+		if (this.phone == null) {
+			out.append(":  ");
+		}
+		else {
+			out.append(" :  ").append(this.phone);
+		}
+		out.append('\n').append("recent inspection results:\n");
 
-		//use a while loop to find the inspections with two most recent dates, and return these inspections 
-		int numDayChanges=0; 
-		int index=listOfInspections.size()-1; //counter for the index position of listOfInspections
-		Date previousDate = null;
-		
-		//sort listOfInspections by order of date, from earliest to latest
-		Collections.sort(listOfInspections);
-		
-		if (listOfInspections.size()==0) {
-			return s;
+		//listOfInspections is kept in date order, so the most recent inspections are at the end
+		int size = listOfInspections.size();
+		if (size==0) {
+			return;
 		}
 		
-		for (int i=index; i>0 && numDayChanges<2; i--) { //iterate backwards in the ArrayList from the most recent date
-			s+=listOfInspections.get(i).toString()+"\n";
-			index--;
-			previousDate=listOfInspections.get(i-1).getDate();
-			if ((previousDate.compareTo(listOfInspections.get(i).getDate())!= 0)){
-				 numDayChanges++;
+		//iterate backwards from the most recent date, and write the inspections with the two most recent dates
+		int numDayChanges=0;
+		Inspection current = listOfInspections.get(size-1);
+		for (int i=size-1; i>0 && numDayChanges<2; i--) {
+			current.appendTo(out);
+			out.append('\n');
+			Inspection previous = listOfInspections.get(i-1);
+			if (previous.getDate().compareTo(current.getDate()) != 0) {
+				numDayChanges++;
 			}
+			current = previous;
 		}
 		
 		if (numDayChanges < 2) {
-			s+=listOfInspections.get(0) + "\n";
+			listOfInspections.get(0).appendTo(out);
+			out.append('\n');
 		}
-		
-		return s;
-}
+	}
 	
 	//Setters
 	/**
@@ -175,6 +388,8 @@ public class Restaurant implements Comparable<Restaurant> {
 	 */
 	public void setName(String name) {
 		this.name=name;
+		this.summary=null;
+		this.modCount++;
 	}
 	
 	/**
@@ -183,6 +398,8 @@ public class Restaurant implements Comparable<Restaurant> {
 	 */
 	public void setAddress(String address) {
 		this.address=address;
+		this.summary=null;
+		this.modCount++;
 	}
 	
 	/**
@@ -191,6 +408,8 @@ public class Restaurant implements Comparable<Restaurant> {
 	 */
 	public void setPhone(String phone) {
 		this.phone=phone;
+		this.summary=null;
+		this.modCount++;
 	}
 	
 	/**
@@ -199,14 +418,36 @@ public class Restaurant implements Comparable<Restaurant> {
 	 */
 	public void setZip(String zip) {
 		this.zip=zip;
+		this.summary=null;
+		this.modCount++;
+	}
+	
+	/**
+	 * Sets the location of this Restaurant object.
+	 * @param double latitude in degrees, from -90 to 90
+	 * @param double longitude in degrees, from -180 to 180
+	 * @throws IllegalArgumentException if a coordinate is out of range or not a number
+	 */
+	public void setLocation(double latitude, double longitude) throws IllegalArgumentException {
+		if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+			throw new IllegalArgumentException("Invalid location input. Latitude must be from -90 to 90 and longitude from -180 to 180.");
+		}
+		this.latitude=latitude;
+		this.longitude=longitude;
 	}
 	
 	/**
 	 * Sets the list of Inspections for this Restaurant object.
-	 * @param ArrayList<Inspection> listOfInspections value to be set.
+	 * A modifiable list is sorted by date, since this Restaurant keeps its inspections in date order.
+	 * @param List<Inspection> listOfInspections value to be set; either a modifiable list or a view of an InspectionStore, which is already in date order.
 	 */
-	public void setListOfInspections(ArrayList<Inspection> listOfInspections) {
+	public void setListOfInspections(List<Inspection> listOfInspections) {
+		if (!(listOfInspections instanceof InspectionStore.View)) {
+			Collections.sort(listOfInspections);
+		}
 		this.listOfInspections=listOfInspections;
+		this.summary=null;
+		this.modCount++;
 	}
 	
 	//Getters
@@ -242,11 +483,43 @@ public class Restaurant implements Comparable<Restaurant> {
 		return this.phone;
 	}
 	
+	/**
+	 * Returns true if the location of this Restaurant object is known.
+	 * @return boolean true if the latitude and longitude have been set
+	 */
+	public boolean hasLocation() {
+		return !Double.isNaN(this.latitude);
+	}
+	
+	/**
+	 * Returns the latitude of this Restaurant object. 
+	 * @return double latitude in degrees, or NaN if the location is not known
+	 */
+	public double getLatitude() {
+		return this.latitude;
+	}
+	
+	/**
+	 * Returns the longitude of this Restaurant object. 
+	 * @return double longitude in degrees, or NaN if the location is not known
+	 */
+	public double getLongitude() {
+		return this.longitude;
+	}
+	
+	/**
+	 * Returns the number of changes made to this Restaurant object since it was created. It grows whenever an inspection is added or a value used by toString() is set.
+	 * @return int modification count of this Restaurant object
+	 */
+	int getModCount() {
+		return this.modCount;
+	}
+	
 	/**
 	 * Returns the list of Inspections of this Restaurant object. 
-	 * @return the ArrayList<Inspection> year value of this Restaurant object. 
+	 * @return the List<Inspection> value of this Restaurant object, in date order; it is read only while the inspections are kept in an InspectionStore, and should otherwise be changed through addInspection(). 
 	 */
-	public ArrayList<Inspection> getListOfInspections() {
+	public List<Inspection> getListOfInspections() {
 		return this.listOfInspections;
 	}
 	
@@ -0,0 +1,321 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The RestaurantDataMetrics class collects the statistics of loading and searching the restaurant data in one place:
+ * the rows loaded and the rows skipped for each reason, the throughput of every load, the latency and number of matches of every kind of query, and the hit rate of the query cache.
+ * The loaders and the search methods record into the single instance returned by getInstance(). Recording only increments counters, so it can stay enabled in production.
+ * The statistics can be published as JMX MBeans under the domain "SFRestaurantData", and printed as text at a fixed interval.
+ * @author Claire Zhu
+ */
+
+public class RestaurantDataMetrics implements RestaurantDataMetricsMBean {
+
+	/**
+	 * SkipReason enumeration lists the reasons why a row of a CSV file is not added to a restaurant list.
+	 * @author Claire Zhu
+	 */
+	public enum SkipReason {
+		/** the row has no inspection score */
+		NO_SCORE,
+		/** the row has an invalid date, score, name or zip code */
+		INVALID_VALUE,
+		/** the row does not have enough entries */
+		MISSING_COLUMNS,
+		/** the restaurant already has the inspection of the row */
+		ALREADY_LOADED
+	}
+
+	public static final String DOMAIN = "SFRestaurantData";
+
+	private static final RestaurantDataMetrics INSTANCE = new RestaurantDataMetrics();
+
+	private final LongAdder rowsLoaded;
+	private final LongAdder[] rowsSkipped;
+	private final ConcurrentHashMap<String, QueryMetrics> queries;
+	private long loads;
+	private double lastRowsPerSecond;
+	private double lastBytesPerSecond;
+	private volatile QueryCache queryCache;
+	private MBeanServer mbeanServer;
+	private ScheduledExecutorService dumper;
+
+	/**
+	 * Constructs a new RestaurantDataMetrics object with all statistics at 0. The loaders and search methods only record into getInstance().
+	 */
+	RestaurantDataMetrics() {
+		rowsLoaded = new LongAdder();
+		rowsSkipped = new LongAdder[SkipReason.values().length];
+		for (int i = 0; i < rowsSkipped.length; i++) {
+			rowsSkipped[i] = new LongAdder();
+		}
+		queries = new ConcurrentHashMap<String, QueryMetrics>();
+	}
+
+	/**
+	 * Returns the metrics shared by the whole program.
+	 * @return RestaurantDataMetrics the single instance
+	 */
+	public static RestaurantDataMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Counts one row that was not added to a restaurant list.
+	 * @param SkipReason reason why the row was skipped
+	 */
+	public void rowSkipped(SkipReason reason) {
+		rowsSkipped[reason.ordinal()].increment();
+	}
+
+	/**
+	 * Records a completed load of a file or of a part of a file.
+	 * @param int rows number of rows added to the restaurant list
+	 * @param long bytes number of bytes read
+	 * @param long nanos time taken by the load, in nanoseconds
+	 */
+	public synchronized void recordLoad(int rows, long bytes, long nanos) {
+		rowsLoaded.add(rows);
+		loads++;
+		double seconds = Math.max(1, nanos) / 1e9;
+		lastRowsPerSecond = rows / seconds;
+		lastBytesPerSecond = bytes / seconds;
+	}
+
+	/**
+	 * Returns the statistics of the given kind of query, creating them the first time they are asked for.
+	 * If the MBeans were registered, the new statistics are registered as well.
+	 * @param String kind of query, for example "name"
+	 * @return QueryMetrics statistics of the queries of that kind
+	 */
+	public QueryMetrics getQueryMetrics(String kind) {
+		QueryMetrics metrics = queries.get(kind);
+		if (metrics == null) {
+			QueryMetrics created = new QueryMetrics(kind);
+			metrics = queries.putIfAbsent(kind, created);
+			if (metrics == null) {
+				metrics = created;
+				register(created);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Records one query.
+	 * @param String kind of query, for example "name"
+	 * @param long start value of System.nanoTime() when the query started
+	 * @param int matches number of restaurants that matched the query
+	 */
+	public void recordQuery(String kind, long start, int matches) {
+		getQueryMetrics(kind).record(System.nanoTime() - start, matches);
+	}
+
+	/**
+	 * Sets the query cache whose statistics are published with the other metrics.
+	 * @param QueryCache queryCache cache of the query results; may be null
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * Registers these metrics and the statistics of every kind of query with the platform MBean server, so they can be read by JMX clients.
+	 * Statistics of kinds of queries that are first asked for later are registered when they are created. Calling this method again has no effect.
+	 * @throws JMException if the MBeans cannot be registered
+	 */
+	public synchronized void registerMBeans() throws JMException {
+		if (mbeanServer != null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, new ObjectName(DOMAIN + ":type=Metrics"));
+		mbeanServer = server;
+		for (QueryMetrics metrics : queries.values()) {
+			register(metrics);
+		}
+	}
+
+	/**
+	 * Registers the statistics of one kind of query, if the MBeans were registered. A kind that is already registered is skipped.
+	 * @param QueryMetrics metrics statistics to be registered
+	 */
+	private synchronized void register(QueryMetrics metrics) {
+		if (mbeanServer == null) {
+			return;
+		}
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=Query,name=" + ObjectName.quote(metrics.getKind()));
+			if (!mbeanServer.isRegistered(name)) {
+				mbeanServer.registerMBean(metrics, name);
+			}
+		}
+		catch (JMException e) {
+			//the statistics are still recorded and printed by the dump
+		}
+	}
+
+	/**
+	 * Prints getReport() to the given stream at a fixed interval, from a daemon thread, until stopDump() is called. An earlier dump is stopped first.
+	 * @param PrintStream out stream the reports are printed to
+	 * @param long period number of seconds between two reports
+	 * @throws IllegalArgumentException if period is less than 1
+	 */
+	public synchronized void startDump(PrintStream out, long period) throws IllegalArgumentException {
+		if (period < 1) {
+			throw new IllegalArgumentException("The period must be at least one second.");
+		}
+		stopDump();
+		dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> out.print(getReport()), period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops the periodic dump started by startDump(), if there is one.
+	 */
+	public synchronized void stopDump() {
+		if (dumper != null) {
+			dumper.shutdown();
+			dumper = null;
+		}
+	}
+
+	@Override
+	public long getRowsLoaded() {
+		return rowsLoaded.sum();
+	}
+
+	@Override
+	public long getRowsSkipped() {
+		long skipped = 0;
+		for (LongAdder adder : rowsSkipped) {
+			skipped += adder.sum();
+		}
+		return skipped;
+	}
+
+	/**
+	 * Returns the number of rows skipped for the given reason.
+	 * @param SkipReason reason why the rows were skipped
+	 * @return long number of rows skipped for that reason
+	 */
+	public long getRowsSkipped(SkipReason reason) {
+		return rowsSkipped[reason.ordinal()].sum();
+	}
+
+	@Override
+	public long getRowsSkippedNoScore() {
+		return getRowsSkipped(SkipReason.NO_SCORE);
+	}
+
+	@Override
+	public long getRowsSkippedInvalidValue() {
+		return getRowsSkipped(SkipReason.INVALID_VALUE);
+	}
+
+	@Override
+	public long getRowsSkippedMissingColumns() {
+		return getRowsSkipped(SkipReason.MISSING_COLUMNS);
+	}
+
+	@Override
+	public long getRowsSkippedAlreadyLoaded() {
+		return getRowsSkipped(SkipReason.ALREADY_LOADED);
+	}
+
+	@Override
+	public double getInvalidRowRate() {
+		long invalid = getRowsSkippedInvalidValue() + getRowsSkippedMissingColumns();
+		long read = getRowsLoaded() + getRowsSkipped();
+		return read == 0 ? 0 : (double) invalid / read;
+	}
+
+	@Override
+	public synchronized long getLoads() {
+		return loads;
+	}
+
+	@Override
+	public synchronized double getLastLoadRowsPerSecond() {
+		return lastRowsPerSecond;
+	}
+
+	@Override
+	public synchronized double getLastLoadMegabytesPerSecond() {
+		return lastBytesPerSecond / (1 << 20);
+	}
+
+	@Override
+	public long getCacheHits() {
+		QueryCache cache = queryCache;
+		return cache == null ? 0 : cache.getHits();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		QueryCache cache = queryCache;
+		return cache == null ? 0 : cache.getMisses();
+	}
+
+	@Override
+	public double getCacheHitRate() {
+		QueryCache cache = queryCache;
+		return cache == null ? 0 : cache.getHitRate();
+	}
+
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("[metrics] rows loaded=%d skipped=%d (no score=%d, invalid value=%d, missing columns=%d, already loaded=%d) invalid rate=%.3f%%%n",
+				getRowsLoaded(), getRowsSkipped(), getRowsSkippedNoScore(), getRowsSkippedInvalidValue(), getRowsSkippedMissingColumns(), getRowsSkippedAlreadyLoaded(),
+				getInvalidRowRate() * 100));
+		report.append(String.format("[metrics] loads=%d last load %.0f rows/s %.1f MB/s%n", getLoads(), getLastLoadRowsPerSecond(), getLastLoadMegabytesPerSecond()));
+		//sorted by kind, so consecutive reports are easy to compare
+		Map<String, QueryMetrics> sorted = new TreeMap<String, QueryMetrics>(queries);
+		for (QueryMetrics metrics : sorted.values()) {
+			report.append("[metrics] query ").append(metrics).append(System.lineSeparator());
+		}
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			report.append("[metrics] ").append(cache).append(System.lineSeparator());
+		}
+		return report.toString();
+	}
+
+	@Override
+	public synchronized void reset() {
+		rowsLoaded.reset();
+		for (LongAdder adder : rowsSkipped) {
+			adder.reset();
+		}
+		for (QueryMetrics metrics : queries.values()) {
+			metrics.reset();
+		}
+		loads = 0;
+		lastRowsPerSecond = 0;
+		lastBytesPerSecond = 0;
+	}
+
+	/**
+	 * Returns a String representation of all statistics.
+	 * @return String report of the statistics
+	 */
+	@Override
+	public String toString() {
+		return getReport();
+	}
+}
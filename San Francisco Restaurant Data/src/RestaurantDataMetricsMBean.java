@@ -0,0 +1,97 @@
+/**
+ * The RestaurantDataMetricsMBean interface is the management interface of RestaurantDataMetrics, which JMX clients such as JConsole use to read the loading and cache statistics.
+ * The statistics of the queries are published by a separate QueryMetricsMBean for every kind of query.
+ * @author Claire Zhu
+ */
+
+public interface RestaurantDataMetricsMBean {
+
+	/**
+	 * Returns the number of rows that were added to a restaurant list.
+	 * @return long number of loaded rows
+	 */
+	long getRowsLoaded();
+
+	/**
+	 * Returns the number of rows that were read but not added, for any reason.
+	 * @return long number of skipped rows
+	 */
+	long getRowsSkipped();
+
+	/**
+	 * Returns the number of rows skipped because they have no inspection score.
+	 * @return long number of rows without a score
+	 */
+	long getRowsSkippedNoScore();
+
+	/**
+	 * Returns the number of rows skipped because they have an invalid date, score, name or zip code.
+	 * @return long number of rows with an invalid value
+	 */
+	long getRowsSkippedInvalidValue();
+
+	/**
+	 * Returns the number of rows skipped because they do not have enough entries.
+	 * @return long number of rows with missing columns
+	 */
+	long getRowsSkippedMissingColumns();
+
+	/**
+	 * Returns the number of rows skipped because their inspection was already loaded.
+	 * @return long number of rows that were loaded before
+	 */
+	long getRowsSkippedAlreadyLoaded();
+
+	/**
+	 * Returns the fraction of the rows read that were skipped because of invalid or missing values; a rising value means the quality of the data got worse.
+	 * @return double fraction from 0 to 1 of the rows read that were invalid or had missing columns
+	 */
+	double getInvalidRowRate();
+
+	/**
+	 * Returns the number of files or parts of files that were loaded.
+	 * @return long number of loads
+	 */
+	long getLoads();
+
+	/**
+	 * Returns the number of rows read per second by the last load.
+	 * @return double rows per second, or 0 if nothing was loaded
+	 */
+	double getLastLoadRowsPerSecond();
+
+	/**
+	 * Returns the number of megabytes read per second by the last load.
+	 * @return double megabytes per second, or 0 if nothing was loaded
+	 */
+	double getLastLoadMegabytesPerSecond();
+
+	/**
+	 * Returns the number of queries answered by the query cache from a cached result.
+	 * @return long number of hits, or 0 if there is no query cache
+	 */
+	long getCacheHits();
+
+	/**
+	 * Returns the number of queries the query cache had to search.
+	 * @return long number of misses, or 0 if there is no query cache
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Returns the fraction of the queries answered by the query cache from a cached result.
+	 * @return double hit rate from 0 to 1
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * Returns all statistics as text, in the format of the periodic dump.
+	 * @return String report of the statistics
+	 */
+	String getReport();
+
+	/**
+	 * Sets all statistics back to 0. The statistics of the query cache are kept.
+	 */
+	void reset();
+}
@@ -0,0 +1,389 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The RestaurantDataReader class streams the lines of a restaurant inspections CSV file and adds every valid row to a RestaurantList.
+ * The file is read through a FileChannel into a reusable buffer, and each line is split by a CSVTokenizer, so no Strings are created for the columns that are not used.
+ * Each row is added directly to the restaurant list without building an intermediate list of entries.
+ * The values of the columns with few distinct values (zip codes, violation descriptions and risk categories) are looked up in a StringDictionary by their bytes,
+ * so all restaurants and inspections share one String instance per distinct value. Names, addresses and phone numbers are nearly unique and are not shared.
+ * @author Claire Zhu
+ */
+
+public class RestaurantDataReader implements Closeable {
+
+	//indexes of the columns used by the loader
+	public static final int NAME = 1;
+	public static final int ADDRESS = 2;
+	public static final int ZIP = 5;
+	public static final int LATITUDE = 6;
+	public static final int LONGITUDE = 7;
+	public static final int PHONE = 9;
+	public static final int INSPECTION_ID = 10;
+	public static final int DATE = 11;
+	public static final int SCORE = 12;
+	public static final int VIOLATION_ID = 14;
+	public static final int VIOLATION = 15;
+	public static final int RISK = 16;
+
+	//number of entries in a row that has a risk category
+	private static final int COLUMNS = 17;
+
+	//name of the score column in the header row of the data set
+	private static final byte[] SCORE_HEADER = "inspection_score".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private byte[] line;
+	private int lineLength;
+	private boolean skipLineFeed;
+	private boolean lineTerminated;
+	private boolean endOfFile;
+	private CSVTokenizer tokenizer;
+	//position in the file of the first byte of the buffer, and of the byte after the last complete line that was read
+	private long bufferStart;
+	private long completedPosition;
+
+	/**
+	 * Constructs a new RestaurantDataReader object that reads the given file from the beginning.
+	 * @param File file containing the restaurant inspections in CSV format
+	 * @throws IOException if the file cannot be opened for reading
+	 */
+	public RestaurantDataReader(File file) throws IOException {
+		this(file, 0);
+	}
+
+	/**
+	 * Constructs a new RestaurantDataReader object that reads the given file from the given position, for example the value of getPosition() after an earlier read of the same file.
+	 * @param File file containing the restaurant inspections in CSV format
+	 * @param long position of the first byte to read; should be the start of a line
+	 * @throws IOException if the file cannot be opened for reading
+	 */
+	public RestaurantDataReader(File file, long position) throws IOException {
+		this(file, position, new StringDictionary());
+	}
+
+	/**
+	 * Constructs a new RestaurantDataReader object that reads the given file from the given position, and takes the zip codes,
+	 * violation descriptions and risk categories from the given dictionary, so every distinct value is stored only once.
+	 * Readers of several files that are loaded into the same list should share one dictionary.
+	 * @param File file containing the restaurant inspections in CSV format
+	 * @param long position of the first byte to read; should be the start of a line
+	 * @param StringDictionary strings dictionary of the values read so far; it must not be used by another thread at the same time
+	 * @throws IOException if the file cannot be opened for reading
+	 */
+	public RestaurantDataReader(File file, long position, StringDictionary strings) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		channel.position(position);
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip(); //start with an empty buffer
+		line = new byte[1024];
+		tokenizer = new CSVTokenizer(strings);
+		bufferStart = position;
+		completedPosition = position;
+	}
+
+	/**
+	 * Returns the position in the file right after the last line that was read completely, including its line terminator.
+	 * A later RestaurantDataReader can start at this position to read only the lines appended to the file since then.
+	 * @return long position of the first byte that has not been read as part of a complete line
+	 */
+	public long getPosition() {
+		return completedPosition;
+	}
+
+	/**
+	 * Returns true if the line read by the last call to nextRecord() ended with a line terminator.
+	 * The last line of a file that is still being written may be incomplete, in which case this method returns false.
+	 * @return boolean true if the current line is complete
+	 */
+	public boolean isLineTerminated() {
+		return lineTerminated;
+	}
+
+	/**
+	 * Reads all remaining rows of the file and adds them to the given list.
+	 * Rows that cannot be converted to a valid Restaurant and Inspection are skipped, and counted by RestaurantDataMetrics together with the throughput of the load.
+	 * @param RestaurantList restaurantList list that the restaurants and their inspections are added to
+	 * @return int number of rows that were added to the list
+	 * @throws IOException if the file cannot be read
+	 */
+	public int load(RestaurantList restaurantList) throws IOException {
+		long start = System.nanoTime();
+		long startPosition = completedPosition;
+		int rows = 0;
+		while (nextRecord()) {
+			if (isHeader(tokenizer)) {
+				continue;
+			}
+			try {
+				if (addRecord(tokenizer, restaurantList)) {
+					rows++;
+				}
+			}
+			catch (IllegalArgumentException e) {
+				//skip rows with invalid values
+				RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.INVALID_VALUE);
+			}
+			catch (IndexOutOfBoundsException e) {
+				//skip rows that do not have enough entries
+				RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.MISSING_COLUMNS);
+			}
+		}
+		RestaurantDataMetrics.getInstance().recordLoad(rows, completedPosition - startPosition, System.nanoTime() - start);
+		return rows;
+	}
+
+	/**
+	 * Reads the next line of the file and splits it into entries.
+	 * @return boolean true if a line was read, and false at the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean nextRecord() throws IOException {
+		if (!readLine()) {
+			return false;
+		}
+		tokenizer.tokenize(line, 0, lineLength);
+		return true;
+	}
+
+	/**
+	 * Returns the tokenizer holding the entries of the line read by the last call to nextRecord().
+	 * @return CSVTokenizer entries of the current line
+	 */
+	public CSVTokenizer getFields() {
+		return tokenizer;
+	}
+
+	/**
+	 * Copies the next line of the file, without its line terminator, into the line buffer.
+	 * Lines may end with "\n", "\r\n" or "\r", in the same way Scanner.nextLine() accepts them.
+	 * @return boolean true if a line was read, and false at the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		boolean readAny = false;
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				if (endOfFile || !fillBuffer()) {
+					return readAny;
+				}
+			}
+			byte[] bytes = buffer.array();
+			int position = buffer.position();
+			int limit = buffer.limit();
+
+			//a "\r\n" terminator may be split between two reads of the buffer
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (bytes[position] == '\n') {
+					position++;
+					completedPosition = bufferStart + position;
+				}
+			}
+
+			int end = position;
+			while (end < limit && bytes[end] != '\n' && bytes[end] != '\r') {
+				end++;
+			}
+			appendToLine(bytes, position, end - position);
+			if (end < limit) {
+				skipLineFeed = bytes[end] == '\r';
+				buffer.position(end + 1);
+				lineTerminated = true;
+				completedPosition = bufferStart + end + 1;
+				return true;
+			}
+			buffer.position(limit);
+			readAny = readAny || lineLength > 0;
+			lineTerminated = false;
+		}
+	}
+
+	/**
+	 * Reads the next block of the file into the buffer.
+	 * @return boolean true if any bytes were read, and false at the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean fillBuffer() throws IOException {
+		bufferStart += buffer.limit();
+		buffer.clear();
+		int read = 0;
+		while (read == 0) {
+			read = channel.read(buffer);
+		}
+		buffer.flip();
+		if (read < 0) {
+			endOfFile = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Appends bytes to the line buffer, growing it when needed.
+	 * @param byte[] bytes array to copy from
+	 * @param int offset of the first byte to copy
+	 * @param int length number of bytes to copy
+	 */
+	private void appendToLine(byte[] bytes, int offset, int length) {
+		if (lineLength + length > line.length) {
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		}
+		System.arraycopy(bytes, offset, line, lineLength, length);
+		lineLength += length;
+	}
+
+	/**
+	 * Returns true if the tokenized row is the header row of the data set, which names the columns and is not an inspection.
+	 * The header is recognized by the name of its score column, so it is skipped wherever it is read, without being counted as an invalid row.
+	 * @param CSVTokenizer fields entries of the row
+	 * @return boolean true if the row is the header row
+	 */
+	static boolean isHeader(CSVTokenizer fields) {
+		if (fields.getFieldCount() <= SCORE) {
+			return false;
+		}
+		int start = fields.getStart(SCORE);
+		return Arrays.equals(fields.getBuffer(), start, start + fields.getLength(SCORE), SCORE_HEADER, 0, SCORE_HEADER.length);
+	}
+
+	/**
+	 * Converts one tokenized row into an Inspection and adds it to the matching Restaurant in the list, creating the Restaurant if it is not in the list yet.
+	 * @param CSVTokenizer fields entries of the row
+	 * @param RestaurantList restaurantList list that the restaurant and inspection are added to
+	 * @return boolean true if the row was added, and false if it has no inspection score
+	 * @throws IllegalArgumentException if the row contains an invalid date, score, name or zip code
+	 * @throws IndexOutOfBoundsException if the row does not have enough entries
+	 */
+	static boolean addRecord(CSVTokenizer fields, RestaurantList restaurantList) throws IllegalArgumentException, IndexOutOfBoundsException {
+		return addRecord(fields, restaurantList, false);
+	}
+
+	/**
+	 * Converts one tokenized row into an Inspection and adds it to the matching Restaurant in the list, creating the Restaurant if it is not in the list yet.
+	 * @param CSVTokenizer fields entries of the row
+	 * @param RestaurantList restaurantList list that the restaurant and inspection are added to
+	 * @param boolean skipSeen true if the row should be skipped when the restaurant already has its inspection, for rows that may have been loaded before;
+	 * rows are recognized by their inspection and violation ids, or by their values if they have no ids
+	 * @return boolean true if the row was added, and false if it has no inspection score or was skipped as already seen
+	 * @throws IllegalArgumentException if the row contains an invalid date, score, name or zip code
+	 * @throws IndexOutOfBoundsException if the row does not have enough entries
+	 */
+	static boolean addRecord(CSVTokenizer fields, RestaurantList restaurantList, boolean skipSeen) throws IllegalArgumentException, IndexOutOfBoundsException {
+		if (fields.isEmpty(SCORE)) {
+			RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.NO_SCORE);
+			return false;
+		}
+
+		//only the date part of the inspection date and time is used, and it is parsed without creating a String
+		byte[] bytes = fields.getBuffer();
+		int dateStart = fields.getStart(DATE);
+		int dateEnd = dateStart + fields.getLength(DATE);
+		for (int i = dateStart; i < dateEnd; i++) {
+			if (bytes[i] == ' ') {
+				dateEnd = i;
+				break;
+			}
+		}
+		Date date = Date.parse(bytes, dateStart, dateEnd - dateStart);
+
+		Inspection restaurantInspection = new Inspection(date, fields.getInt(SCORE), fields.getSharedString(VIOLATION),
+				fields.getFieldCount() == COLUMNS ? fields.getSharedString(RISK) : null);
+		restaurantInspection.setRowKey(rowKey(fields));
+
+		String name = fields.getString(NAME);
+		String zip = fields.getSharedString(ZIP);
+		Restaurant restaurant = restaurantList.getRestaurant(name, zip);
+		//use the appropriate constructor depending on what information is present in the row
+		if (restaurant == null) {
+			if (fields.isEmpty(ADDRESS) && fields.isEmpty(PHONE)) {
+				restaurant = new Restaurant(name, zip);
+			}
+			else {
+				restaurant = new Restaurant(name, zip, fields.getString(ADDRESS), fields.getString(PHONE));
+			}
+			restaurantList.add(restaurant);
+		}
+		else if (skipSeen && restaurant.hasInspection(restaurantInspection)) {
+			RestaurantDataMetrics.getInstance().rowSkipped(RestaurantDataMetrics.SkipReason.ALREADY_LOADED);
+			return false;
+		}
+		if (!restaurant.hasLocation()) {
+			setLocation(fields, restaurant);
+		}
+		restaurant.addInspection(restaurantInspection);
+		return true;
+	}
+
+	/**
+	 * Computes the key of a row from its inspection id and violation id, so a row that is loaded again can be recognized even if another row has the same values.
+	 * The key is a 64 bit FNV-1a hash of the bytes of both ids, so two different rows of the same restaurant and date practically never get the same key.
+	 * @param CSVTokenizer fields entries of the row
+	 * @return long key of the row, or 0 if the row has neither id
+	 */
+	private static long rowKey(CSVTokenizer fields) {
+		if (fields.isEmpty(INSPECTION_ID) && fields.isEmpty(VIOLATION_ID)) {
+			return 0;
+		}
+		long hash = hash(0xcbf29ce484222325L, fields, INSPECTION_ID);
+		hash = hash(hash, fields, VIOLATION_ID);
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Adds the bytes of an entry to an FNV-1a hash, followed by a separator, so moving a byte from one entry to the next changes the hash.
+	 * @param long hash hash of the previous entries
+	 * @param CSVTokenizer fields entries of the row
+	 * @param int column index of the entry
+	 * @return long hash including the entry
+	 */
+	private static long hash(long hash, CSVTokenizer fields, int column) {
+		byte[] bytes = fields.getBuffer();
+		int end = fields.getStart(column) + fields.getLength(column);
+		for (int i = fields.getStart(column); i < end; i++) {
+			hash = (hash ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+		}
+		return (hash ^ 0xff) * 0x100000001b3L;
+	}
+
+	/**
+	 * Sets the location of a restaurant from the latitude and longitude columns of a row.
+	 * Missing or invalid coordinates, and the point 0,0 that some rows use for an unknown location, are ignored instead of skipping the row, since they do not affect the inspection.
+	 * @param CSVTokenizer fields entries of the row
+	 * @param Restaurant restaurant restaurant of the row
+	 */
+	private static void setLocation(CSVTokenizer fields, Restaurant restaurant) {
+		if (fields.isEmpty(LATITUDE) || fields.isEmpty(LONGITUDE)) {
+			return;
+		}
+		try {
+			double latitude = fields.getDouble(LATITUDE);
+			double longitude = fields.getDouble(LONGITUDE);
+			if (latitude != 0 || longitude != 0) {
+				restaurant.setLocation(latitude, longitude);
+			}
+		}
+		catch (IllegalArgumentException e) {
+			//keep the restaurant without a location
+		}
+	}
+
+	/**
+	 * Closes the file read by this RestaurantDataReader.
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
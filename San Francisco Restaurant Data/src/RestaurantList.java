@@ -1,27 +1,377 @@
 
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
 
 /**
  * RestaurantList class is used to store a collection of Restaurant objects. 
- * This class inherits from the ArrayList<Restaurant> class. 
+ * This class inherits from the ArrayBasedList<Restaurant> class. 
  * It is able to find a list of objects related by a name keyword or a zip code keyword. 
  * @author Claire Zhu
  */
 
-public class RestaurantList extends LinkedList<Restaurant> {
+public class RestaurantList extends ArrayBasedList<Restaurant> {
 	
+	//registry of the restaurants in this list, keyed by case folded name and zip code (the same identity used by Restaurant.equals()); null until it is first needed after restore()
+	private volatile HashMap<String, Restaurant> registry;
+	
+	//restaurants of this list in their natural order, and the indexes built over them; they are set to null when the list changes and rebuilt by the next search
+	private volatile Restaurant[] sortedRestaurants;
+	private NameIndex nameIndex;
+	private ZipIndex zipIndex;
+	private FuzzyNameIndex fuzzyIndex;
+	private GeoIndex geoIndex;
+	
+	//columnar store of the inspections, created by compactInspections()
+	private InspectionStore inspectionStore;
 	
 	/**
 	 * This default constructor constructs a new empty RestaurantList object. 
 	 */
 	public RestaurantList() {
+		//the registry already guarantees that restaurants are unique, so the list does not need its own set of elements
+		super(false);
+		registry = new HashMap<String, Restaurant>();
+	}
+	
+	/**
+	 * Returns the key used by the registry for the given restaurant name and zip code.
+	 * @param String name of the restaurant
+	 * @param String zip code of the restaurant
+	 * @return String key that is equal for all restaurants considered equal by Restaurant.equals()
+	 */
+	private static String registryKey(String name, String zip) {
+		return Restaurant.foldCase(name) + "\n" + zip;
+	}
+	
+	/**
+	 * Returns the registry of this list, building it from the restaurants of this list if it was not built since the list was restored.
+	 * @return HashMap<String, Restaurant> registry of the restaurants, keyed by registryKey()
+	 */
+	private HashMap<String, Restaurant> getRegistry() {
+		HashMap<String, Restaurant> result = registry;
+		if (result == null) {
+			synchronized (this) {
+				result = registry;
+				if (result == null) {
+					result = new HashMap<String, Restaurant>(size() * 2);
+					for (Restaurant restaurant : this) {
+						result.put(registryKey(restaurant.getName(), restaurant.getZip()), restaurant);
+					}
+					registry = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the Restaurant object in this list with the given name (case insensitive) and zip code.
+	 * This is a constant time lookup, so callers do not have to iterate over the list or construct a temporary Restaurant to find a match.
+	 * @param String name of the restaurant to find
+	 * @param String zip code of the restaurant to find
+	 * @return Restaurant object with the same name and zip code, or null if this list does not contain one
+	 */
+	public Restaurant getRestaurant(String name, String zip) {
+		if (name == null || zip == null) {
+			return null;
+		}
+		return getRegistry().get(registryKey(name, zip));
+	}
+	
+	/**
+	 * Adds the given Restaurant to the end of this list, unless an equal Restaurant is already stored.
+	 * Uses the registry for the duplicate check, so adding is a constant time operation.
+	 * @param Restaurant restaurant to be added
+	 * @return boolean true if the restaurant was added, and false if an equal restaurant is already in this list
+	 */
+	@Override
+	public boolean add(Restaurant restaurant) {
+		String key = registryKey(restaurant.getName(), restaurant.getZip());
+		if (getRegistry().containsKey(key)) {
+			return false;
+		}
+		getRegistry().put(key, restaurant);
+		append(restaurant);
+		sortedRestaurants = null;
+		return true;
+	}
+	
+	/**
+	 * Returns true if this list contains a Restaurant equal to the specified object.
+	 * @param Object o to be searched for within this list
+	 * @return boolean true if this list contains an equal Restaurant
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Restaurant)) {
+			return false;
+		}
+		Restaurant restaurant = (Restaurant) o;
+		return getRestaurant(restaurant.getName(), restaurant.getZip()) != null;
+	}
+	
+	/**
+	 * Removes the Restaurant equal to the specified object from this list, if it is present.
+	 * @param Object o to be removed
+	 * @return boolean true if a Restaurant was removed, and false otherwise
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (!super.remove(o)) {
+			return false;
+		}
+		Restaurant restaurant = (Restaurant) o;
+		getRegistry().remove(registryKey(restaurant.getName(), restaurant.getZip()));
+		sortedRestaurants = null;
+		return true;
+	}
+	
+	/**
+	 * Removes all of the restaurants of this list that are also contained in the specified collection.
+	 * @param Collection<?> c restaurants to be removed
+	 * @return boolean true if this list changed
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return super.removeAll(c) && restaurantsRemoved();
+	}
+	
+	/**
+	 * Retains only the restaurants of this list that are contained in the specified collection.
+	 * @param Collection<?> c restaurants to be kept
+	 * @return boolean true if this list changed
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return super.retainAll(c) && restaurantsRemoved();
+	}
+	
+	/**
+	 * Rebuilds the registry from the remaining restaurants after a bulk removal, and discards the indexes.
+	 * A bulk removal already visits every restaurant, so rebuilding the registry does not change its cost.
+	 * @return boolean always true, the result of the bulk removal
+	 */
+	private boolean restaurantsRemoved() {
+		HashMap<String, Restaurant> remaining = new HashMap<String, Restaurant>();
+		for (Restaurant restaurant : this) {
+			remaining.put(registryKey(restaurant.getName(), restaurant.getZip()), restaurant);
+		}
+		registry = remaining;
+		sortedRestaurants = null;
+		return true;
+	}
+	
+	/**
+	 * Removes all of the restaurants from this list.
+	 */
+	@Override
+	public void clear() {
+		super.clear();
+		registry = new HashMap<String, Restaurant>();
+		sortedRestaurants = null;
+	}
+	
+	/**
+	 * Sorts the restaurants of this list according to their natural order and builds the indexes used by the search methods.
+	 * The indexes are also built by the first search after this list changes, so calling this method is only needed to avoid the cost during that search (for example, right after loading).
+	 */
+	public synchronized void buildIndex() {
+		Restaurant[] sorted = toArray(new Restaurant[size()]);
+		if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+			Arrays.parallelSort(sorted);
+		}
+		else {
+			Arrays.sort(sorted);
+		}
+		nameIndex = new NameIndex(sorted);
+		zipIndex = new ZipIndex(sorted);
+		fuzzyIndex = new FuzzyNameIndex(sorted);
+		geoIndex = new GeoIndex(sorted);
+		sortedRestaurants = sorted;
+	}
+	
+	/**
+	 * Builds the indexes of this list from those of a list of restaurants with the same names and zip codes, for example copies of them that received more inspections.
+	 * The name, zip code and fuzzy name indexes only depend on the names and zip codes, so they are shared with the other list instead of being built again.
+	 * The location index is built again, since it keeps the restaurants themselves and locations may have been added.
+	 * @param RestaurantList previous indexed list whose name, zip code and fuzzy name indexes are shared
+	 * @param Restaurant[] sorted all restaurants of this list in sorted order; the restaurant at every position must have the same name and zip code as in previous
+	 * @throws IllegalArgumentException if the number of restaurants is not the same in both lists
+	 */
+	synchronized void buildIndex(RestaurantList previous, Restaurant[] sorted) throws IllegalArgumentException {
+		if (sorted.length != size() || sorted.length != previous.getSortedRestaurants().length) {
+			throw new IllegalArgumentException("The lists do not have the same restaurants.");
+		}
+		nameIndex = previous.getNameIndex();
+		zipIndex = previous.getZipIndex();
+		fuzzyIndex = previous.fuzzyIndex;
+		geoIndex = new GeoIndex(sorted);
+		sortedRestaurants = sorted;
+	}
+	
+	/**
+	 * Moves the inspections of all restaurants in this list into a columnar InspectionStore, and makes each restaurant use a view of the store as its list of inspections.
+	 * This replaces the separate Inspection and Date objects with a few primitive values per inspection. Inspections added to a restaurant afterwards are kept in a list of its own again.
+	 * @return InspectionStore store holding the inspections; restaurant ids in the store are the positions of the restaurants in sorted order
+	 * @throws IllegalArgumentException if the inspections have more than 255 distinct risk categories
+	 */
+	public synchronized InspectionStore compactInspections() throws IllegalArgumentException {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		InspectionStore store = new InspectionStore(sortedRestaurants);
+		for (int id = 0; id < sortedRestaurants.length; id++) {
+			sortedRestaurants[id].setListOfInspections(store.getInspections(id));
+		}
+		inspectionStore = store;
+		return store;
+	}
+	
+	/**
+	 * Replaces the restaurants of this list with the restaurants of the given store, and makes each restaurant use a view of the store as its list of inspections.
+	 * The restaurants of the store must be in sorted order and the indexes must have been built over them, so nothing is sorted, compacted or indexed again. Used to restore a list from a RestaurantSnapshot.
+	 * The registry is only built when a restaurant is first looked up, added or removed, so restoring does not hash every name either.
+	 * @param InspectionStore store holding the restaurants and their inspections
+	 * @param NameIndex nameIndex index of the names of the restaurants of the store
+	 * @param ZipIndex zipIndex index of the zip codes of the restaurants of the store
+	 * @param FuzzyNameIndex fuzzyIndex fuzzy index of the names of the restaurants of the store
+	 * @param GeoIndex geoIndex index of the locations of the restaurants of the store
+	 */
+	synchronized void restore(InspectionStore store, NameIndex nameIndex, ZipIndex zipIndex, FuzzyNameIndex fuzzyIndex, GeoIndex geoIndex) {
+		clear();
+		Restaurant[] sorted = store.getRestaurants();
+		ensureCapacity(sorted.length);
+		for (int id = 0; id < sorted.length; id++) {
+			sorted[id].setListOfInspections(store.getInspections(id));
+			append(sorted[id]);
+		}
+		registry = null;
+		this.nameIndex = nameIndex;
+		this.zipIndex = zipIndex;
+		this.fuzzyIndex = fuzzyIndex;
+		this.geoIndex = geoIndex;
+		sortedRestaurants = sorted;
+		inspectionStore = store;
+	}
+	
+	/**
+	 * Writes the name, zip code, fuzzy name and location indexes of this list to a RestaurantSnapshot, so restoring the list does not build them again.
+	 * The indexes are built over the same restaurants as the store returned by getInspectionStore(), which is written before them.
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	synchronized void writeIndexes(DataOutputStream out) throws IOException {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		nameIndex.write(out);
+		zipIndex.write(out);
+		fuzzyIndex.write(out);
+		geoIndex.write(out);
+	}
+	
+	/**
+	 * Returns the InspectionStore holding the inspections of this list, compacting the inspections again if restaurants or inspections were added since the last compaction.
+	 * @return InspectionStore store holding all inspections of this list
+	 * @throws IllegalArgumentException if the inspections have more than 255 distinct risk categories
+	 */
+	public synchronized InspectionStore getInspectionStore() throws IllegalArgumentException {
+		if (!isCompacted()) {
+			compactInspections();
+		}
+		return inspectionStore;
+	}
+	
+	/**
+	 * Returns the InspectionStore holding the inspections of this list only if it is up to date, so a caller can use it without compacting the inspections.
+	 * @return InspectionStore store holding all inspections of this list, or null if the inspections were never compacted or changed since
+	 */
+	synchronized InspectionStore getCompactedInspectionStore() {
+		return isCompacted() ? inspectionStore : null;
+	}
+	
+	/**
+	 * Returns true if the InspectionStore holds all inspections of the restaurants of this list in sorted order.
+	 * @return boolean true if the inspections do not need to be compacted again
+	 */
+	private boolean isCompacted() {
+		return inspectionStore != null && !inspectionStore.isStale() && inspectionStore.getRestaurants() == sortedRestaurants;
+	}
+	
+	/**
+	 * Creates a RestaurantList from the restaurants with the given ids.
+	 * @param int[] ids array of positions in sortedRestaurants
+	 * @return RestaurantList list of the restaurants in the order of the ids, or null if ids is empty
+	 */
+	private RestaurantList fromIds(int[] ids) {
+		return fromIds(sortedRestaurants, ids);
+	}
+	
+	/**
+	 * Creates a RestaurantList from the restaurants with the given ids.
+	 * @param Restaurant[] sorted restaurants in sorted order, as returned by getSortedRestaurants()
+	 * @param int[] ids sorted array of positions in sorted
+	 * @return RestaurantList list of the restaurants in sorted order, or null if ids is empty
+	 */
+	static RestaurantList fromIds(Restaurant[] sorted, int[] ids) {
+		if (ids.length == 0) {
+			return null;
+		}
+		RestaurantList list = new RestaurantList();
+		list.ensureCapacity(ids.length);
+		//the ids are distinct, so the restaurants are appended without the duplicate check, and the registry is only built if the result is searched by name and zip code
+		for (int id : ids) {
+			list.append(sorted[id]);
+		}
+		list.registry = null;
+		return list;
+	}
+	
+	/**
+	 * Returns the restaurants of this list in their natural order, building the indexes first if the list changed since they were built.
+	 * A new array is created whenever the list changes, so callers can compare arrays to find out whether ids they kept are still valid.
+	 * @return Restaurant[] restaurants in sorted order; the ids used by the indexes are positions in this array. It should not be modified.
+	 */
+	Restaurant[] getSortedRestaurants() {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		return sortedRestaurants;
+	}
+	
+	/**
+	 * Returns the name index of this list, building the indexes first if the list changed since they were built.
+	 * @return NameIndex index of the names of getSortedRestaurants()
+	 */
+	NameIndex getNameIndex() {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		return nameIndex;
+	}
+	
+	/**
+	 * Returns the zip code index of this list, building the indexes first if the list changed since they were built.
+	 * @return ZipIndex index of the zip codes of getSortedRestaurants()
+	 */
+	ZipIndex getZipIndex() {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		return zipIndex;
 	}
 	
 	
 	/**
 	 * Searches through an ArrayList of Restaurant objects and looks for which objects' names contain the keyword as a substring (case insensitive).
+	 * The search uses a trigram index of the names, so only the restaurants sharing every trigram of the keyword are examined.
 	 * @param String keyword (restaurant name) from user input.
 	 * @return RestaurantList list of Restaurant objects whose names contain the keyword parameter as a substring (case insensitive).
 	 * null if the functions are called with a keyword that is either equal to null or an empty string, or if there are no matches for the keyword.  
@@ -29,48 +379,330 @@ public class RestaurantList extends LinkedList<Restaurant> {
 	 */
 	public RestaurantList getMatchingRestaurants(String keyword) {
 		
-		RestaurantList listFromKeyword = new RestaurantList();
 		if (keyword == null || keyword.equals("")) {
 			return null;
 		}
-		
-		for (Restaurant restaurant: this) {
-			if (restaurant.getName().toLowerCase().contains(keyword.toLowerCase())) {
-				listFromKeyword.add(restaurant);
-			}
-		}
-		if (listFromKeyword.isEmpty()) {
-			return null;
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
 		}
-		listFromKeyword.sort();
-		return (RestaurantList) listFromKeyword;
+		//the index returns the ids of the matches in sorted order, so the list does not have to be sorted again
+		int[] ids = nameIndex.find(keyword);
+		RestaurantDataMetrics.getInstance().recordQuery("name", start, ids.length);
+		return fromIds(ids);
 	}
 	
 	/**
-	 * Searches through an ArrayList of Restaurant objects and looks for which objects' zip codes are equal to the keyword.
+	 * Searches through an ArrayList of Restaurant objects and looks for which objects' zip codes contain the keyword as a substring.
+	 * The search uses a zip code index, so only the distinct zip codes are compared to the keyword.
 	 * @param String keyword (restaurant zip code) from user input.
-	 * @return RestaurantList list of Restaurant objects whose zip codes are equal to the keyword.
+	 * @return RestaurantList list of Restaurant objects whose zip codes contain the keyword.
 	 * null if the functions are called with a keyword that is either equal to null or an empty string, or if there are no matches for the keyword.  
 	 *The returned list is sorted according to the natural order of its elements.
 	 */
 	public RestaurantList getMatchingZip(String keyword) {
 		
-		RestaurantList listFromKeyword = new RestaurantList();
-		
 		if (keyword == null || keyword.isEmpty()) {
 			return null;
 		}
-		for (Restaurant restaurant: this ) {
-			if (restaurant.getZip().contains(keyword)) {
-				listFromKeyword.add(restaurant);
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int[] ids = zipIndex.find(keyword);
+		RestaurantDataMetrics.getInstance().recordQuery("zip", start, ids.length);
+		return fromIds(ids);
+	}
+	
+	/**
+	 * Searches for restaurants whose names are spelled like the keyword, allowing a few typing mistakes in every word of the keyword:
+	 * none in words of up to 2 characters, one in words of up to 5 characters, and two in longer words.
+	 * @param String keyword (restaurant name) from user input.
+	 * @return RestaurantList list of the matching restaurants, closest matches first and then in sorted order.
+	 * null if the keyword is null or has no letters or digits, or if there are no matches for the keyword.
+	 */
+	public RestaurantList getFuzzyMatchingRestaurants(String keyword) {
+		return getFuzzyMatchingRestaurants(keyword, -1);
+	}
+	
+	/**
+	 * Searches for restaurants whose names contain a word within the given edit distance of every word of the keyword, using a BK-tree of the words of the names.
+	 * @param String keyword (restaurant name) from user input.
+	 * @param int maxDistance largest number of inserted, deleted or replaced characters allowed in each word; a negative value chooses it from the length of the word
+	 * @return RestaurantList list of the matching restaurants, closest matches first and then in sorted order.
+	 * null if the keyword is null or has no letters or digits, or if there are no matches for the keyword.
+	 */
+	public RestaurantList getFuzzyMatchingRestaurants(String keyword, int maxDistance) {
+		return fromIds(findFuzzyIds(keyword, maxDistance));
+	}
+	
+	/**
+	 * Returns the ids of the restaurants whose names contain a word within the given edit distance of every word of the keyword, closest matches first.
+	 * @param String keyword (restaurant name) from user input.
+	 * @param int maxDistance largest number of inserted, deleted or replaced characters allowed in each word; a negative value chooses it from the length of the word
+	 * @return int[] positions of the matches in getSortedRestaurants(), closest matches first and then in sorted order; empty if the keyword is null or there are no matches
+	 */
+	int[] findFuzzyIds(String keyword, int maxDistance) {
+		if (keyword == null) {
+			return new int[0];
+		}
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int[] ids = fuzzyIndex.find(keyword, maxDistance);
+		RestaurantDataMetrics.getInstance().recordQuery("fuzzy", start, ids.length);
+		return ids;
+	}
+	
+	/**
+	 * Searches for the restaurants matching a compound query of name, zip code, score, date and risk conditions, such as "pizza zip:941* score<70 since:2018".
+	 * The query language and the planner are described by RestaurantQuery.
+	 * @param String query from user input.
+	 * @return RestaurantList list of the matching restaurants, sorted according to the natural order of its elements, or null if there are no matches.
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public RestaurantList getMatchingQuery(String query) throws IllegalArgumentException {
+		return getMatchingQuery(query, 0, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Searches for one page of the restaurants matching a compound query. The matches are found as a bitmap of ids, and only the restaurants of the page are looked up.
+	 * @param String query from user input.
+	 * @param int offset number of matches to skip, in sorted order
+	 * @param int limit largest number of matches to return
+	 * @return RestaurantList list of the matching restaurants of the page in sorted order, or null if the page is empty.
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public RestaurantList getMatchingQuery(String query, int offset, int limit) throws IllegalArgumentException {
+		return getRestaurants(getQueryBitmap(query), offset, limit);
+	}
+	
+	/**
+	 * Counts the restaurants matching a compound query, such as "risk:high zip:94103". The conditions are combined as bitmaps of ids, so no Restaurant objects are looked up.
+	 * @param String query from user input.
+	 * @return int number of matching restaurants
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public int countMatchingQuery(String query) throws IllegalArgumentException {
+		long start = System.nanoTime();
+		RestaurantQuery parsed = RestaurantQuery.parse(query);
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int count = parsed.findIds(this).getCardinality();
+		RestaurantDataMetrics.getInstance().recordQuery("count", start, count);
+		return count;
+	}
+	
+	/**
+	 * Returns the ids of the restaurants matching a compound query as a bitmap, which can be combined with other bitmaps of this list with and(), or() and andNot().
+	 * Ids are positions in the sorted order of this list, so bitmaps are only valid until the list changes.
+	 * @param String query from user input.
+	 * @return RoaringBitmap ids of the matching restaurants
+	 * @throws IllegalArgumentException if the query is empty or invalid
+	 */
+	public RoaringBitmap getQueryBitmap(String query) throws IllegalArgumentException {
+		long start = System.nanoTime();
+		RestaurantQuery parsed = RestaurantQuery.parse(query);
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		RoaringBitmap ids = parsed.findIds(this);
+		RestaurantDataMetrics.getInstance().recordQuery("query", start, ids.getCardinality());
+		return ids;
+	}
+	
+	/**
+	 * Returns the ids of the restaurants whose names contain the keyword as a substring (case insensitive) as a bitmap.
+	 * @param String keyword (restaurant name); should not be null
+	 * @return RoaringBitmap ids of the matching restaurants, only valid until this list changes
+	 */
+	public RoaringBitmap getNameBitmap(String keyword) {
+		return getNameIndex().findBitmap(keyword);
+	}
+	
+	/**
+	 * Returns the ids of the restaurants whose zip codes contain the keyword as a substring as a bitmap.
+	 * @param String keyword (restaurant zip code); should not be null
+	 * @return RoaringBitmap ids of the matching restaurants, only valid until this list changes
+	 */
+	public RoaringBitmap getZipBitmap(String keyword) {
+		return getZipIndex().findBitmap(keyword);
+	}
+	
+	/**
+	 * Returns the ids of the restaurants with at least one inspection whose risk category starts with the given text (case insensitive) as a bitmap.
+	 * @param String risk beginning of the risk category, for example "high"; "none" selects inspections without a risk category
+	 * @return RoaringBitmap ids of the matching restaurants, only valid until this list changes
+	 */
+	public RoaringBitmap getRiskBitmap(String risk) {
+		InspectionStore store = getInspectionStore();
+		StringDictionary dictionary = store.getRiskDictionary();
+		String prefix = risk.toLowerCase(Locale.ROOT);
+		RoaringBitmap ids = new RoaringBitmap();
+		for (int code = -1; code < dictionary.size(); code++) {
+			String category = code < 0 ? "none" : dictionary.decode(code).toLowerCase(Locale.ROOT);
+			if (category.startsWith(prefix)) {
+				ids = ids.or(store.getRestaurantsWithRisk(code));
 			}
 		}
-		if (listFromKeyword.isEmpty()) {
-			return null;
+		return ids;
+	}
+	
+	/**
+	 * Returns the ids of all restaurants of this list as a bitmap, for example to select the restaurants that do not match a condition with andNot().
+	 * @return RoaringBitmap ids from 0 to the size of this list, only valid until this list changes
+	 */
+	public RoaringBitmap getAllBitmap() {
+		return RoaringBitmap.range(0, getSortedRestaurants().length);
+	}
+	
+	/**
+	 * Creates a RestaurantList from one page of the restaurants with the ids in a bitmap. Only the restaurants of the page are looked up.
+	 * @param RoaringBitmap ids bitmap returned by a method of this list since it last changed
+	 * @param int offset number of restaurants to skip, in sorted order
+	 * @param int limit largest number of restaurants to return
+	 * @return RestaurantList list of the restaurants of the page in sorted order, or null if the page is empty
+	 */
+	public RestaurantList getRestaurants(RoaringBitmap ids, int offset, int limit) {
+		return fromIds(getSortedRestaurants(), ids.toArray(offset, limit));
+	}
+	
+	/**
+	 * Creates a RestaurantList from one page of ids that are not in sorted order, such as those returned by findFuzzyIds(). Only the restaurants of the page are looked up.
+	 * @param int[] ids positions in getSortedRestaurants() since this list last changed
+	 * @param int offset number of ids to skip
+	 * @param int limit largest number of restaurants to return
+	 * @return RestaurantList list of the restaurants of the page in the order of the ids, or null if the page is empty
+	 */
+	RestaurantList getRestaurants(int[] ids, int offset, int limit) {
+		int from = Math.min(Math.max(0, offset), ids.length);
+		int to = (int) Math.min((long) from + Math.max(0, limit), ids.length);
+		return fromIds(getSortedRestaurants(), Arrays.copyOfRange(ids, from, to));
+	}
+	
+	/**
+	 * Finds the restaurants whose zip codes start with the given digits, for example "941" for the zip codes 94100 to 94199.
+	 * @param String prefix made of 1 to 5 digits.
+	 * @return RestaurantList list of Restaurant objects whose zip codes start with the prefix, sorted according to the natural order of its elements.
+	 * null if there are no matches.
+	 * @throws IllegalArgumentException if the prefix is not made of 1 to 5 digits
+	 */
+	public RestaurantList getMatchingZipPrefix(String prefix) throws IllegalArgumentException {
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
 		}
-		listFromKeyword.sort();
-		return listFromKeyword;
-		
+		int[] ids = zipIndex.findPrefix(prefix);
+		RestaurantDataMetrics.getInstance().recordQuery("zip prefix", start, ids.length);
+		return fromIds(ids);
+	}
+	
+	/**
+	 * Finds the restaurants whose numeric zip codes are in the given range.
+	 * @param int from lowest zip code of the range (inclusive)
+	 * @param int to highest zip code of the range (inclusive)
+	 * @return RestaurantList list of Restaurant objects whose zip codes are in the range, sorted according to the natural order of its elements.
+	 * null if there are no matches.
+	 */
+	public RestaurantList getMatchingZipRange(int from, int to) {
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int[] ids = zipIndex.findRange(from, to);
+		RestaurantDataMetrics.getInstance().recordQuery("zip range", start, ids.length);
+		return fromIds(ids);
+	}
+	
+	/**
+	 * Finds the restaurants within the given distance of a location, for example all restaurants within 500 meters of an inspector.
+	 * The search uses a grid of the locations, so only the restaurants near the location are examined. Restaurants without a location are never found.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param double meters largest distance from the location
+	 * @return RestaurantList list of the matching restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid or the distance is negative
+	 */
+	public RestaurantList getRestaurantsWithin(double latitude, double longitude, double meters) throws IllegalArgumentException {
+		return getRestaurantsWithin(latitude, longitude, meters, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Finds the restaurants within the given distance of a location whose latest inspection score is in the given range, for example the restaurants near an inspector that scored below 70.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param double meters largest distance from the location
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return RestaurantList list of the matching restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid or the distance is negative
+	 */
+	public RestaurantList getRestaurantsWithin(double latitude, double longitude, double meters, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int[] ids = geoIndex.findWithin(latitude, longitude, meters, minLatestScore, maxLatestScore);
+		RestaurantDataMetrics.getInstance().recordQuery("within", start, ids.length);
+		return fromIds(ids);
+	}
+	
+	/**
+	 * Finds the k restaurants nearest to a location.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param int k largest number of restaurants to return
+	 * @return RestaurantList list of the nearest restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid
+	 */
+	public RestaurantList getNearestRestaurants(double latitude, double longitude, int k) throws IllegalArgumentException {
+		return getNearestRestaurants(latitude, longitude, k, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Finds the k restaurants nearest to a location whose latest inspection score is in the given range.
+	 * @param double latitude of the location in degrees
+	 * @param double longitude of the location in degrees
+	 * @param int k largest number of restaurants to return
+	 * @param int minLatestScore lowest accepted score of the latest inspection; Integer.MIN_VALUE for no lower limit
+	 * @param int maxLatestScore highest accepted score of the latest inspection; Integer.MAX_VALUE for no upper limit
+	 * @return RestaurantList list of the nearest matching restaurants, nearest first, or null if there are no matches.
+	 * @throws IllegalArgumentException if the location is invalid
+	 */
+	public RestaurantList getNearestRestaurants(double latitude, double longitude, int k, int minLatestScore, int maxLatestScore) throws IllegalArgumentException {
+		long start = System.nanoTime();
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		int[] ids = geoIndex.findNearest(latitude, longitude, k, minLatestScore, maxLatestScore);
+		RestaurantDataMetrics.getInstance().recordQuery("nearest", start, ids.length);
+		return fromIds(ids);
+	}
+	
+	/**
+	 * Returns the centroid of the locations of the restaurants in this list with the given zip code, which can be used as the location of a search.
+	 * @param String zip code
+	 * @return double[] latitude and longitude of the centroid, or null if no restaurant with this zip code has a location
+	 */
+	public double[] getZipCentroid(String zip) {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		return geoIndex.getZipCentroid(zip);
+	}
+	
+	/**
+	 * Returns the number of restaurants in this list with the given zip code, without searching the list.
+	 * @param String zip code to count
+	 * @return int number of restaurants with this zip code; 0 if the zip code is not made of exactly 5 digits
+	 */
+	public int getZipCount(String zip) {
+		if (sortedRestaurants == null) {
+			buildIndex();
+		}
+		return zipIndex.getCount(ZipIndex.parseZip(zip));
 	}
 	
 	
@@ -80,18 +712,15 @@ public class RestaurantList extends LinkedList<Restaurant> {
 	 * @return String containing a list of names of Restaurant objects stored in this list.
 	 */
 	public String toString() {
-		//instantiate a new list that will be returned
-		String restaurantListRepresentation = "";
-		if (this.size()==0) {
-			return "";
-		}
+		//instantiate a new builder for the String that will be returned
+		StringBuilder restaurantListRepresentation = new StringBuilder();
 		//add in each restaurant in this RestaurantList object
-		for (int i=0; i<this.size()-1;i++) {
-			restaurantListRepresentation+=this.get(i).getName()+"; ";
+		for (int i=0; i<this.size();i++) {
+			if (i>0) {
+				restaurantListRepresentation.append("; ");
+			}
+			restaurantListRepresentation.append(this.get(i).getName());
 		}
-		restaurantListRepresentation+=this.get(this.size()-1).getName();
-		return restaurantListRepresentation;
+		return restaurantListRepresentation.toString();
 	}
 }
-
-
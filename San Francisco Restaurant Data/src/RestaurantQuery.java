@@ -0,0 +1,925 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * The RestaurantQuery class is a compound query over the restaurants of a RestaurantList, for example "pizza zip:941* score<70 since:2018".
+ * A query is a list of conditions separated by spaces, all of which have to hold; values with spaces are written in double quotes.
+ * Alternatives of a value are separated by |, for example "zip:94103|94110", and a condition preceded by - has to be false, for example "-name:starbucks".
+ * <ul>
+ * <li>WORD or name:TEXT - the name contains the text (case insensitive)</li>
+ * <li>zip:94103 - the zip code is 94103; zip:941* - the zip code starts with 941; zip:94100-94199 - the zip code is in the range; zip:TEXT - the zip code contains the text</li>
+ * <li>score&lt;70, score&lt;=70, score&gt;90, score&gt;=90, score=100 or score:100 - the score of an inspection</li>
+ * <li>date&lt;D, date&lt;=D, date&gt;D, date&gt;=D, date=D or date:D, since:D and until:D - the date of an inspection, where D is MM/DD/YYYY or a year</li>
+ * <li>risk:TEXT - the risk category of an inspection starts with the text (case insensitive), for example risk:high; risk:none matches inspections without one</li>
+ * </ul>
+ * The score, date and risk conditions have to hold for the same inspection: "score&lt;70 since:2018" finds the restaurants with a score below 70 in 2018 or later.
+ * A negated inspection condition holds for the restaurants without such an inspection: "-risk:high" finds the restaurants that never had a high risk violation.
+ * The planner estimates how many restaurants or inspections every condition selects, using the sizes of the bitmaps in the name and zip code indexes and the date index of the InspectionStore,
+ * and evaluates the most selective condition first with its index; negated conditions come last. Each following condition is either checked directly on the few remaining candidates,
+ * or evaluated with its own index and combined with them, whichever touches fewer entries. Candidates are kept in a RoaringBitmap, so combining them is a word parallel operation
+ * and counting the matches does not create any Restaurant objects; they are only looked up for the final ids.
+ * A parsed query can be executed any number of times, on any list, by several threads at the same time.
+ * @author Claire Zhu
+ */
+
+public class RestaurantQuery {
+
+	private String text;
+	private ArrayList<Condition> conditions;
+
+	/**
+	 * Constructs a new RestaurantQuery object from its parsed conditions.
+	 * @param String text query as it was written
+	 * @param ArrayList<Condition> conditions conditions of the query
+	 */
+	private RestaurantQuery(String text, ArrayList<Condition> conditions) {
+		this.text = text;
+		this.conditions = conditions;
+	}
+
+	/**
+	 * Parses a query.
+	 * @param String text query such as "pizza zip:941* score&lt;70 since:2018"
+	 * @return RestaurantQuery parsed query
+	 * @throws IllegalArgumentException if the query is empty, or has an unknown field, an invalid value or an unmatched double quote
+	 */
+	public static RestaurantQuery parse(String text) throws IllegalArgumentException {
+		if (text == null) {
+			throw new IllegalArgumentException("The query is empty.");
+		}
+		ArrayList<Condition> conditions = new ArrayList<Condition>();
+		InspectionCondition inspections = new InspectionCondition();
+		for (String term : splitTerms(text)) {
+			if (term.length() > 1 && term.charAt(0) == '-') {
+				//a negated inspection condition is separate from the other inspection conditions, since it must not hold for any inspection
+				InspectionCondition negated = new InspectionCondition();
+				Condition condition = parseTerm(term.substring(1), negated);
+				conditions.add(new NotCondition(condition == null ? negated : condition));
+			}
+			else {
+				Condition condition = parseTerm(term, inspections);
+				if (condition != null) {
+					conditions.add(condition);
+				}
+			}
+		}
+		if (inspections.isRestricted()) {
+			conditions.add(inspections);
+		}
+		if (conditions.isEmpty()) {
+			throw new IllegalArgumentException("The query is empty.");
+		}
+		return new RestaurantQuery(text.trim(), conditions);
+	}
+
+	/**
+	 * Parses a single term of a query.
+	 * @param String term condition without a leading -
+	 * @param InspectionCondition inspections condition that receives the score, date and risk restrictions of the term
+	 * @return Condition name or zip code condition of the term, or null if the term restricted the inspections
+	 * @throws IllegalArgumentException if the term has an unknown field or an invalid value
+	 */
+	private static Condition parseTerm(String term, InspectionCondition inspections) throws IllegalArgumentException {
+		String lower = term.toLowerCase(Locale.ROOT);
+		if (lower.startsWith("score") && lower.length() > 5 && "<>=".indexOf(lower.charAt(5)) >= 0) {
+			int[] range = parseComparison(term.substring(5), "score");
+			inspections.restrictScores(range[0], range[1]);
+		}
+		else if (lower.startsWith("date") && lower.length() > 4 && "<>=".indexOf(lower.charAt(4)) >= 0) {
+			int[] range = parseComparison(term.substring(4), "date");
+			inspections.restrictDates(range[0], range[1]);
+		}
+		else if (lower.startsWith("score:") || lower.startsWith("date:")) {
+			int colon = term.indexOf(':');
+			int[] range = parseComparison("=" + term.substring(colon + 1), lower.substring(0, colon));
+			if (colon == 5) {
+				inspections.restrictScores(range[0], range[1]);
+			}
+			else {
+				inspections.restrictDates(range[0], range[1]);
+			}
+		}
+		else if (lower.startsWith("name:")) {
+			return parseNames(requireValue(term, 5));
+		}
+		else if (lower.startsWith("zip:")) {
+			ArrayList<Condition> alternatives = new ArrayList<Condition>();
+			for (String value : splitAlternatives(requireValue(term, 4), "zip")) {
+				alternatives.add(ZipCondition.parse(value));
+			}
+			return AnyCondition.of(alternatives);
+		}
+		else if (lower.startsWith("since:")) {
+			inspections.restrictDates(parseDate(requireValue(term, 6), false), Integer.MAX_VALUE);
+		}
+		else if (lower.startsWith("until:")) {
+			inspections.restrictDates(Integer.MIN_VALUE, parseDate(requireValue(term, 6), true));
+		}
+		else if (lower.startsWith("risk:")) {
+			inspections.restrictRisk(splitAlternatives(requireValue(term, 5), "risk"));
+		}
+		else if (term.indexOf(':') > 0 && term.charAt(0) != '"') {
+			throw new IllegalArgumentException("Unknown field " + term.substring(0, term.indexOf(':')) + ".");
+		}
+		else {
+			return parseNames(unquote(term));
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the condition of the alternatives of a name.
+	 * @param String value one or more keywords separated by |
+	 * @return Condition name condition, or a condition accepting any of the keywords
+	 * @throws IllegalArgumentException if one of the keywords is empty
+	 */
+	private static Condition parseNames(String value) throws IllegalArgumentException {
+		ArrayList<Condition> alternatives = new ArrayList<Condition>();
+		for (String keyword : splitAlternatives(value, "name")) {
+			alternatives.add(new NameCondition(keyword));
+		}
+		return AnyCondition.of(alternatives);
+	}
+
+	/**
+	 * Splits a value into its alternatives at every |.
+	 * @param String value of a condition
+	 * @param String field name of the field, for the error message
+	 * @return String[] alternatives of the value
+	 * @throws IllegalArgumentException if one of the alternatives is empty
+	 */
+	private static String[] splitAlternatives(String value, String field) throws IllegalArgumentException {
+		String[] alternatives = value.split("\\|", -1);
+		for (String alternative : alternatives) {
+			if (alternative.isEmpty()) {
+				throw new IllegalArgumentException("The field " + field + " has an empty alternative.");
+			}
+		}
+		return alternatives;
+	}
+
+	/**
+	 * Splits a query into its terms at spaces that are not inside double quotes.
+	 * @param String text query
+	 * @return ArrayList<String> terms, with their double quotes
+	 * @throws IllegalArgumentException if a double quote is not closed
+	 */
+	private static ArrayList<String> splitTerms(String text) throws IllegalArgumentException {
+		ArrayList<String> terms = new ArrayList<String>();
+		StringBuilder term = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			}
+			if (Character.isWhitespace(c) && !quoted) {
+				if (term.length() > 0) {
+					terms.add(term.toString());
+					term.setLength(0);
+				}
+			}
+			else {
+				term.append(c);
+			}
+		}
+		if (quoted) {
+			throw new IllegalArgumentException("The query has an unmatched double quote.");
+		}
+		if (term.length() > 0) {
+			terms.add(term.toString());
+		}
+		return terms;
+	}
+
+	/**
+	 * Returns the value of a field:value term without its double quotes.
+	 * @param String term field and value
+	 * @param int start position of the value
+	 * @return String value of the term
+	 * @throws IllegalArgumentException if the value is empty
+	 */
+	private static String requireValue(String term, int start) throws IllegalArgumentException {
+		String value = unquote(term.substring(start));
+		if (value.isEmpty()) {
+			throw new IllegalArgumentException("The field " + term.substring(0, start - 1) + " needs a value.");
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the double quotes from a value.
+	 * @param String value that may contain double quotes
+	 * @return String value without double quotes
+	 */
+	private static String unquote(String value) {
+		return value.replace("\"", "");
+	}
+
+	/**
+	 * Parses the operator and value of a score or date comparison into an inclusive range.
+	 * @param String comparison operator followed by the value, for example "<=70"
+	 * @param String field "score" or "date"
+	 * @return int[] lowest and highest accepted value; dates are in the form yyyymmdd
+	 * @throws IllegalArgumentException if the operator or the value is invalid
+	 */
+	private static int[] parseComparison(String comparison, String field) throws IllegalArgumentException {
+		int length = comparison.length() > 1 && comparison.charAt(1) == '=' ? 2 : 1;
+		String operator = comparison.substring(0, length);
+		String value = unquote(comparison.substring(length));
+		if (value.isEmpty()) {
+			throw new IllegalArgumentException("The field " + field + " needs a value.");
+		}
+		int low;
+		int high;
+		if (field.equals("score")) {
+			try {
+				low = Integer.parseInt(value);
+				high = low;
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid score " + value + ".");
+			}
+		}
+		else {
+			low = parseDate(value, false);
+			high = parseDate(value, true);
+		}
+		switch (operator) {
+			case "<":
+				return new int[] {Integer.MIN_VALUE, low - 1};
+			case "<=":
+				return new int[] {Integer.MIN_VALUE, high};
+			case ">":
+				return new int[] {high + 1, Integer.MAX_VALUE};
+			case ">=":
+				return new int[] {low, Integer.MAX_VALUE};
+			case "=":
+				return new int[] {low, high};
+			default:
+				throw new IllegalArgumentException("Invalid operator " + operator + " for " + field + ".");
+		}
+	}
+
+	/**
+	 * Parses a date of a query, which is either a day in the format MM/DD/YYYY or a year.
+	 * @param String value date or year
+	 * @param boolean end true to return the last day of a year, and false to return its first day
+	 * @return int date in the form yyyymmdd
+	 * @throws IllegalArgumentException if the value is not a valid date or year
+	 */
+	private static int parseDate(String value, boolean end) throws IllegalArgumentException {
+		if (value.length() == 4 && value.chars().allMatch(Character::isDigit)) {
+			return new Date(end ? 12 : 1, end ? 31 : 1, Integer.parseInt(value)).getValue();
+		}
+		return new Date(value).getValue();
+	}
+
+	/**
+	 * Returns the restaurants of the list that match this query.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @return RestaurantList list of the matching restaurants in sorted order, or null if there are no matches
+	 */
+	public RestaurantList execute(RestaurantList restaurantList) {
+		return execute(restaurantList, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns one page of the restaurants of the list that match this query. The matches are found as a bitmap of ids, and only the restaurants of the page are looked up.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param int offset number of matches to skip, in sorted order
+	 * @param int limit largest number of matches to return
+	 * @return RestaurantList list of the matching restaurants of the page in sorted order, or null if the page is empty
+	 */
+	public RestaurantList execute(RestaurantList restaurantList, int offset, int limit) {
+		Context context = new Context(restaurantList);
+		return RestaurantList.fromIds(context.restaurants, run(context, null).toArray(offset, limit));
+	}
+
+	/**
+	 * Returns the number of restaurants of the list that match this query. The conditions are combined as bitmaps, so no Restaurant objects are looked up.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @return int number of matching restaurants
+	 */
+	public int count(RestaurantList restaurantList) {
+		return run(new Context(restaurantList), null).getCardinality();
+	}
+
+	/**
+	 * Returns the plan chosen for this query on the given list: the conditions in the order they are evaluated, with their estimates and how each one was applied.
+	 * The query is executed to show the number of candidates left after every step.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @return String description of the plan, one step per line
+	 */
+	public String explain(RestaurantList restaurantList) {
+		StringBuilder plan = new StringBuilder();
+		run(new Context(restaurantList), plan);
+		return plan.toString();
+	}
+
+	/**
+	 * Evaluates the conditions, most selective first and negated conditions last.
+	 * @param Context context indexes of the list being searched
+	 * @param StringBuilder plan receives a description of every step; may be null
+	 * @return RoaringBitmap ids of the matching restaurants
+	 */
+	private RoaringBitmap run(Context context, StringBuilder plan) {
+		int count = conditions.size();
+		int[] estimates = new int[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			estimates[i] = conditions.get(i).estimate(context);
+			order[i] = i;
+		}
+		//a negated condition selects most restaurants, so it is only used to remove candidates
+		Comparator<Integer> negatedLast = Comparator.comparing(i -> conditions.get(i) instanceof NotCondition);
+		Arrays.sort(order, negatedLast.thenComparingInt(i -> estimates[i]));
+
+		RoaringBitmap candidates = null;
+		for (int i : order) {
+			Condition condition = conditions.get(i);
+			String method;
+			if (candidates == null) {
+				candidates = condition.find(context);
+				method = "index";
+			}
+			else if (condition.checkCost(context, candidates) <= condition.findCost(context, estimates[i])) {
+				RoaringBitmap remaining = new RoaringBitmap();
+				candidates.forEach(id -> {
+					if (condition.accepts(context, id)) {
+						remaining.add(id);
+					}
+				});
+				candidates = remaining;
+				method = "check candidates";
+			}
+			else {
+				candidates = condition.combine(context, candidates);
+				method = "index and combine";
+			}
+			if (plan != null) {
+				plan.append(condition).append(": estimate ").append(estimates[i]).append(", ").append(method)
+						.append(", ").append(candidates.getCardinality()).append(" left").append(System.lineSeparator());
+			}
+			if (candidates.isEmpty()) {
+				break;
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the ids of the restaurants of the list that match this query, for callers that keep ids instead of restaurants.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @return RoaringBitmap positions of the matches in getSortedRestaurants()
+	 */
+	RoaringBitmap findIds(RestaurantList restaurantList) {
+		return run(new Context(restaurantList), null);
+	}
+
+	/**
+	 * Returns the query as it was written.
+	 * @return String text of the query
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	/**
+	 * Context class holds the sorted restaurants and the indexes of the list a query is executed on. The InspectionStore is only compacted when a condition is evaluated, never to estimate one.
+	 * @author Claire Zhu
+	 */
+	private static class Context {
+
+		private final RestaurantList restaurantList;
+		private final Restaurant[] restaurants;
+		private InspectionStore store;
+		//risk codes accepted by every inspection condition, resolved once per execution
+		private HashMap<InspectionCondition, boolean[]> acceptedRisks = new HashMap<InspectionCondition, boolean[]>();
+
+		Context(RestaurantList restaurantList) {
+			this.restaurantList = restaurantList;
+			this.restaurants = restaurantList.getSortedRestaurants();
+		}
+
+		/**
+		 * Returns the InspectionStore of the list, compacting the inspections the first time it is needed.
+		 * @return InspectionStore store whose restaurant ids are the positions in restaurants
+		 */
+		InspectionStore getStore() {
+			if (store == null) {
+				store = restaurantList.getInspectionStore();
+			}
+			return store;
+		}
+
+		/**
+		 * Returns the InspectionStore of the list if its inspections are already compacted, without compacting them.
+		 * @return InspectionStore store whose restaurant ids are the positions in restaurants, or null if the inspections would have to be compacted first
+		 */
+		InspectionStore getCompactedStore() {
+			if (store == null) {
+				store = restaurantList.getCompactedInspectionStore();
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Condition interface is one condition of a query, which can be evaluated with an index or checked on single restaurants.
+	 * @author Claire Zhu
+	 */
+	private interface Condition {
+
+		/**
+		 * Returns an upper limit of the number of entries the index of this condition selects, without evaluating it.
+		 * @param Context context indexes of the list being searched
+		 * @return int estimated number of selected restaurants or inspections
+		 */
+		int estimate(Context context);
+
+		/**
+		 * Evaluates this condition with its index.
+		 * @param Context context indexes of the list being searched
+		 * @return RoaringBitmap ids of the restaurants that match this condition
+		 */
+		RoaringBitmap find(Context context);
+
+		/**
+		 * Returns the number of entries that evaluating this condition with its index looks at, which is the estimate unless the index holds the result already.
+		 * @param Context context indexes of the list being searched
+		 * @param int estimate result of estimate()
+		 * @return int cost of find()
+		 */
+		default int findCost(Context context, int estimate) {
+			return estimate;
+		}
+
+		/**
+		 * Evaluates this condition with its index and keeps the candidates that match it.
+		 * @param Context context indexes of the list being searched
+		 * @param RoaringBitmap candidates ids of the remaining restaurants
+		 * @return RoaringBitmap ids of the candidates that match this condition
+		 */
+		default RoaringBitmap combine(Context context, RoaringBitmap candidates) {
+			return candidates.and(find(context));
+		}
+
+		/**
+		 * Returns the number of entries that checking the given candidates one by one would look at.
+		 * @param Context context indexes of the list being searched
+		 * @param RoaringBitmap candidates ids of the remaining restaurants
+		 * @return int cost of checking the candidates
+		 */
+		int checkCost(Context context, RoaringBitmap candidates);
+
+		/**
+		 * Returns true if the restaurant with the given id matches this condition.
+		 * @param Context context indexes of the list being searched
+		 * @param int id of the restaurant
+		 * @return boolean true if the restaurant matches
+		 */
+		boolean accepts(Context context, int id);
+	}
+
+	/**
+	 * NameCondition class selects the restaurants whose names contain a keyword, using the trigram NameIndex.
+	 * @author Claire Zhu
+	 */
+	private static class NameCondition implements Condition {
+
+		private final String keyword;
+
+		NameCondition(String keyword) {
+			this.keyword = Restaurant.foldCase(keyword);
+		}
+
+		@Override
+		public int estimate(Context context) {
+			return context.restaurantList.getNameIndex().estimate(keyword);
+		}
+
+		@Override
+		public RoaringBitmap find(Context context) {
+			return context.restaurantList.getNameIndex().findBitmap(keyword);
+		}
+
+		@Override
+		public int checkCost(Context context, RoaringBitmap candidates) {
+			return candidates.getCardinality();
+		}
+
+		@Override
+		public boolean accepts(Context context, int id) {
+			return context.restaurantList.getNameIndex().contains(id, keyword);
+		}
+
+		@Override
+		public String toString() {
+			return "name:\"" + keyword + "\"";
+		}
+	}
+
+	/**
+	 * ZipCondition class selects the restaurants by zip code, using the ZipIndex: a range of zip codes (which includes single zip codes and prefixes), or a substring.
+	 * @author Claire Zhu
+	 */
+	private static class ZipCondition implements Condition {
+
+		private final String value;
+		//range of numeric zip codes, or null for a substring
+		private final int[] range;
+
+		private ZipCondition(String value, int[] range) {
+			this.value = value;
+			this.range = range;
+		}
+
+		/**
+		 * Parses the value of a zip: condition.
+		 * @param String value 5 digits, a prefix followed by *, two zip codes separated by -, or any text
+		 * @return ZipCondition condition for the value
+		 * @throws IllegalArgumentException if a prefix or range is not made of digits
+		 */
+		static ZipCondition parse(String value) throws IllegalArgumentException {
+			if (value.endsWith("*")) {
+				String prefix = value.substring(0, value.length() - 1);
+				if (prefix.isEmpty() || prefix.length() > 5 || !prefix.chars().allMatch(Character::isDigit)) {
+					throw new IllegalArgumentException("Invalid zip code prefix " + value + ".");
+				}
+				int scale = 1;
+				for (int i = prefix.length(); i < 5; i++) {
+					scale *= 10;
+				}
+				int from = Integer.parseInt(prefix) * scale;
+				return new ZipCondition(value, new int[] {from, from + scale - 1});
+			}
+			int dash = value.indexOf('-');
+			if (dash > 0) {
+				int from = ZipIndex.parseZip(value.substring(0, dash));
+				int to = ZipIndex.parseZip(value.substring(dash + 1));
+				if (from < 0 || to < 0) {
+					throw new IllegalArgumentException("Invalid zip code range " + value + ".");
+				}
+				return new ZipCondition(value, new int[] {from, to});
+			}
+			int zip = ZipIndex.parseZip(value);
+			return new ZipCondition(value, zip < 0 ? null : new int[] {zip, zip});
+		}
+
+		@Override
+		public int estimate(Context context) {
+			ZipIndex index = context.restaurantList.getZipIndex();
+			//a substring is only compared to the distinct zip codes, so finding its matches is as cheap as estimating them
+			return range != null ? index.countRange(range[0], range[1]) : index.findBitmap(value).getCardinality();
+		}
+
+		@Override
+		public RoaringBitmap find(Context context) {
+			ZipIndex index = context.restaurantList.getZipIndex();
+			return range != null ? index.findRangeBitmap(range[0], range[1]) : index.findBitmap(value);
+		}
+
+		@Override
+		public int checkCost(Context context, RoaringBitmap candidates) {
+			return candidates.getCardinality();
+		}
+
+		@Override
+		public boolean accepts(Context context, int id) {
+			String zip = context.restaurants[id].getZip();
+			if (range == null) {
+				return zip.contains(value);
+			}
+			int code = ZipIndex.parseZip(zip);
+			return code >= range[0] && code <= range[1];
+		}
+
+		@Override
+		public String toString() {
+			return "zip:" + value;
+		}
+	}
+
+	/**
+	 * AnyCondition class selects the restaurants that match at least one of several conditions, for the alternatives of a value such as "zip:94103|94110".
+	 * @author Claire Zhu
+	 */
+	private static class AnyCondition implements Condition {
+
+		private final ArrayList<Condition> alternatives;
+
+		private AnyCondition(ArrayList<Condition> alternatives) {
+			this.alternatives = alternatives;
+		}
+
+		/**
+		 * Returns a condition accepting any of the given conditions.
+		 * @param ArrayList<Condition> alternatives conditions to be combined; should not be empty
+		 * @return Condition the only alternative, or an AnyCondition of all of them
+		 */
+		static Condition of(ArrayList<Condition> alternatives) {
+			return alternatives.size() == 1 ? alternatives.get(0) : new AnyCondition(alternatives);
+		}
+
+		@Override
+		public int estimate(Context context) {
+			long estimate = 0;
+			for (Condition alternative : alternatives) {
+				estimate += alternative.estimate(context);
+			}
+			return (int) Math.min(estimate, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public RoaringBitmap find(Context context) {
+			RoaringBitmap matches = new RoaringBitmap();
+			for (Condition alternative : alternatives) {
+				matches = matches.or(alternative.find(context));
+			}
+			return matches;
+		}
+
+		@Override
+		public int checkCost(Context context, RoaringBitmap candidates) {
+			long cost = 0;
+			for (Condition alternative : alternatives) {
+				cost += alternative.checkCost(context, candidates);
+			}
+			return (int) Math.min(cost, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public boolean accepts(Context context, int id) {
+			for (Condition alternative : alternatives) {
+				if (alternative.accepts(context, id)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			for (Condition alternative : alternatives) {
+				text.append(text.length() == 0 ? "(" : " or ").append(alternative);
+			}
+			return text.append(")").toString();
+		}
+	}
+
+	/**
+	 * NotCondition class selects the restaurants that do not match a condition. Its estimate is the cost of evaluating the negated condition,
+	 * and its index result is removed from the candidates instead of being intersected with them.
+	 * @author Claire Zhu
+	 */
+	private static class NotCondition implements Condition {
+
+		private final Condition negated;
+
+		NotCondition(Condition negated) {
+			this.negated = negated;
+		}
+
+		@Override
+		public int estimate(Context context) {
+			return negated.estimate(context);
+		}
+
+		@Override
+		public RoaringBitmap find(Context context) {
+			return RoaringBitmap.range(0, context.restaurants.length).andNot(negated.find(context));
+		}
+
+		@Override
+		public int findCost(Context context, int estimate) {
+			return negated.findCost(context, estimate);
+		}
+
+		@Override
+		public RoaringBitmap combine(Context context, RoaringBitmap candidates) {
+			return candidates.andNot(negated.find(context));
+		}
+
+		@Override
+		public int checkCost(Context context, RoaringBitmap candidates) {
+			return negated.checkCost(context, candidates);
+		}
+
+		@Override
+		public boolean accepts(Context context, int id) {
+			return !negated.accepts(context, id);
+		}
+
+		@Override
+		public String toString() {
+			return "not " + negated;
+		}
+	}
+
+	/**
+	 * InspectionCondition class selects the restaurants that have at least one inspection matching all of the score, date and risk conditions of the query.
+	 * The inspections are read from the columns of the InspectionStore; the date index limits the scan to the inspections in the date range.
+	 * A condition on the risk category alone is answered with the bitmaps of the restaurants of every risk category, without reading any inspections.
+	 * The estimates are taken from the InspectionStore only if the inspections are already compacted; otherwise the condition is estimated to select everything and is evaluated last.
+	 * @author Claire Zhu
+	 */
+	private static class InspectionCondition implements Condition {
+
+		private int minScore = Integer.MIN_VALUE;
+		private int maxScore = Integer.MAX_VALUE;
+		private int fromDate = Integer.MIN_VALUE;
+		private int toDate = Integer.MAX_VALUE;
+		//lower case prefixes of the accepted risk categories, one array of alternatives per risk: condition; "none" accepts inspections without one
+		private ArrayList<String[]> risks = new ArrayList<String[]>();
+
+		void restrictScores(int min, int max) {
+			minScore = Math.max(minScore, min);
+			maxScore = Math.min(maxScore, max);
+		}
+
+		void restrictDates(int from, int to) {
+			fromDate = Math.max(fromDate, from);
+			toDate = Math.min(toDate, to);
+		}
+
+		void restrictRisk(String[] alternatives) {
+			String[] prefixes = new String[alternatives.length];
+			for (int i = 0; i < alternatives.length; i++) {
+				prefixes[i] = alternatives[i].toLowerCase(Locale.ROOT);
+			}
+			risks.add(prefixes);
+		}
+
+		boolean isRestricted() {
+			return restrictsRows() || !risks.isEmpty();
+		}
+
+		/**
+		 * Returns true if this condition restricts the score or the date, so the inspections have to be read.
+		 * @return boolean true if there is a score or date condition
+		 */
+		private boolean restrictsRows() {
+			return minScore != Integer.MIN_VALUE || maxScore != Integer.MAX_VALUE || fromDate != Integer.MIN_VALUE || toDate != Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Returns which risk codes of the store are accepted, with the code -1 (no risk category) at position 0.
+		 * @param Context context context of the execution, which keeps the result
+		 * @return boolean[] accepted codes shifted by one
+		 */
+		private boolean[] acceptedRisks(Context context) {
+			boolean[] accepted = context.acceptedRisks.get(this);
+			if (accepted != null) {
+				return accepted;
+			}
+			StringDictionary dictionary = context.getStore().getRiskDictionary();
+			accepted = new boolean[dictionary.size() + 1];
+			for (int code = -1; code < dictionary.size(); code++) {
+				String risk = code < 0 ? "none" : dictionary.decode(code).toLowerCase(Locale.ROOT);
+				boolean all = true;
+				for (String[] alternatives : risks) {
+					boolean any = false;
+					for (String prefix : alternatives) {
+						any |= risk.startsWith(prefix);
+					}
+					all &= any;
+				}
+				accepted[code + 1] = all;
+			}
+			context.acceptedRisks.put(this, accepted);
+			return accepted;
+		}
+
+		/**
+		 * Returns the restaurants with an inspection of an accepted risk category, as the union of the bitmaps of the accepted codes.
+		 * @param Context context indexes of the list being searched
+		 * @return RoaringBitmap ids of the restaurants
+		 */
+		private RoaringBitmap findByRisk(Context context) {
+			InspectionStore store = context.getStore();
+			boolean[] accepted = acceptedRisks(context);
+			RoaringBitmap matches = new RoaringBitmap();
+			for (int code = -1; code < accepted.length - 1; code++) {
+				if (accepted[code + 1]) {
+					matches = matches.or(store.getRestaurantsWithRisk(code));
+				}
+			}
+			return matches;
+		}
+
+		/**
+		 * Returns true if the inspection in the given row matches the conditions.
+		 * @param InspectionStore store store holding the inspection
+		 * @param int row of the inspection
+		 * @param boolean[] accepted result of acceptedRisks()
+		 * @return boolean true if the inspection matches
+		 */
+		private boolean accepts(InspectionStore store, int row, boolean[] accepted) {
+			int date = store.getDate(row);
+			int score = store.getScore(row);
+			return date >= fromDate && date <= toDate && score >= minScore && score <= maxScore && accepted[store.getRiskCode(row) + 1];
+		}
+
+		@Override
+		public int estimate(Context context) {
+			InspectionStore store = context.getCompactedStore();
+			if (store == null) {
+				return Integer.MAX_VALUE;
+			}
+			if (!restrictsRows()) {
+				//the sizes of the bitmaps of the accepted risk categories add up to at least the size of their union, which find() computes
+				boolean[] accepted = acceptedRisks(context);
+				long estimate = 0;
+				for (int code = -1; code < accepted.length - 1; code++) {
+					if (accepted[code + 1]) {
+						estimate += store.getRestaurantsWithRisk(code).getCardinality();
+					}
+				}
+				return (int) Math.min(estimate, Integer.MAX_VALUE);
+			}
+			return store.countRowsBetween(fromDate, toDate);
+		}
+
+		@Override
+		public int findCost(Context context, int estimate) {
+			//the bitmaps of the risk categories are combined a word at a time, which is cheaper than reading any inspections
+			return restrictsRows() ? estimate : 0;
+		}
+
+		@Override
+		public RoaringBitmap find(Context context) {
+			if (!restrictsRows()) {
+				return findByRisk(context);
+			}
+			InspectionStore store = context.getStore();
+			boolean[] accepted = acceptedRisks(context);
+			RoaringBitmap ids = new RoaringBitmap();
+			//the restaurant of a row is found by a binary search, so a wide date range is cheaper to check restaurant by restaurant
+			if (store.countRowsBetween(fromDate, toDate) > store.size() / 16) {
+				for (int id = 0; id < context.restaurants.length; id++) {
+					for (int row = store.getFirstRow(id); row < store.getEndRow(id); row++) {
+						if (accepts(store, row, accepted)) {
+							ids.add(id);
+							break;
+						}
+					}
+				}
+				return ids;
+			}
+			boolean[] matched = new boolean[context.restaurants.length];
+			for (int row : store.getRowsBetween(fromDate, toDate)) {
+				int id = store.getRestaurantId(row);
+				if (!matched[id] && accepts(store, row, accepted)) {
+					matched[id] = true;
+				}
+			}
+			for (int id = 0; id < matched.length; id++) {
+				if (matched[id]) {
+					ids.add(id);
+				}
+			}
+			return ids;
+		}
+
+		@Override
+		public int checkCost(Context context, RoaringBitmap candidates) {
+			InspectionStore store = context.getStore();
+			long[] rows = new long[1];
+			candidates.forEach(id -> rows[0] += store.getEndRow(id) - store.getFirstRow(id));
+			return (int) Math.min(rows[0], Integer.MAX_VALUE);
+		}
+
+		@Override
+		public boolean accepts(Context context, int id) {
+			InspectionStore store = context.getStore();
+			boolean[] accepted = acceptedRisks(context);
+			for (int row = store.getFirstRow(id); row < store.getEndRow(id); row++) {
+				if (accepts(store, row, accepted)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder("inspections");
+			if (minScore != Integer.MIN_VALUE || maxScore != Integer.MAX_VALUE) {
+				text.append(" score ").append(Math.max(minScore, 0)).append("-").append(Math.min(maxScore, 100));
+			}
+			if (fromDate != Integer.MIN_VALUE || toDate != Integer.MAX_VALUE) {
+				text.append(" date ").append(fromDate == Integer.MIN_VALUE ? "*" : Integer.toString(fromDate)).append("-").append(toDate == Integer.MAX_VALUE ? "*" : Integer.toString(toDate));
+			}
+			for (String[] alternatives : risks) {
+				text.append(" risk ").append(String.join("|", alternatives));
+			}
+			return text.toString();
+		}
+	}
+}
@@ -0,0 +1,359 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The RestaurantQueryServer class answers the name and zip queries of the interactive program over HTTP, with JSON responses.
+ * It uses the HttpServer built into the JDK and searches a ConcurrentRestaurantList, so any number of requests are answered at the same time without locking,
+ * while new inspections can still be merged into the list.
+ * The queries are GET /name?keyword=KEYWORD, GET /zip?keyword=KEYWORD, GET /fuzzy?keyword=KEYWORD and GET /query?keyword=QUERY, where QUERY is a compound RestaurantQuery,
+ * with the optional parameters offset (default 0) and limit (default 100, at most 1000).
+ * The optional parameter format selects the JSON document (json, the default), or one of the formats of a RestaurantRenderer (jsonl, csv or text), whose total is sent in the X-Total-Count header.
+ * The response holds the total number of matches and one page of the matching restaurants in sorted order; fuzzy matches are ranked closest first. It is streamed with chunked encoding through a small buffer,
+ * so a page is never built as one String.
+ * Every request runs on a virtual thread when the Java runtime supports them, and on a pooled platform thread otherwise.
+ * GET /metrics returns the statistics of RestaurantDataMetrics as text; the latency of every answered query is recorded there as an "http name", "http zip", "http fuzzy" or "http query" query.
+ * @author Claire Zhu
+ */
+
+public class RestaurantQueryServer {
+
+	public static final int DEFAULT_LIMIT = 100;
+	public static final int MAX_LIMIT = 1000;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private ConcurrentRestaurantList restaurantList;
+	private QueryCache queryCache;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Constructs a new RestaurantQueryServer object that answers queries on the given port. The server does not accept requests until start() is called.
+	 * @param ConcurrentRestaurantList restaurantList shared list that is searched
+	 * @param int port number of the port to listen on; 0 chooses a free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public RestaurantQueryServer(ConcurrentRestaurantList restaurantList, int port) throws IOException {
+		this(restaurantList, port, new QueryCache());
+	}
+
+	/**
+	 * Constructs a new RestaurantQueryServer object that answers queries on the given port and keeps recent results in the given cache.
+	 * The server does not accept requests until start() is called.
+	 * @param ConcurrentRestaurantList restaurantList shared list that is searched
+	 * @param int port number of the port to listen on; 0 chooses a free port
+	 * @param QueryCache queryCache cache of recent query results
+	 * @throws IOException if the port cannot be opened
+	 */
+	public RestaurantQueryServer(ConcurrentRestaurantList restaurantList, int port, QueryCache queryCache) throws IOException {
+		this.restaurantList = restaurantList;
+		this.queryCache = queryCache;
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/name", new QueryHandler("name"));
+		server.createContext("/zip", new QueryHandler("zip"));
+		server.createContext("/fuzzy", new QueryHandler("fuzzy"));
+		server.createContext("/query", new QueryHandler("query"));
+		server.createContext("/metrics", new MetricsHandler());
+		RestaurantDataMetrics.getInstance().setQueryCache(queryCache);
+		executor = newRequestExecutor();
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Creates the executor that runs the requests: one new virtual thread per request if the Java runtime has them (Java 21 and later),
+	 * and otherwise a pool of platform threads that grows with the number of concurrent requests.
+	 * @return ExecutorService executor for the requests
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits at most the given number of seconds for the current requests to finish, and then stops the request threads.
+	 * @param int delay number of seconds to wait
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the cache of recent query results used by this server, for example to read its statistics.
+	 * @return QueryCache cache of this server
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Returns the port that this server listens on.
+	 * @return int port number
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Splits the query string of a request into its parameters.
+	 * @param String query query string of the request; may be null
+	 * @return HashMap<String, String> decoded values of the parameters by name
+	 * @throws IllegalArgumentException if the query string is not correctly encoded
+	 */
+	private static HashMap<String, String> parseQuery(String query) throws IllegalArgumentException {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			String name = equals < 0 ? parameter : parameter.substring(0, equals);
+			String value = equals < 0 ? "" : parameter.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns the value of an optional number parameter.
+	 * @param HashMap<String, String> parameters parameters of the request
+	 * @param String name of the parameter
+	 * @param int defaultValue value used when the parameter is missing
+	 * @return int value of the parameter
+	 * @throws IllegalArgumentException if the value is not a number that is 0 or more
+	 */
+	private static int getNumber(HashMap<String, String> parameters, String name, int defaultValue) throws IllegalArgumentException {
+		String value = parameters.get(name);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		int number;
+		try {
+			number = Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The parameter " + name + " must be a number.");
+		}
+		if (number < 0) {
+			throw new IllegalArgumentException("The parameter " + name + " cannot be negative.");
+		}
+		return number;
+	}
+
+	/**
+	 * Returns the content type of a response in the given format.
+	 * @param RestaurantRenderer.Format format of the response, or null for the JSON document
+	 * @return String value of the Content-Type header
+	 */
+	private static String getContentType(RestaurantRenderer.Format format) {
+		if (format == null) {
+			return "application/json; charset=utf-8";
+		}
+		switch (format) {
+			case CSV:
+				return "text/csv; charset=utf-8";
+			case JSON_LINES:
+				return "application/x-ndjson; charset=utf-8";
+			default:
+				return "text/plain; charset=utf-8";
+		}
+	}
+
+	/**
+	 * Sends a response holding only an error message.
+	 * @param HttpExchange exchange request to answer
+	 * @param int status HTTP status code of the response
+	 * @param String message description of the error
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, 0);
+		Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+		out.write("{\"error\":");
+		RestaurantRenderer.writeJsonString(out, message);
+		out.write("}\n");
+		out.close();
+	}
+
+	/**
+	 * QueryHandler class answers the name, zip, fuzzy name or compound queries.
+	 * @author Claire Zhu
+	 */
+	private class QueryHandler implements HttpHandler {
+
+		//"name", "zip", "fuzzy" or "query"
+		private String query;
+
+		QueryHandler(String query) {
+			this.query = query;
+		}
+
+		/**
+		 * Searches the current snapshot of the restaurants and streams one page of the matches.
+		 * @param HttpExchange exchange request to answer
+		 * @throws IOException if the response cannot be sent
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			long start = System.nanoTime();
+			try {
+				if (!exchange.getRequestMethod().equals("GET")) {
+					exchange.getResponseHeaders().set("Allow", "GET");
+					sendError(exchange, 405, "Only GET requests are supported.");
+					return;
+				}
+				String keyword;
+				int offset;
+				int limit;
+				//null for the default JSON document with the total number of matches
+				RestaurantRenderer.Format format = null;
+				try {
+					HashMap<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+					keyword = parameters.get("keyword");
+					offset = getNumber(parameters, "offset", 0);
+					limit = Math.min(getNumber(parameters, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+					String formatName = parameters.get("format");
+					if (formatName != null && !formatName.equalsIgnoreCase("json")) {
+						try {
+							format = RestaurantRenderer.Format.parse(formatName);
+						}
+						catch (IllegalArgumentException e) {
+							throw new IllegalArgumentException("The format " + formatName + " is not supported.");
+						}
+					}
+				}
+				catch (IllegalArgumentException e) {
+					sendError(exchange, 400, e.getMessage());
+					return;
+				}
+				if (keyword == null || keyword.isEmpty()) {
+					sendError(exchange, 400, "The parameter keyword is required.");
+					return;
+				}
+
+				//the snapshot never changes, so the page stays consistent while it is written
+				RestaurantList snapshot = restaurantList.getSnapshot();
+				//the matches are kept as ids, and only the restaurants of the requested page are looked up
+				int total;
+				RestaurantList page;
+				if (query.equals("fuzzy")) {
+					//fuzzy matches are ordered by distance, so they are kept as an array instead of a bitmap
+					int[] ids = snapshot.findFuzzyIds(keyword, -1);
+					total = ids.length;
+					page = snapshot.getRestaurants(ids, offset, limit);
+				}
+				else {
+					RoaringBitmap ids;
+					if (query.equals("name")) {
+						ids = queryCache.getMatchingRestaurantIds(snapshot, keyword);
+					}
+					else if (query.equals("zip")) {
+						ids = queryCache.getMatchingZipIds(snapshot, keyword);
+					}
+					else {
+						try {
+							ids = snapshot.getQueryBitmap(keyword);
+						}
+						catch (IllegalArgumentException e) {
+							sendError(exchange, 400, e.getMessage());
+							return;
+						}
+					}
+					total = ids.getCardinality();
+					page = snapshot.getRestaurants(ids, offset, limit);
+				}
+
+				exchange.getResponseHeaders().set("Content-Type", getContentType(format));
+				exchange.getResponseHeaders().set("X-Total-Count", Integer.toString(total));
+				exchange.sendResponseHeaders(200, 0);
+				Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE);
+				RestaurantRenderer renderer = new RestaurantRenderer(out, format == null ? RestaurantRenderer.Format.JSON_LINES : format);
+				if (format != null) {
+					if (page != null) {
+						for (Restaurant restaurant : page) {
+							renderer.write(restaurant);
+						}
+					}
+				}
+				else {
+					out.write("{\"query\":");
+					out.write("\"" + query + "\"");
+					out.write(",\"keyword\":");
+					RestaurantRenderer.writeJsonString(out, keyword);
+					out.write(",\"total\":" + total + ",\"offset\":" + offset + ",\"limit\":" + limit + ",\"restaurants\":[");
+					if (page != null) {
+						boolean first = true;
+						for (Restaurant restaurant : page) {
+							if (!first) {
+								out.write(',');
+							}
+							first = false;
+							out.write('\n');
+							renderer.writeJson(restaurant);
+						}
+					}
+					out.write("]}\n");
+				}
+				out.close();
+				RestaurantDataMetrics.getInstance().recordQuery("http " + query, start, total);
+			}
+			finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * MetricsHandler class answers GET /metrics with the report of RestaurantDataMetrics.
+	 * @author Claire Zhu
+	 */
+	private static class MetricsHandler implements HttpHandler {
+
+		/**
+		 * Sends the current statistics as plain text.
+		 * @param HttpExchange exchange request to answer
+		 * @throws IOException if the response cannot be sent
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!exchange.getRequestMethod().equals("GET")) {
+					exchange.getResponseHeaders().set("Allow", "GET");
+					sendError(exchange, 405, "Only GET requests are supported.");
+					return;
+				}
+				byte[] report = RestaurantDataMetrics.getInstance().getReport().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, report.length);
+				exchange.getResponseBody().write(report);
+			}
+			finally {
+				exchange.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,350 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * The RestaurantRenderer class writes restaurants to a Writer in one of three formats:
+ * the tabular text printed by the interactive program, CSV with one row per inspection, or JSON Lines with one object per restaurant.
+ * Everything is written into a large buffer, which is only passed on to the underlying Writer when it is full or when flush() is called,
+ * so printing thousands of matches costs a few large writes instead of one write per restaurant.
+ * Values are written directly into the buffer; labels and separators are constants, and dates and scores are written digit by digit without creating Strings.
+ * @author Claire Zhu
+ */
+
+public class RestaurantRenderer implements Flushable, Closeable {
+
+	/**
+	 * Format enumeration lists the output formats of a RestaurantRenderer.
+	 * @author Claire Zhu
+	 */
+	public enum Format {
+		/** the tabular representation returned by Restaurant.toString(), followed by a line separator */
+		TEXT,
+		/** a header row, then one row per inspection with the restaurant values repeated */
+		CSV,
+		/** one JSON object per line holding the restaurant values and all of its inspections */
+		JSON_LINES;
+
+		/**
+		 * Returns the format with the given name, ignoring case; "jsonl" and "json" are accepted for JSON_LINES.
+		 * @param String name of the format
+		 * @return Format format with that name
+		 * @throws IllegalArgumentException if there is no format with that name
+		 */
+		public static Format parse(String name) throws IllegalArgumentException {
+			if (name.equalsIgnoreCase("jsonl") || name.equalsIgnoreCase("json")) {
+				return JSON_LINES;
+			}
+			return valueOf(name.toUpperCase());
+		}
+	}
+
+	public static final int BUFFER_SIZE = 1 << 16;
+	//number of restaurants looked up at a time when writing the restaurants of a bitmap of ids
+	public static final int PAGE_SIZE = 1000;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	private static final String CSV_HEADER = "name,address,zip,phone,date,score,violation,risk";
+
+	private Writer out;
+	private Format format;
+	private boolean headerWritten;
+	//reused for the digits of dates
+	private char[] dateChars;
+
+	/**
+	 * Constructs a new RestaurantRenderer object that writes to the given Writer through a 64 KB buffer.
+	 * @param Writer out output that the restaurants are written to
+	 * @param Format format of the output
+	 */
+	public RestaurantRenderer(Writer out, Format format) {
+		this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+		this.format = format;
+		this.dateChars = new char[10];
+	}
+
+	/**
+	 * Returns the format of this renderer.
+	 * @return Format format of the output
+	 */
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * Writes one restaurant. It may stay in the buffer until flush() is called.
+	 * @param Restaurant restaurant to be written
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(Restaurant restaurant) throws IOException {
+		if (format == Format.TEXT) {
+			restaurant.appendTo(out);
+			out.write(LINE_SEPARATOR);
+		}
+		else if (format == Format.CSV) {
+			writeCsv(restaurant);
+		}
+		else {
+			writeJson(restaurant);
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes all given restaurants as one batch and then flushes the output once. In the CSV format every batch starts with the header row.
+	 * @param Iterable<Restaurant> restaurants restaurants to be written; may be null
+	 * @return int number of restaurants written
+	 * @throws IOException if the output cannot be written
+	 */
+	public int writeAll(Iterable<Restaurant> restaurants) throws IOException {
+		int count = 0;
+		headerWritten = false;
+		if (restaurants != null) {
+			for (Restaurant restaurant : restaurants) {
+				write(restaurant);
+				count++;
+			}
+		}
+		flush();
+		return count;
+	}
+
+	/**
+	 * Writes the restaurants with the given ids as one batch, looking them up one page at a time, so a large result is never held as a single list.
+	 * @param RestaurantList restaurantList list that the ids belong to
+	 * @param RoaringBitmap ids ids returned by a method of the list since it last changed
+	 * @return int number of restaurants written
+	 * @throws IOException if the output cannot be written
+	 */
+	public int writeAll(RestaurantList restaurantList, RoaringBitmap ids) throws IOException {
+		int count = 0;
+		headerWritten = false;
+		RestaurantList page;
+		while ((page = restaurantList.getRestaurants(ids, count, PAGE_SIZE)) != null) {
+			for (Restaurant restaurant : page) {
+				write(restaurant);
+				count++;
+			}
+		}
+		flush();
+		return count;
+	}
+
+	/**
+	 * Writes text that is already rendered, for example a result kept by a QueryCache.
+	 * @param String text to be written
+	 * @throws IOException if the output cannot be written
+	 */
+	public void writeRendered(String text) throws IOException {
+		out.write(text);
+	}
+
+	/**
+	 * Passes everything in the buffer on to the underlying Writer and flushes it.
+	 * @throws IOException if the output cannot be written
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Flushes and closes the underlying Writer.
+	 * @throws IOException if the output cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Writes a restaurant as a JSON object with its name, address, zip code, phone number and all of its inspections in date order.
+	 * @param Restaurant restaurant to be written
+	 * @throws IOException if the output cannot be written
+	 */
+	public void writeJson(Restaurant restaurant) throws IOException {
+		out.write("{\"name\":");
+		writeJsonString(out, restaurant.getName());
+		out.write(",\"address\":");
+		writeJsonString(out, restaurant.getAddress());
+		out.write(",\"zip\":");
+		writeJsonString(out, restaurant.getZip());
+		out.write(",\"phone\":");
+		writeJsonString(out, restaurant.getPhone());
+		out.write(",\"inspections\":[");
+		List<Inspection> inspections = restaurant.getListOfInspections();
+		for (int i = 0; i < inspections.size(); i++) {
+			Inspection inspection = inspections.get(i);
+			if (i > 0) {
+				out.write(',');
+			}
+			out.write("{\"date\":\"");
+			writeDate(inspection.getDate().getValue());
+			out.write("\",\"score\":");
+			writeScore(inspection.getScore());
+			out.write(",\"violation\":");
+			writeJsonString(out, inspection.getViolation());
+			out.write(",\"risk\":");
+			writeJsonString(out, inspection.getRisk());
+			out.write('}');
+		}
+		out.write("]}");
+	}
+
+	/**
+	 * Writes the CSV rows of a restaurant, one per inspection, or a single row with empty inspection columns if it has no inspections.
+	 * The header row is written before the first restaurant.
+	 * @param Restaurant restaurant to be written
+	 * @throws IOException if the output cannot be written
+	 */
+	private void writeCsv(Restaurant restaurant) throws IOException {
+		if (!headerWritten) {
+			out.write(CSV_HEADER);
+			out.write('\n');
+			headerWritten = true;
+		}
+		List<Inspection> inspections = restaurant.getListOfInspections();
+		int rows = Math.max(1, inspections.size());
+		for (int i = 0; i < rows; i++) {
+			writeCsvField(out, restaurant.getName());
+			out.write(',');
+			writeCsvField(out, restaurant.getAddress());
+			out.write(',');
+			writeCsvField(out, restaurant.getZip());
+			out.write(',');
+			writeCsvField(out, restaurant.getPhone());
+			out.write(',');
+			if (i < inspections.size()) {
+				Inspection inspection = inspections.get(i);
+				writeDate(inspection.getDate().getValue());
+				out.write(',');
+				writeScore(inspection.getScore());
+				out.write(',');
+				writeCsvField(out, inspection.getViolation());
+				out.write(',');
+				writeCsvField(out, inspection.getRisk());
+			}
+			else {
+				out.write(",,,");
+			}
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes a date in the "MM/DD/YYYY" format of Date.toString().
+	 * @param int value date in the form yyyymmdd, as returned by Date.getValue()
+	 * @throws IOException if the output cannot be written
+	 */
+	private void writeDate(int value) throws IOException {
+		int year = value / 10000;
+		int month = value / 100 % 100;
+		int day = value % 100;
+		dateChars[0] = (char) ('0' + month / 10);
+		dateChars[1] = (char) ('0' + month % 10);
+		dateChars[2] = '/';
+		dateChars[3] = (char) ('0' + day / 10);
+		dateChars[4] = (char) ('0' + day % 10);
+		dateChars[5] = '/';
+		dateChars[6] = (char) ('0' + year / 1000 % 10);
+		dateChars[7] = (char) ('0' + year / 100 % 10);
+		dateChars[8] = (char) ('0' + year / 10 % 10);
+		dateChars[9] = (char) ('0' + year % 10);
+		out.write(dateChars, 0, 10);
+	}
+
+	/**
+	 * Writes an inspection score.
+	 * @param int score from 0 to 100
+	 * @throws IOException if the output cannot be written
+	 */
+	private void writeScore(int score) throws IOException {
+		if (score >= 100) {
+			out.write('1');
+			out.write('0');
+			out.write('0');
+			return;
+		}
+		if (score >= 10) {
+			out.write('0' + score / 10);
+		}
+		out.write('0' + score % 10);
+	}
+
+	/**
+	 * Writes a CSV field, surrounded by double quotes if it contains a comma, a double quote or a line break; double quotes inside it are doubled.
+	 * @param Writer out output that the field is written to
+	 * @param String value of the field; null is written as an empty field
+	 * @throws IOException if the output cannot be written
+	 */
+	static void writeCsvField(Writer out, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == '"') {
+				out.write(value, start, i + 1 - start);
+				out.write('"');
+				start = i + 1;
+			}
+		}
+		out.write(value, start, value.length() - start);
+		out.write('"');
+	}
+
+	/**
+	 * Writes a String as a JSON string literal, escaping the quotes, backslashes and control characters.
+	 * @param Writer out output that the literal is written to
+	 * @param String value to be written; null is written as the JSON null value
+	 * @throws IOException if the output cannot be written
+	 */
+	static void writeJsonString(Writer out, String value) throws IOException {
+		if (value == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\' || c < 0x20) {
+				out.write(value, start, i - start);
+				if (c == '"' || c == '\\') {
+					out.write('\\');
+					out.write(c);
+				}
+				else if (c == '\n') {
+					out.write("\\n");
+				}
+				else if (c == '\r') {
+					out.write("\\r");
+				}
+				else if (c == '\t') {
+					out.write("\\t");
+				}
+				else {
+					out.write("\\u00");
+					out.write(Character.forDigit(c >> 4, 16));
+					out.write(Character.forDigit(c & 0xf, 16));
+				}
+				start = i + 1;
+			}
+		}
+		out.write(value, start, value.length() - start);
+		out.write('"');
+	}
+}
@@ -0,0 +1,789 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The RoaringBitmap class is a compressed set of non negative int values, used for the ids of restaurants (their positions in the sorted array of a RestaurantList).
+ * Like a Roaring bitmap, the values are split by their upper 16 bits into containers of up to 65536 values. A container with at most 4096 values is a sorted array of their lower 16 bits,
+ * and a fuller container is a bitmap of 1024 longs, so a set never takes more than 2 bytes per value, and dense sets take much less.
+ * Intersections, unions, differences and their counts are computed container by container; two bitmap containers are combined 64 values at a time with a single word operation.
+ * The set operations return new bitmaps and never change their operands. A result may share containers with its operands, for example the bitmaps of an index;
+ * a shared container is copied before a value is added to it, so adding to a result never changes an operand and adding to an operand never changes a result.
+ * A bitmap can be written to a stream and read back from a buffer, for example from a mapped RestaurantSnapshot, by copying the containers in bulk.
+ * @author Claire Zhu
+ */
+
+public class RoaringBitmap {
+
+	//largest number of values kept in an array container
+	private static final int ARRAY_LIMIT = 4096;
+
+	//upper 16 bits of the values of every container, in increasing order, and the containers themselves
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	/**
+	 * This default constructor constructs a new empty RoaringBitmap object.
+	 */
+	public RoaringBitmap() {
+		//the ids of up to 65536 restaurants fit in a single container
+		keys = new char[1];
+		containers = new Container[1];
+	}
+
+	/**
+	 * Creates a bitmap holding the given values.
+	 * @param int... values non negative values in any order; adding them in increasing order is fastest
+	 * @return RoaringBitmap bitmap of the values
+	 */
+	public static RoaringBitmap of(int... values) {
+		RoaringBitmap bitmap = new RoaringBitmap();
+		for (int value : values) {
+			bitmap.add(value);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Creates a bitmap holding all values from from (inclusive) to to (exclusive), for example all ids of a list.
+	 * @param int from first value
+	 * @param int to value after the last value
+	 * @return RoaringBitmap bitmap of the range
+	 */
+	public static RoaringBitmap range(int from, int to) {
+		RoaringBitmap bitmap = new RoaringBitmap();
+		int value = Math.max(0, from);
+		while (value < to) {
+			int end = (int) Math.min(to, ((long) (value >>> 16) + 1) << 16);
+			Container container;
+			if (end - value > ARRAY_LIMIT) {
+				BitmapContainer words = new BitmapContainer();
+				for (int low = value & 0xFFFF; low <= ((end - 1) & 0xFFFF); low++) {
+					words.words[low >>> 6] |= 1L << low;
+				}
+				words.cardinality = end - value;
+				container = words;
+			}
+			else {
+				ArrayContainer array = new ArrayContainer(end - value);
+				for (int v = value; v < end; v++) {
+					array.values[array.cardinality++] = (char) v;
+				}
+				container = array;
+			}
+			bitmap.append((char) (value >>> 16), container);
+			value = end;
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Adds a value to this bitmap.
+	 * @param int value non negative value to be added
+	 */
+	public void add(int value) {
+		char key = (char) (value >>> 16);
+		int index = size > 0 && keys[size - 1] == key ? size - 1 : Arrays.binarySearch(keys, 0, size, key);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, key, new ArrayContainer(4));
+		}
+		Container container = containers[index];
+		if (container.shared) {
+			container = container.copy();
+		}
+		containers[index] = container.add((char) value);
+	}
+
+	/**
+	 * Returns true if this bitmap contains the given value.
+	 * @param int value to be checked
+	 * @return boolean true if the value is in this bitmap
+	 */
+	public boolean contains(int value) {
+		int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+		return index >= 0 && containers[index].contains((char) value);
+	}
+
+	/**
+	 * Returns the number of values in this bitmap.
+	 * @return int number of values
+	 */
+	public int getCardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Returns true if this bitmap has no values.
+	 * @return boolean true if this bitmap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the values that are in both this bitmap and the other one.
+	 * @param RoaringBitmap other second operand
+	 * @return RoaringBitmap intersection of the bitmaps
+	 */
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				result.appendIfNotEmpty(keys[i], containers[i].and(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of values that are in both this bitmap and the other one, without creating their intersection.
+	 * @param RoaringBitmap other second operand
+	 * @return int number of common values
+	 */
+	public int andCardinality(RoaringBitmap other) {
+		int cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				cardinality += containers[i].andCardinality(other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Returns the values that are in this bitmap, the other one or both.
+	 * @param RoaringBitmap other second operand
+	 * @return RoaringBitmap union of the bitmaps
+	 */
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.appendShared(keys[i], containers[i]);
+				i++;
+			}
+			else if (i == size || keys[i] > other.keys[j]) {
+				result.appendShared(other.keys[j], other.containers[j]);
+				j++;
+			}
+			else {
+				result.append(keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the values of this bitmap that are not in the other one.
+	 * @param RoaringBitmap other values to be removed
+	 * @return RoaringBitmap difference of the bitmaps
+	 */
+	public RoaringBitmap andNot(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+			if (j < other.size && other.keys[j] == keys[i]) {
+				result.appendIfNotEmpty(keys[i], containers[i].andNot(other.containers[j]));
+			}
+			else {
+				result.appendShared(keys[i], containers[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of this bitmap that shares its containers, so no values are copied; a shared container is copied when a value is added to it in either bitmap.
+	 * @return RoaringBitmap bitmap with the same values as this one
+	 */
+	public RoaringBitmap copy() {
+		RoaringBitmap copy = new RoaringBitmap();
+		for (int i = 0; i < size; i++) {
+			copy.appendShared(keys[i], containers[i]);
+		}
+		return copy;
+	}
+
+	/**
+	 * Writes this bitmap in the form read by read(ByteBuffer): the number of containers, then the key, kind, cardinality and values of every container.
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeChar(keys[i]);
+			containers[i].write(out);
+		}
+	}
+
+	/**
+	 * Reads a bitmap written by write(DataOutputStream), starting at the position of the buffer and moving the position past it.
+	 * @param ByteBuffer buffer to read from
+	 * @return RoaringBitmap bitmap with the values that were written
+	 */
+	public static RoaringBitmap read(ByteBuffer buffer) {
+		RoaringBitmap bitmap = new RoaringBitmap();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			char key = buffer.getChar();
+			boolean words = buffer.get() != 0;
+			int cardinality = buffer.getInt();
+			Container container;
+			if (words) {
+				BitmapContainer bits = new BitmapContainer();
+				buffer.asLongBuffer().get(bits.words);
+				buffer.position(buffer.position() + bits.words.length * 8);
+				bits.cardinality = cardinality;
+				container = bits;
+			}
+			else {
+				//an array container grows by doubling, so it never has a capacity of 0
+				ArrayContainer array = new ArrayContainer(Math.max(1, cardinality));
+				buffer.asCharBuffer().get(array.values, 0, cardinality);
+				buffer.position(buffer.position() + cardinality * 2);
+				array.cardinality = cardinality;
+				container = array;
+			}
+			bitmap.append(key, container);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Calls the consumer with every value of this bitmap, in increasing order.
+	 * @param IntConsumer consumer code receiving the values
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < size; i++) {
+			containers[i].forEach(keys[i] << 16, consumer);
+		}
+	}
+
+	/**
+	 * Returns the values of this bitmap in increasing order.
+	 * @return int[] sorted array of the values
+	 */
+	public int[] toArray() {
+		return toArray(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a page of the values of this bitmap in increasing order. Containers before the page are skipped by their counts, without reading their values.
+	 * @param int offset number of values to skip
+	 * @param int limit largest number of values to return
+	 * @return int[] sorted array of at most limit values, starting with the value at position offset
+	 */
+	public int[] toArray(int offset, int limit) {
+		int cardinality = getCardinality();
+		int from = Math.max(0, offset);
+		int count = (int) Math.max(0, Math.min((long) cardinality - from, limit));
+		int[] values = new int[count];
+		int written = 0;
+		int skip = from;
+		for (int i = 0; i < size && written < count; i++) {
+			int containerCardinality = containers[i].cardinality();
+			if (skip >= containerCardinality) {
+				skip -= containerCardinality;
+				continue;
+			}
+			written = containers[i].fill(keys[i] << 16, skip, values, written);
+			skip = 0;
+		}
+		return values;
+	}
+
+	/**
+	 * Compares this bitmap with another object.
+	 * @param Object o object to be compared
+	 * @return boolean true if o is a RoaringBitmap with the same values
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof RoaringBitmap)) {
+			return false;
+		}
+		return Arrays.equals(toArray(), ((RoaringBitmap) o).toArray());
+	}
+
+	/**
+	 * Returns the hash code of the values of this bitmap.
+	 * @return int hash code
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	/**
+	 * Returns a String representation of this bitmap.
+	 * @return String with the number of values and the number of containers
+	 */
+	@Override
+	public String toString() {
+		return "RoaringBitmap[cardinality=" + getCardinality() + ", containers=" + size + "]";
+	}
+
+	/**
+	 * Adds a container after the last one. The key must be larger than every key of this bitmap.
+	 * @param char key upper 16 bits of the values of the container
+	 * @param Container container new container to be added
+	 */
+	private void append(char key, Container container) {
+		insert(size, key, container);
+	}
+
+	/**
+	 * Adds a container of another bitmap after the last one without copying it, and marks it as shared, so neither bitmap changes it afterwards.
+	 * @param char key upper 16 bits of the values of the container
+	 * @param Container container container of another bitmap
+	 */
+	private void appendShared(char key, Container container) {
+		//written only once, so concurrent searches sharing the containers of an index do not keep writing to them
+		if (!container.shared) {
+			container.shared = true;
+		}
+		append(key, container);
+	}
+
+	/**
+	 * Adds a container after the last one unless it is empty.
+	 * @param char key upper 16 bits of the values of the container
+	 * @param Container container container to be added
+	 */
+	private void appendIfNotEmpty(char key, Container container) {
+		if (container.cardinality() > 0) {
+			append(key, container);
+		}
+	}
+
+	/**
+	 * Inserts a container at the given position.
+	 * @param int index position of the container
+	 * @param char key upper 16 bits of the values of the container
+	 * @param Container container container to be inserted
+	 */
+	private void insert(int index, char key, Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	/**
+	 * Container class holds the lower 16 bits of the values of a RoaringBitmap that share the same upper 16 bits.
+	 * The set operations return new containers, or one of their operands if it is the result, and add() may return a container of the other kind.
+	 * @author Claire Zhu
+	 */
+	private static abstract class Container {
+
+		//true if the container belongs to more than one bitmap and has to be copied before it is changed
+		boolean shared;
+
+		abstract int cardinality();
+
+		/**
+		 * Returns a new container with the same values, which is not shared.
+		 * @return Container copy of this container
+		 */
+		abstract Container copy();
+
+		abstract boolean contains(char value);
+
+		abstract Container add(char value);
+
+		abstract Container and(Container other);
+
+		abstract int andCardinality(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container andNot(Container other);
+
+		abstract BitmapContainer toBitmap();
+
+		abstract void forEach(int high, IntConsumer consumer);
+
+		/**
+		 * Writes the kind, the cardinality and the values of this container.
+		 * @param DataOutputStream out stream to write to
+		 * @throws IOException if the stream cannot be written
+		 */
+		abstract void write(DataOutputStream out) throws IOException;
+
+		/**
+		 * Writes values of this container into an array.
+		 * @param int high upper 16 bits of the values, already shifted
+		 * @param int skip number of values of this container to skip
+		 * @param int[] values array receiving the values
+		 * @param int written number of values already in the array
+		 * @return int number of values in the array afterwards; stops when the array is full
+		 */
+		abstract int fill(int high, int skip, int[] values, int written);
+	}
+
+	/**
+	 * ArrayContainer class is a sorted array of up to 4096 values.
+	 * @author Claire Zhu
+	 */
+	private static class ArrayContainer extends Container {
+
+		private char[] values;
+		private int cardinality;
+
+		ArrayContainer(int capacity) {
+			values = new char[capacity];
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer copy = new ArrayContainer(values.length);
+			System.arraycopy(values, 0, copy.values, 0, cardinality);
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		Container add(char value) {
+			int index = cardinality > 0 && values[cardinality - 1] < value ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, value);
+			if (index >= 0) {
+				return this;
+			}
+			if (cardinality == ARRAY_LIMIT) {
+				return toBitmap().add(value);
+			}
+			index = -index - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+			}
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		Container and(Container other) {
+			ArrayContainer result = new ArrayContainer(cardinality);
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality && j < array.cardinality) {
+					if (values[i] < array.values[j]) {
+						i++;
+					}
+					else if (values[i] > array.values[j]) {
+						j++;
+					}
+					else {
+						result.values[result.cardinality++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						result.values[result.cardinality++] = values[i];
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			int count = 0;
+			for (int i = 0; i < cardinality; i++) {
+				if (other.contains(values[i])) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container other) {
+			if (!(other instanceof ArrayContainer) || cardinality + other.cardinality() > ARRAY_LIMIT) {
+				return toBitmap().or(other);
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			ArrayContainer result = new ArrayContainer(cardinality + array.cardinality);
+			int i = 0;
+			int j = 0;
+			while (i < cardinality || j < array.cardinality) {
+				char value;
+				if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+					value = values[i++];
+				}
+				else if (i == cardinality || values[i] > array.values[j]) {
+					value = array.values[j++];
+				}
+				else {
+					value = values[i++];
+					j++;
+				}
+				result.values[result.cardinality++] = value;
+			}
+			return result;
+		}
+
+		@Override
+		Container andNot(Container other) {
+			ArrayContainer result = new ArrayContainer(cardinality);
+			for (int i = 0; i < cardinality; i++) {
+				if (!other.contains(values[i])) {
+					result.values[result.cardinality++] = values[i];
+				}
+			}
+			return result;
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++) {
+				bitmap.words[values[i] >>> 6] |= 1L << values[i];
+			}
+			bitmap.cardinality = cardinality;
+			return bitmap;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < cardinality; i++) {
+				consumer.accept(high | values[i]);
+			}
+		}
+
+		@Override
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(0);
+			out.writeInt(cardinality);
+			for (int i = 0; i < cardinality; i++) {
+				out.writeChar(values[i]);
+			}
+		}
+
+		@Override
+		int fill(int high, int skip, int[] result, int written) {
+			for (int i = skip; i < cardinality && written < result.length; i++) {
+				result[written++] = high | values[i];
+			}
+			return written;
+		}
+	}
+
+	/**
+	 * BitmapContainer class is a bitmap of all 65536 possible values, used for containers with more than 4096 values.
+	 * @author Claire Zhu
+	 */
+	private static class BitmapContainer extends Container {
+
+		private long[] words = new long[1024];
+		private int cardinality;
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer copy = new BitmapContainer();
+			System.arraycopy(words, 0, copy.words, 0, words.length);
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container add(char value) {
+			long bit = 1L << value;
+			if ((words[value >>> 6] & bit) == 0) {
+				words[value >>> 6] |= bit;
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] & otherWords[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result.shrink();
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.andCardinality(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			int count = 0;
+			for (int i = 0; i < words.length; i++) {
+				count += Long.bitCount(words[i] & otherWords[i]);
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container other) {
+			long[] otherWords = other.toBitmap().words;
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] | otherWords[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result;
+		}
+
+		@Override
+		Container andNot(Container other) {
+			BitmapContainer result = new BitmapContainer();
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				System.arraycopy(words, 0, result.words, 0, words.length);
+				result.cardinality = cardinality;
+				for (int i = 0; i < array.cardinality; i++) {
+					char value = array.values[i];
+					if ((result.words[value >>> 6] & (1L << value)) != 0) {
+						result.words[value >>> 6] &= ~(1L << value);
+						result.cardinality--;
+					}
+				}
+			}
+			else {
+				long[] otherWords = ((BitmapContainer) other).words;
+				for (int i = 0; i < words.length; i++) {
+					result.words[i] = words[i] & ~otherWords[i];
+					result.cardinality += Long.bitCount(result.words[i]);
+				}
+			}
+			return result.shrink();
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			return this;
+		}
+
+		/**
+		 * Returns this container, or an array container with the same values if it has few enough of them.
+		 * @return Container smallest container for the values
+		 */
+		private Container shrink() {
+			if (cardinality > ARRAY_LIMIT) {
+				return this;
+			}
+			ArrayContainer array = new ArrayContainer(cardinality);
+			forEach(0, value -> array.values[array.cardinality++] = (char) value);
+			return array;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(1);
+			out.writeInt(cardinality);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+		}
+
+		@Override
+		int fill(int high, int skip, int[] result, int written) {
+			for (int i = 0; i < words.length && written < result.length; i++) {
+				long word = words[i];
+				int bits = Long.bitCount(word);
+				if (skip >= bits) {
+					skip -= bits;
+					continue;
+				}
+				while (word != 0 && written < result.length) {
+					if (skip > 0) {
+						skip--;
+					}
+					else {
+						result[written++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+					}
+					word &= word - 1;
+				}
+			}
+			return written;
+		}
+	}
+}
@@ -2,9 +2,10 @@
 
 import java.util.Scanner;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import javax.management.JMException;
 
 	/**
 	 * This class is the interactive program that  allows the user to search for restaurants and their information in San Francisco. 
@@ -21,6 +22,14 @@ public class SFRestaurantData {
 	 * The main() method of this program. 
 	 * @param args array of Strings provided on the command line when the program is started. 
 	 * The first String should be the name of the input CSV file containing the named restaurants. 
+	 * The following Strings are optional settings:
+	 * -parallel loads the file with several threads using a ParallelRestaurantDataLoader.
+	 * -compact keeps the inspections in a columnar InspectionStore after loading, which uses much less memory.
+	 * -snapshot FILE restores the restaurants from a binary RestaurantSnapshot if it is newer than the input file, and otherwise loads the input file and saves the snapshot.
+	 * -server PORT answers name and zip queries over HTTP on the given port with a RestaurantQueryServer, instead of reading queries from the console.
+	 * -format FORMAT prints the matches as text (the default), csv or jsonl using a RestaurantRenderer.
+	 * -delta FILE adds the new inspections of another CSV file after loading, skipping the rows that were already loaded; it can be given several times.
+	 * -metrics SECONDS publishes the RestaurantDataMetrics as JMX MBeans and prints them to the standard error stream every SECONDS seconds; 0 only publishes them.
 	 */
 	public static void main(String[] args) {
 	
@@ -41,86 +50,169 @@ public class SFRestaurantData {
 			System.exit(1);
 		}
 		
-		//open file to be read
-		Scanner inRestaurant = null;
+		//read the optional settings that follow the file name
+		boolean parallel = false;
+		boolean compact = false;
+		File snapshotFile = null;
+		int serverPort = -1;
+		RestaurantRenderer.Format format = RestaurantRenderer.Format.TEXT;
+		ArrayList<File> deltaFiles = new ArrayList<File>();
+		long metricsPeriod = -1;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equalsIgnoreCase("-parallel")) {
+				parallel = true;
+			}
+			else if (args[i].equalsIgnoreCase("-compact")) {
+				compact = true;
+			}
+			else if (args[i].equalsIgnoreCase("-snapshot") && i + 1 < args.length) {
+				snapshotFile = new File(args[++i]);
+			}
+			else if (args[i].equalsIgnoreCase("-server") && i + 1 < args.length) {
+				try {
+					serverPort = Integer.parseInt(args[++i]);
+				}
+				catch (NumberFormatException e) {
+					serverPort = -1;
+				}
+				if (serverPort < 0 || serverPort > 65535) {
+					System.out.println("ERROR: Invalid port "+args[i]+".\n");
+					System.exit(1);
+				}
+			}
+			else if (args[i].equalsIgnoreCase("-format") && i + 1 < args.length) {
+				try {
+					format = RestaurantRenderer.Format.parse(args[++i]);
+				}
+				catch (IllegalArgumentException e) {
+					System.out.println("ERROR: Unknown format "+args[i]+".\n");
+					System.exit(1);
+				}
+			}
+			else if (args[i].equalsIgnoreCase("-delta") && i + 1 < args.length) {
+				deltaFiles.add(new File(args[++i]));
+			}
+			else if (args[i].equalsIgnoreCase("-metrics") && i + 1 < args.length) {
+				try {
+					metricsPeriod = Long.parseLong(args[++i]);
+				}
+				catch (NumberFormatException e) {
+					metricsPeriod = -1;
+				}
+				if (metricsPeriod < 0) {
+					System.out.println("ERROR: Invalid metrics interval "+args[i]+".\n");
+					System.exit(1);
+				}
+			}
+			else {
+				System.out.println("ERROR: Unknown option "+args[i]+".\n");
+				System.exit(1);
+			}
+		}
+		
+		//publish the metrics before loading, so the load can be watched
+		if (metricsPeriod >= 0) {
+			RestaurantDataMetrics metrics = RestaurantDataMetrics.getInstance();
+			try {
+				metrics.registerMBeans();
+			}
+			catch (JMException e) {
+				System.err.println("WARNING: the metrics cannot be published over JMX. \n");
+			}
+			if (metricsPeriod > 0) {
+				metrics.startDump(System.err, metricsPeriod);
+			}
+		}
+		
+		//read the file and save each line in a list of named restaurants
+		RestaurantList restaurantList = new RestaurantList();
+		boolean restored = false;
+		if (snapshotFile != null && snapshotFile.exists() && snapshotFile.lastModified() >= restaurantFile.lastModified()) {
+			try {
+				restaurantList = RestaurantSnapshot.read(snapshotFile);
+				restored = true;
+			}
+			catch (IOException e) {
+				System.err.println("WARNING: "+e.getMessage()+" Loading "+restaurantFile.getName()+" instead.\n");
+			}
+		}
 		
 		try {
-			inRestaurant = new Scanner(restaurantFile);
+			if (restored) {
+				//the snapshot already holds the restaurants and their inspections
+			}
+			else if (parallel) {
+				new ParallelRestaurantDataLoader(restaurantFile).load(restaurantList);
+			}
+			else {
+				try (RestaurantDataReader reader = new RestaurantDataReader(restaurantFile)) {
+					reader.load(restaurantList);
+				}
+			}
+			for (File deltaFile : deltaFiles) {
+				restaurantFile = deltaFile;
+				new IncrementalLoader(deltaFile).loadInto(restaurantList);
+			}
+			//a restored list is already sorted and indexed unless delta files were added to it
+			if (!restored || !deltaFiles.isEmpty()) {
+				restaurantList.buildIndex();
+			}
+			if (compact) {
+				restaurantList.compactInspections();
+			}
 		}
-		catch (FileNotFoundException e) {
+		catch (IOException e) {
 			System.err.println("ERROR: the file "+restaurantFile.getAbsolutePath()+" cannot be opened for reading. \n");
 			System.exit(1);
 		}
 		
-		String line = null;
-		
-		RestaurantList restaurantList = new RestaurantList();
-		 
-		
-		while (inRestaurant.hasNextLine()) {
+		if (snapshotFile != null && !(restored && deltaFiles.isEmpty())) {
 			try {
-				line = inRestaurant.nextLine();
-				//read through each line of the file and save it in a list of named restaurants
-				ArrayList<String> entries = splitCSVLine(line);
-				
-					
-				String formattedDate = 	entries.get(11).split(" ")[0];
-				if (formattedDate.indexOf("/") == 1) {
-					formattedDate = "0" + formattedDate;
-				}
-				
-				if (formattedDate.lastIndexOf("/") == 4) {
-					formattedDate = formattedDate.substring(0,3) + "0" + formattedDate.substring(3);
-				}
-					
-				if (entries.get(12).isEmpty()) {
-						continue;
-				}
-					
-				Inspection restaurantInspection = new Inspection(new Date(formattedDate), Integer.valueOf(entries.get(12)), entries.get(15),entries.size()==17? entries.get(16) : null);
-				
-				String name = entries.get(1);
-				String zip = entries.get(5);
-				boolean found = false;
-				for (Restaurant r : restaurantList) {
-					if (r.equals(new Restaurant(name, zip))) {
-						r.addInspection(restaurantInspection);
-						found = true;
-						break;
-					}
-				}
-				//create new Restaurant objects for each line, and use the appropriate constructor depending on what information is present in each line 
-				if (!found) {
-					if (entries.get(2).isEmpty() && entries.get(9).isEmpty()) {
-						Restaurant r = new Restaurant(entries.get(1), entries.get(5));
-						restaurantList.add(r);
-						r.addInspection(restaurantInspection);
-						
-					}
-					else {
-						Restaurant r = new Restaurant(entries.get(1), entries.get(5), entries.get(2), entries.get(9)); 
-						restaurantList.add(r);
-						r.addInspection(restaurantInspection);
-					}
-				}
+				RestaurantSnapshot.write(restaurantList, snapshotFile);
 			}
-			
-			catch (NoSuchElementException exception1) {
+			catch (IOException e) {
+				System.err.println("WARNING: the snapshot "+snapshotFile.getAbsolutePath()+" cannot be written. \n");
 			}
-			
-			catch (IllegalArgumentException exception2) {
+		}
+		
+		//serve the queries over HTTP; the server threads keep the program running
+		if (serverPort >= 0) {
+			try {
+				RestaurantQueryServer server = new RestaurantQueryServer(new ConcurrentRestaurantList(restaurantList), serverPort);
+				server.start();
+				System.out.println("Answering queries on port "+server.getPort()+".");
 			}
+			catch (IOException e) {
+				System.err.println("ERROR: cannot listen on port "+serverPort+". \n");
+				System.exit(1);
+			}
+			return;
 		}
 		
 		//interactive part; ask for user input
 		Scanner input =  new Scanner(System.in);
 		String userInput="";
+		//repeated queries are answered from the cache of recent results
+		QueryCache queryCache = new QueryCache();
+		RestaurantDataMetrics.getInstance().setQueryCache(queryCache);
+		//matches are written through a large buffer that is flushed once per query
+		RestaurantRenderer renderer = new RestaurantRenderer(new OutputStreamWriter(System.out), format);
 		
 		do {
 			System.out.println("Search the database by matching keywords to titles or actor names.");
 			System.out.println("    name KEYWORD");
 			System.out.println("  To search for matching restaurant names, enter");
 			System.out.println("    zip KEYWORD");
+			System.out.println("  To search for restaurant names that may be misspelled, enter");
+			System.out.println("    fuzzy KEYWORD");
+			System.out.println("  To combine name, zip, score and date conditions, for example pizza zip:941* score<70 since:2018, enter");
+			System.out.println("    query CONDITIONS");
+			System.out.println("  To count the restaurants matching conditions, for example risk:high zip:94103, enter");
+			System.out.println("    count CONDITIONS");
+			System.out.println("  To find the restaurants within a distance in meters of a location or of the center of a zip code, optionally with a latest score range such as 0-70, enter");
+			System.out.println("    near LATITUDE LONGITUDE METERS [SCORES] or near ZIP METERS [SCORES]");
+			System.out.println("  To find the K nearest restaurants, enter");
+			System.out.println("    nearest LATITUDE LONGITUDE K [SCORES] or nearest ZIP K [SCORES]");
 			System.out.println("  To finish the program, enter");
 			System.out.println("    quit");
 		
@@ -130,30 +222,77 @@ public class SFRestaurantData {
 			if (userInputList[0].equalsIgnoreCase("quit")) {
 				break;
 			}
+			if (userInputList[0].equalsIgnoreCase("count")) {
+				String conditions = userInput.trim().substring(userInputList[0].length()).trim();
+				try {
+					System.out.println(restaurantList.countMatchingQuery(conditions) + " restaurants match.");
+				}
+				catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage()+" Try again.");
+				}
+				continue;
+			}
+			if (userInputList[0].equalsIgnoreCase("near") || userInputList[0].equalsIgnoreCase("nearest")) {
+				boolean found = false;
+				try {
+					found = renderer.writeAll(searchNear(restaurantList, userInput.trim().split("\\s+"))) > 0;
+				}
+				catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage()+" Try again.");
+					continue;
+				}
+				catch (IOException e) {
+					System.err.println("ERROR: the matches cannot be printed. \n");
+					found = true;
+				}
+				if (!found) {
+					System.out.println("No matches found. Try again.");
+				}
+				continue;
+			}
+			if (userInputList[0].equalsIgnoreCase("fuzzy") || userInputList[0].equalsIgnoreCase("query")) {
+				//the keyword may have several words, since every word is allowed to be misspelled and a query has several conditions
+				String keyword = userInput.trim().substring(userInputList[0].length()).trim();
+				boolean found = false;
+				try {
+					if (userInputList[0].equalsIgnoreCase("fuzzy")) {
+						found = renderer.writeAll(restaurantList.getFuzzyMatchingRestaurants(keyword)) > 0;
+					}
+					else {
+						//the matches are kept as ids and printed one page at a time
+						found = renderer.writeAll(restaurantList, restaurantList.getQueryBitmap(keyword)) > 0;
+					}
+				}
+				catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage()+" Try again.");
+					continue;
+				}
+				catch (IOException e) {
+					System.err.println("ERROR: the matches cannot be printed. \n");
+					found = true;
+				}
+				if (!found) {
+					System.out.println("No matches found. Try again.");
+				}
+				continue;
+			}
 			if (!(userInputList[0].equalsIgnoreCase("name") || userInputList[0].equalsIgnoreCase("zip"))) {
 				System.out.println("This is not a valid query. Try again.");
 				continue; //is this correct 
 			}
 			else if (userInputList[0].equalsIgnoreCase("name")) {
 				// System.out.println(restaurantList.size());
-				if (restaurantList.getMatchingRestaurants(userInputList[1])==null) {
+				if (!printMatches(renderer, queryCache, restaurantList, true, userInputList[1])) {
 					System.out.println("No matches found. Try again.");
 					continue;
 				}
-
-				for (Restaurant restaurant: restaurantList.getMatchingRestaurants(userInputList[1])) {
-					System.out.println(restaurant.toString());
-				}
 				//System.out.println(restaurantList.toString());
 			}
 			else if (userInputList[0].equalsIgnoreCase("zip")) {
-				if (restaurantList.getMatchingZip(userInputList[1])==null) {
+				if (!printMatches(renderer, queryCache, restaurantList, false, userInputList[1])) {
 					System.out.println("No matches found. Try again.");
 					continue;
 				}
-				for (Restaurant restaurant: restaurantList.getMatchingZip(userInputList[1])) {
-					System.out.println(restaurant.toString());
-				}
 			}
 	
 			
@@ -162,6 +301,86 @@ public class SFRestaurantData {
 		System.exit(1);	
 	}
 	
+	/**
+	 * Runs a near or nearest command: "near LATITUDE LONGITUDE METERS [SCORES]" or "nearest LATITUDE LONGITUDE K [SCORES]",
+	 * where the location can also be a zip code, which stands for the centroid of its restaurants, and SCORES is a range of latest inspection scores such as 0-70.
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param String[] arguments words of the command, starting with near or nearest
+	 * @return RestaurantList list of the matching restaurants, nearest first, or null if there are no matches
+	 * @throws IllegalArgumentException if the command does not have valid arguments
+	 */
+	private static RestaurantList searchNear(RestaurantList restaurantList, String[] arguments) throws IllegalArgumentException {
+		boolean nearest = arguments[0].equalsIgnoreCase("nearest");
+		String usage = "Usage: " + arguments[0].toLowerCase() + " LATITUDE LONGITUDE " + (nearest ? "K" : "METERS") + " [SCORES].";
+		//a zip code is a single word, so the location has one or two words
+		int next = arguments.length > 1 && arguments[1].length() == 5 && arguments[1].indexOf('.') < 0 ? 2 : 3;
+		if (arguments.length < next + 1 || arguments.length > next + 2) {
+			throw new IllegalArgumentException(usage);
+		}
+		try {
+			double latitude;
+			double longitude;
+			if (next == 2) {
+				double[] centroid = restaurantList.getZipCentroid(arguments[1]);
+				if (centroid == null) {
+					throw new IllegalArgumentException("No restaurant with zip code " + arguments[1] + " has a location.");
+				}
+				latitude = centroid[0];
+				longitude = centroid[1];
+			}
+			else {
+				latitude = Double.parseDouble(arguments[1]);
+				longitude = Double.parseDouble(arguments[2]);
+			}
+			int minScore = Integer.MIN_VALUE;
+			int maxScore = Integer.MAX_VALUE;
+			if (arguments.length == next + 2) {
+				String[] scores = arguments[next + 1].split("-");
+				if (scores.length != 2) {
+					throw new IllegalArgumentException(usage);
+				}
+				minScore = Integer.parseInt(scores[0]);
+				maxScore = Integer.parseInt(scores[1]);
+			}
+			if (nearest) {
+				return restaurantList.getNearestRestaurants(latitude, longitude, Integer.parseInt(arguments[next]), minScore, maxScore);
+			}
+			return restaurantList.getRestaurantsWithin(latitude, longitude, Double.parseDouble(arguments[next]), minScore, maxScore);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(usage);
+		}
+	}
+
+	/**
+	 * Prints the restaurants matching a name or zip query in the format of the renderer. Text results are printed from the rendered text kept by the cache.
+	 * @param RestaurantRenderer renderer output of the matches
+	 * @param QueryCache queryCache cache of recent query results
+	 * @param RestaurantList restaurantList list to be searched
+	 * @param boolean byName true for a name query, and false for a zip query
+	 * @param String keyword from user input
+	 * @return boolean true if there were matches, and false otherwise
+	 */
+	private static boolean printMatches(RestaurantRenderer renderer, QueryCache queryCache, RestaurantList restaurantList, boolean byName, String keyword) {
+		try {
+			if (renderer.getFormat() == RestaurantRenderer.Format.TEXT) {
+				String matches = byName ? queryCache.getRenderedMatchingRestaurants(restaurantList, keyword) : queryCache.getRenderedMatchingZip(restaurantList, keyword);
+				if (matches == null) {
+					return false;
+				}
+				renderer.writeRendered(matches);
+				renderer.flush();
+				return true;
+			}
+			RoaringBitmap ids = byName ? queryCache.getMatchingRestaurantIds(restaurantList, keyword) : queryCache.getMatchingZipIds(restaurantList, keyword);
+			return renderer.writeAll(restaurantList, ids) > 0;
+		}
+		catch (IOException e) {
+			System.err.println("ERROR: the matches cannot be printed. \n");
+			return true;
+		}
+	}
+	
 	 /**
 	 * Splits the given line of a CSV file according to commas and double quotes
 	 * (double quotes are used to surround multi-word entries so that they may contain commas)
@@ -0,0 +1,197 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The StringDictionary class assigns a small integer code to every distinct String it is given.
+ * It is used to store repeated values, such as violation descriptions and risk categories, as codes in primitive arrays, and to return a single shared String instance for each value.
+ * Codes are assigned in the order the values are first encoded, starting at 0. The null value is always encoded as -1.
+ * Values can also be looked up by their UTF-8 bytes, so a loader can find the shared String of a CSV entry without creating a new String for it.
+ * Every value is kept both as a String and as its bytes, so a dictionary is only worth it for values that repeat often, not for nearly unique ones such as names or addresses.
+ * @author Claire Zhu
+ */
+
+public class StringDictionary {
+
+	private HashMap<String, Integer> codes;
+	private ArrayList<String> values;
+	//open addressing hash table of the UTF-8 bytes of the values; a slot holds a code plus one, or 0 if it is empty
+	private ArrayList<byte[]> valueBytes;
+	private int[] slots;
+
+	/**
+	 * This default constructor constructs a new empty StringDictionary object.
+	 */
+	public StringDictionary() {
+		codes = new HashMap<String, Integer>();
+		values = new ArrayList<String>();
+		valueBytes = new ArrayList<byte[]>();
+		slots = new int[64];
+	}
+
+	/**
+	 * Constructs a new StringDictionary object holding the values of the given dictionary with the same codes, so codes taken from the other dictionary are valid in this one.
+	 * Values added to either dictionary afterwards are not added to the other.
+	 * @param StringDictionary other dictionary to be copied
+	 */
+	public StringDictionary(StringDictionary other) {
+		codes = new HashMap<String, Integer>(other.codes);
+		values = new ArrayList<String>(other.values);
+		//the byte arrays are never changed, so they are shared
+		valueBytes = new ArrayList<byte[]>(other.valueBytes);
+		slots = other.slots.clone();
+	}
+
+	/**
+	 * Returns the code of the given value, adding the value to this dictionary if it is not in it yet.
+	 * @param String value to be encoded; may be null
+	 * @return int code of the value, or -1 if the value is null
+	 */
+	public int encode(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer code = codes.get(value);
+		if (code == null) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			code = add(value, bytes, hash(bytes, 0, bytes.length));
+		}
+		return code;
+	}
+
+	/**
+	 * Returns the code of the value with the given UTF-8 bytes, adding the value to this dictionary if it is not in it yet.
+	 * A String is only created the first time a value is seen.
+	 * @param byte[] bytes array containing the UTF-8 encoded value
+	 * @param int offset of the first byte of the value
+	 * @param int length number of bytes of the value
+	 * @return int code of the value
+	 */
+	public int encode(byte[] bytes, int offset, int length) {
+		int hash = hash(bytes, offset, length);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int code = slots[slot] - 1;
+			byte[] candidate = valueBytes.get(code);
+			if (Arrays.equals(candidate, 0, candidate.length, bytes, offset, offset + length)) {
+				return code;
+			}
+		}
+		byte[] copy = Arrays.copyOfRange(bytes, offset, offset + length);
+		String value = new String(copy, StandardCharsets.UTF_8);
+		Integer code = codes.get(value);
+		if (code != null) {
+			//the same String can come from different bytes if the bytes are not valid UTF-8
+			return code;
+		}
+		return add(value, copy, hash);
+	}
+
+	/**
+	 * Returns the shared instance of the given value, adding the value to this dictionary if it is not in it yet.
+	 * @param String value to be interned; may be null
+	 * @return String instance kept by this dictionary that is equal to the value, or null if the value is null
+	 */
+	public String intern(String value) {
+		return decode(encode(value));
+	}
+
+	/**
+	 * Returns the shared instance of the value with the given UTF-8 bytes, adding the value to this dictionary if it is not in it yet.
+	 * @param byte[] bytes array containing the UTF-8 encoded value
+	 * @param int offset of the first byte of the value
+	 * @param int length number of bytes of the value
+	 * @return String instance kept by this dictionary for the value
+	 */
+	public String intern(byte[] bytes, int offset, int length) {
+		return values.get(encode(bytes, offset, length));
+	}
+
+	/**
+	 * Returns the value with the given code.
+	 * @param int code of the value
+	 * @return String value of the code, or null if the code is -1
+	 * @throws IndexOutOfBoundsException if the code was not assigned by this dictionary
+	 */
+	public String decode(int code) throws IndexOutOfBoundsException {
+		if (code == -1) {
+			return null;
+		}
+		return values.get(code);
+	}
+
+	/**
+	 * Returns the instance kept by the target dictionary for every value of this dictionary, adding the values that are not in the target yet.
+	 * This shares the values of dictionaries that were filled by different threads while reading every distinct value only once.
+	 * @param StringDictionary target dictionary whose instances are returned
+	 * @return String[] instance kept by the target for the value of every code of this dictionary
+	 */
+	public String[] mapTo(StringDictionary target) {
+		String[] shared = new String[values.size()];
+		for (int code = 0; code < shared.length; code++) {
+			shared[code] = target.intern(values.get(code));
+		}
+		return shared;
+	}
+
+	/**
+	 * Returns the number of distinct values in this dictionary.
+	 * @return int number of values
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Adds a new value with its UTF-8 bytes, growing the hash table when it is half full.
+	 * @param String value to be added
+	 * @param byte[] bytes UTF-8 encoding of the value, owned by this dictionary
+	 * @param int hash of the bytes
+	 * @return int code assigned to the value
+	 */
+	private int add(String value, byte[] bytes, int hash) {
+		int code = values.size();
+		codes.put(value, code);
+		values.add(value);
+		valueBytes.add(bytes);
+		if ((code + 1) * 2 > slots.length) {
+			slots = new int[slots.length * 2];
+			for (int i = 0; i < code; i++) {
+				byte[] other = valueBytes.get(i);
+				insert(hash(other, 0, other.length), i);
+			}
+		}
+		insert(hash, code);
+		return code;
+	}
+
+	/**
+	 * Stores a code in the first free slot for the given hash.
+	 * @param int hash of the bytes of the value
+	 * @param int code of the value
+	 */
+	private void insert(int hash, int code) {
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = code + 1;
+	}
+
+	/**
+	 * Computes the hash of a range of bytes, mixing the bits so that nearby values spread over the table.
+	 * @param byte[] bytes array containing the bytes
+	 * @param int offset of the first byte
+	 * @param int length number of bytes
+	 * @return int hash of the bytes
+	 */
+	private static int hash(byte[] bytes, int offset, int length) {
+		int h = 1;
+		for (int i = offset; i < offset + length; i++) {
+			h = 31 * h + bytes[i];
+		}
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,391 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The ZipIndex class indexes a sorted array of restaurants by their numeric 5 digit zip codes.
+ * The ids of the restaurants (their positions in the sorted array) are stored grouped by zip code in a single array, and a dense array of offsets indexed by the zip code gives the start of every group.
+ * This makes exact, prefix and range queries proportional to the number of matches, and the number of restaurants in a zip code a constant time lookup.
+ * Every zip code also has a RoaringBitmap of its ids, so the results of zip code queries can be combined with the results of other indexes without sorting.
+ * Zip codes that are not made of 5 ASCII digits (Restaurant also accepts other Unicode digits) get groups of their own after the numeric ones:
+ * they are found by substring searches, but not by numeric exact, prefix or range queries.
+ * An index can be written to a RestaurantSnapshot with its bitmaps, and an index read back keeps its offsets and ids in the snapshot buffer instead of building them again.
+ * @author Claire Zhu
+ */
+
+public class ZipIndex {
+
+	//number of possible 5 digit zip codes
+	private static final int ZIP_CODES = 100000;
+
+	private static final int[] NO_MATCHES = new int[0];
+
+	private IntBuffer offsets;
+	private IntBuffer ids;
+	private int[] presentZips;
+	//zip code, start in ids and bitmap of the ids of every group: first the groups of presentZips, then the groups of the zip codes that are not numeric
+	private String[] zips;
+	private int[] groupOffsets;
+	private RoaringBitmap[] bitmaps;
+
+	/**
+	 * Constructs a new ZipIndex object for the given restaurants.
+	 * @param Restaurant[] restaurants array of restaurants sorted according to their natural order; the index of a restaurant in this array is its id
+	 */
+	public ZipIndex(Restaurant[] restaurants) {
+		//the numeric zip code of every restaurant, or ZIP_CODES plus the number of its group if it is not numeric
+		int[] zipOfId = new int[restaurants.length];
+		int[] offsets = new int[ZIP_CODES + 1];
+		HashMap<String, Integer> otherGroups = new HashMap<String, Integer>();
+		ArrayList<String> otherZips = new ArrayList<String>();
+		for (int id = 0; id < restaurants.length; id++) {
+			int zip = parseZip(restaurants[id].getZip());
+			if (zip < 0) {
+				Integer group = otherGroups.get(restaurants[id].getZip());
+				if (group == null) {
+					group = otherZips.size();
+					otherGroups.put(restaurants[id].getZip(), group);
+					otherZips.add(restaurants[id].getZip());
+				}
+				zipOfId[id] = ZIP_CODES + group;
+			}
+			else {
+				zipOfId[id] = zip;
+				offsets[zip + 1]++;
+			}
+		}
+
+		//turn the counts into offsets, and remember which zip codes are used
+		int present = 0;
+		for (int zip = 0; zip < ZIP_CODES; zip++) {
+			if (offsets[zip + 1] > 0) {
+				present++;
+			}
+			offsets[zip + 1] += offsets[zip];
+		}
+		presentZips = new int[present];
+		present = 0;
+		for (int zip = 0; zip < ZIP_CODES; zip++) {
+			if (offsets[zip + 1] > offsets[zip]) {
+				presentZips[present++] = zip;
+			}
+		}
+		int groups = present + otherZips.size();
+		zips = new String[groups];
+		groupOffsets = new int[groups + 1];
+		for (int i = 0; i < present; i++) {
+			groupOffsets[i] = offsets[presentZips[i]];
+		}
+		groupOffsets[present] = offsets[ZIP_CODES];
+		for (int id = 0; id < restaurants.length; id++) {
+			if (zipOfId[id] >= ZIP_CODES) {
+				groupOffsets[present + zipOfId[id] - ZIP_CODES + 1]++;
+			}
+		}
+		for (int group = present; group < groups; group++) {
+			groupOffsets[group + 1] += groupOffsets[group];
+		}
+
+		//ids are visited in increasing order, so every group ends up sorted
+		int[] ids = new int[restaurants.length];
+		int[] next = Arrays.copyOf(offsets, ZIP_CODES);
+		int[] otherNext = Arrays.copyOfRange(groupOffsets, present, groups);
+		for (int id = 0; id < restaurants.length; id++) {
+			if (zipOfId[id] < ZIP_CODES) {
+				ids[next[zipOfId[id]]++] = id;
+			}
+			else {
+				ids[otherNext[zipOfId[id] - ZIP_CODES]++] = id;
+			}
+		}
+		bitmaps = new RoaringBitmap[groups];
+		for (int group = 0; group < groups; group++) {
+			zips[group] = restaurants[ids[groupOffsets[group]]].getZip();
+			bitmaps[group] = RoaringBitmap.of(Arrays.copyOfRange(ids, groupOffsets[group], groupOffsets[group + 1]));
+		}
+		this.offsets = IntBuffer.wrap(offsets);
+		this.ids = IntBuffer.wrap(ids);
+	}
+
+	/**
+	 * Constructs a new ZipIndex object from values read from a snapshot.
+	 * @param IntBuffer offsets start of the group of every numeric zip code in ids, followed by the end of the last one
+	 * @param IntBuffer ids ids of the restaurants grouped by zip code
+	 * @param int[] presentZips numeric zip codes that are used
+	 * @param String[] zips zip code of every group
+	 * @param int[] groupOffsets start of every group in ids, followed by the end of the last one
+	 * @param RoaringBitmap[] bitmaps ids of every group
+	 */
+	private ZipIndex(IntBuffer offsets, IntBuffer ids, int[] presentZips, String[] zips, int[] groupOffsets, RoaringBitmap[] bitmaps) {
+		this.offsets = offsets;
+		this.ids = ids;
+		this.presentZips = presentZips;
+		this.zips = zips;
+		this.groupOffsets = groupOffsets;
+		this.bitmaps = bitmaps;
+	}
+
+	/**
+	 * Writes this index in the form read by read(ByteBuffer).
+	 * @param DataOutputStream out stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	void write(DataOutputStream out) throws IOException {
+		RestaurantSnapshot.writeInts(out, offsets);
+		RestaurantSnapshot.writeInts(out, ids);
+		RestaurantSnapshot.writeInts(out, IntBuffer.wrap(presentZips));
+		RestaurantSnapshot.writeStrings(out, zips);
+		RestaurantSnapshot.writeInts(out, IntBuffer.wrap(groupOffsets));
+		for (RoaringBitmap bitmap : bitmaps) {
+			bitmap.write(out);
+		}
+	}
+
+	/**
+	 * Reads an index written by write(DataOutputStream), starting at the position of the buffer and moving the position past it.
+	 * The offsets and ids stay in the buffer; only the few zip codes and their bitmaps are copied.
+	 * @param ByteBuffer buffer to read from, for example a mapped snapshot file
+	 * @return ZipIndex index that was written
+	 */
+	static ZipIndex read(ByteBuffer buffer) {
+		IntBuffer offsets = RestaurantSnapshot.readInts(buffer);
+		IntBuffer ids = RestaurantSnapshot.readInts(buffer);
+		IntBuffer present = RestaurantSnapshot.readInts(buffer);
+		int[] presentZips = new int[present.limit()];
+		present.get(0, presentZips);
+		String[] zips = RestaurantSnapshot.readStrings(buffer);
+		IntBuffer groups = RestaurantSnapshot.readInts(buffer);
+		int[] groupOffsets = new int[groups.limit()];
+		groups.get(0, groupOffsets);
+		RoaringBitmap[] bitmaps = new RoaringBitmap[zips.length];
+		for (int group = 0; group < zips.length; group++) {
+			bitmaps[group] = RoaringBitmap.read(buffer);
+		}
+		return new ZipIndex(offsets, ids, presentZips, zips, groupOffsets, bitmaps);
+	}
+
+	/**
+	 * Converts a 5 digit zip code to its numeric value.
+	 * @param String zip code to be converted
+	 * @return int value of the zip code, or -1 if it is not made of exactly 5 digits
+	 */
+	static int parseZip(String zip) {
+		if (zip == null || zip.length() != 5) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = 0; i < 5; i++) {
+			char c = zip.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose zip codes contain the keyword as a substring.
+	 * Only the distinct zip codes are compared to the keyword, not every restaurant.
+	 * @param String keyword to search for; should not be null
+	 * @return int[] sorted array of the ids of the matching restaurants; empty if there are no matches
+	 */
+	public int[] find(String keyword) {
+		int count = 0;
+		int runs = 0;
+		for (int group = 0; group < zips.length; group++) {
+			if (zips[group] != null && zips[group].contains(keyword)) {
+				count += groupOffsets[group + 1] - groupOffsets[group];
+				runs++;
+			}
+		}
+		int[] matches = new int[count];
+		int[] runOffsets = new int[runs + 1];
+		count = 0;
+		runs = 0;
+		for (int group = 0; group < zips.length; group++) {
+			if (zips[group] != null && zips[group].contains(keyword)) {
+				int length = groupOffsets[group + 1] - groupOffsets[group];
+				ids.get(groupOffsets[group], matches, count, length);
+				count += length;
+				runOffsets[++runs] = count;
+			}
+		}
+		return mergeRuns(matches, runOffsets, runs);
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose zip codes contain the keyword as a substring, as a bitmap that can be combined with the results of other indexes.
+	 * @param String keyword to search for; should not be null
+	 * @return RoaringBitmap union of the bitmaps of the matching zip codes; empty if there are no matches
+	 */
+	public RoaringBitmap findBitmap(String keyword) {
+		RoaringBitmap matches = new RoaringBitmap();
+		for (int group = 0; group < zips.length; group++) {
+			if (zips[group] != null && zips[group].contains(keyword)) {
+				matches = matches.or(bitmaps[group]);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose numeric zip codes are in the given range, as a bitmap that can be combined with the results of other indexes.
+	 * @param int from lowest zip code of the range (inclusive)
+	 * @param int to highest zip code of the range (inclusive)
+	 * @return RoaringBitmap union of the bitmaps of the zip codes in the range; empty if there are no matches
+	 */
+	public RoaringBitmap findRangeBitmap(int from, int to) {
+		int first = Arrays.binarySearch(presentZips, from);
+		RoaringBitmap matches = new RoaringBitmap();
+		for (int i = first < 0 ? -first - 1 : first; i < presentZips.length && presentZips[i] <= to; i++) {
+			matches = matches.or(bitmaps[i]);
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns the ids of the restaurants with the given zip code.
+	 * @param int zip code value
+	 * @return int[] sorted array of the ids of the matching restaurants; empty if there are no matches
+	 */
+	public int[] findExact(int zip) {
+		return findRange(zip, zip);
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose zip codes start with the given digits (for example "941" matches 94100 to 94199).
+	 * @param String prefix made of 1 to 5 digits
+	 * @return int[] sorted array of the ids of the matching restaurants; empty if there are no matches
+	 * @throws IllegalArgumentException if the prefix is not made of 1 to 5 digits
+	 */
+	public int[] findPrefix(String prefix) throws IllegalArgumentException {
+		if (prefix == null || prefix.isEmpty() || prefix.length() > 5) {
+			throw new IllegalArgumentException("Invalid zip code prefix. Prefix must contain 1 to 5 digits.");
+		}
+		int from = 0;
+		int scale = 1;
+		for (int i = 0; i < 5; i++) {
+			if (i < prefix.length()) {
+				char c = prefix.charAt(i);
+				if (c < '0' || c > '9') {
+					throw new IllegalArgumentException("Invalid zip code prefix. Prefix must only contain numerical digits.");
+				}
+				from = from * 10 + (c - '0');
+			}
+			else {
+				from = from * 10;
+				scale = scale * 10;
+			}
+		}
+		return findRange(from, from + scale - 1);
+	}
+
+	/**
+	 * Returns the ids of the restaurants whose numeric zip codes are in the given range.
+	 * @param int from lowest zip code of the range (inclusive)
+	 * @param int to highest zip code of the range (inclusive)
+	 * @return int[] sorted array of the ids of the matching restaurants; empty if there are no matches
+	 */
+	public int[] findRange(int from, int to) {
+		from = Math.max(from, 0);
+		to = Math.min(to, ZIP_CODES - 1);
+		if (from > to) {
+			return NO_MATCHES;
+		}
+		int start = offsets.get(from);
+		int end = offsets.get(to + 1);
+		if (start == end) {
+			return NO_MATCHES;
+		}
+		int[] matches = new int[end - start];
+		ids.get(start, matches);
+		if (from == to) {
+			return matches;
+		}
+		//the groups of the zip codes in the range are next to each other in ids, and each of them is already sorted
+		int first = Arrays.binarySearch(presentZips, from);
+		first = first < 0 ? -first - 1 : first;
+		int last = Arrays.binarySearch(presentZips, to);
+		last = last < 0 ? -last - 2 : last;
+		int[] runOffsets = new int[last - first + 2];
+		for (int i = first; i <= last; i++) {
+			runOffsets[i - first] = offsets.get(presentZips[i]) - start;
+		}
+		runOffsets[last - first + 1] = end - start;
+		return mergeRuns(matches, runOffsets, last - first + 1);
+	}
+
+	/**
+	 * Merges consecutive sorted runs of values into a single sorted array.
+	 * Pairs of neighbouring runs are merged in rounds that halve the number of runs, so merging k values takes time proportional to k times the logarithm of the number of runs,
+	 * which is at most a few passes since the runs are the groups of distinct zip codes.
+	 * @param int[] values array made of the runs; it may be reused for the result
+	 * @param int[] runOffsets run r holds the values from runOffsets[r] (inclusive) to runOffsets[r+1] (exclusive); it is changed by this method
+	 * @param int runs number of runs
+	 * @return int[] sorted array of all values
+	 */
+	private static int[] mergeRuns(int[] values, int[] runOffsets, int runs) {
+		int[] buffer = runs > 1 ? new int[values.length] : null;
+		while (runs > 1) {
+			int merged = 0;
+			for (int r = 0; r < runs; r += 2) {
+				int from = runOffsets[r];
+				int middle = runOffsets[r + 1];
+				int to = r + 2 <= runs ? runOffsets[r + 2] : middle;
+				int i = from;
+				int j = middle;
+				int k = from;
+				while (i < middle && j < to) {
+					buffer[k++] = values[i] <= values[j] ? values[i++] : values[j++];
+				}
+				System.arraycopy(values, i, buffer, k, middle - i);
+				k += middle - i;
+				System.arraycopy(values, j, buffer, k, to - j);
+				runOffsets[merged++] = from;
+			}
+			runOffsets[merged] = values.length;
+			runs = merged;
+			int[] swap = values;
+			values = buffer;
+			buffer = swap;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the number of restaurants whose numeric zip codes are in the given range, without collecting their ids.
+	 * @param int from lowest zip code of the range (inclusive)
+	 * @param int to highest zip code of the range (inclusive)
+	 * @return int number of restaurants in the range
+	 */
+	public int countRange(int from, int to) {
+		from = Math.max(from, 0);
+		to = Math.min(to, ZIP_CODES - 1);
+		return from > to ? 0 : offsets.get(to + 1) - offsets.get(from);
+	}
+
+	/**
+	 * Returns the number of restaurants with the given zip code.
+	 * @param int zip code value
+	 * @return int number of restaurants with this zip code
+	 */
+	public int getCount(int zip) {
+		if (zip < 0 || zip >= ZIP_CODES) {
+			return 0;
+		}
+		return offsets.get(zip + 1) - offsets.get(zip);
+	}
+
+	/**
+	 * Returns the zip codes that are used by at least one restaurant.
+	 * @return int[] sorted array of zip code values
+	 */
+	public int[] getZipCodes() {
+		return presentZips.clone();
+	}
+}